@@ -0,0 +1,207 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A uniform view of the archive implementations compared by the benchmarks,
+ * so that each benchmark method measures the same operation on each of them.
+ * <p>
+ * {@code rozip} uses the direct {@link ReadOnlyZipFileSystem} API where one
+ * exists ({@code rozip-dirindex} the same with a directory index,
+ * {@code rozip-cache} and {@code rozip-zcache} with an entry cache in the
+ * uncompressed and the compressed tier, {@code rozip-ohcache} with an
+ * off-heap entry cache), {@code zipfs} the JDK's
+ * {@code ZipFileSystem} through NIO, and
+ * {@code zipfile} {@link ZipFile}. {@link ZipFile} has no notion of
+ * directories, so its listing and walking operations scan all entries, which
+ * is what a caller would have to do.
+ */
+abstract class ArchiveUnderTest implements Closeable {
+
+    static final String ROZIP = "rozip";
+    static final String ROZIP_DIRECTORY_INDEX = "rozip-dirindex";
+    static final String ROZIP_CACHE = "rozip-cache";
+    static final String ROZIP_COMPRESSED_CACHE = "rozip-zcache";
+    static final String ROZIP_OFF_HEAP_CACHE = "rozip-ohcache";
+    static final String ZIPFS = "zipfs";
+    static final String ZIPFILE = "zipfile";
+
+    static ArchiveUnderTest open(String impl, Path zip) throws IOException {
+        return switch (impl) {
+            case ROZIP -> new Rozip(ReadOnlyZipFileSystem.open(zip));
+            case ROZIP_DIRECTORY_INDEX -> new Rozip(
+                    ReadOnlyZipFileSystem.open(zip, ReadOnlyZipOptions.defaults().withDirectoryIndex(true)));
+            case ROZIP_CACHE -> new Rozip(
+                    ReadOnlyZipFileSystem.open(zip, ReadOnlyZipOptions.defaults().withEntryCacheSize(256L << 20)));
+            case ROZIP_COMPRESSED_CACHE -> new Rozip(ReadOnlyZipFileSystem.open(zip, ReadOnlyZipOptions.defaults()
+                    .withEntryCacheSize(256L << 20)
+                    .withEntryCacheTier(ReadOnlyZipOptions.CacheTier.COMPRESSED)));
+            case ROZIP_OFF_HEAP_CACHE -> new Rozip(ReadOnlyZipFileSystem.open(zip, ReadOnlyZipOptions.defaults()
+                    .withEntryCacheSize(256L << 20)
+                    .withEntryCacheOffHeap(true)));
+            case ZIPFS -> new ZipFs(FileSystems.newFileSystem(zip, Map.of()));
+            case ZIPFILE -> new JdkZipFile(new ZipFile(zip.toFile()));
+            default -> throw new IllegalArgumentException(impl);
+        };
+    }
+
+    abstract boolean exists(String name) throws IOException;
+
+    /**
+     * @return the uncompressed size of the entry, taken from its metadata
+     */
+    abstract long size(String name) throws IOException;
+
+    abstract byte[] read(String name) throws IOException;
+
+    /**
+     * @return the number of immediate children of the directory
+     */
+    abstract int list(String dir) throws IOException;
+
+    /**
+     * @return the number of files and directories in the archive
+     */
+    abstract long walk() throws IOException;
+
+    private static class NioFileSystem extends ArchiveUnderTest {
+
+        final FileSystem fs;
+
+        NioFileSystem(FileSystem fs) {
+            this.fs = fs;
+        }
+
+        @Override
+        boolean exists(String name) {
+            return Files.exists(fs.getPath(name));
+        }
+
+        @Override
+        long size(String name) throws IOException {
+            return Files.readAttributes(fs.getPath(name), BasicFileAttributes.class).size();
+        }
+
+        @Override
+        byte[] read(String name) throws IOException {
+            return Files.readAllBytes(fs.getPath(name));
+        }
+
+        @Override
+        int list(String dir) throws IOException {
+            int count = 0;
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(fs.getPath(dir))) {
+                for (Path ignored : children) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        long walk() throws IOException {
+            try (Stream<Path> paths = Files.walk(fs.getPath("/"))) {
+                return paths.count();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            fs.close();
+        }
+    }
+
+    private static final class ZipFs extends NioFileSystem {
+        ZipFs(FileSystem fs) {
+            super(fs);
+        }
+    }
+
+    private static final class Rozip extends NioFileSystem {
+
+        private final ReadOnlyZipFileSystem rozip;
+
+        Rozip(ReadOnlyZipFileSystem fs) {
+            super(fs);
+            this.rozip = fs;
+        }
+
+        @Override
+        boolean exists(String name) {
+            return rozip.entryExists(name);
+        }
+
+        @Override
+        long size(String name) {
+            return rozip.getEntryInfo(name).uncompressedSize();
+        }
+
+        @Override
+        byte[] read(String name) throws IOException {
+            return rozip.readEntryData(name);
+        }
+    }
+
+    private static final class JdkZipFile extends ArchiveUnderTest {
+
+        private final ZipFile zip;
+
+        JdkZipFile(ZipFile zip) {
+            this.zip = zip;
+        }
+
+        @Override
+        boolean exists(String name) {
+            return zip.getEntry(name) != null;
+        }
+
+        @Override
+        long size(String name) {
+            return zip.getEntry(name).getSize();
+        }
+
+        @Override
+        byte[] read(String name) throws IOException {
+            try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+                return in.readAllBytes();
+            }
+        }
+
+        @Override
+        int list(String dir) {
+            String prefix = dir.endsWith("/") ? dir : dir + "/";
+            int count = 0;
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.startsWith(prefix) && name.indexOf('/', prefix.length()) < 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        long walk() {
+            return zip.stream().count();
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+}
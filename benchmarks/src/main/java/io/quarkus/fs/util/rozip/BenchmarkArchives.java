@@ -0,0 +1,150 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Creates synthetic archives for the benchmarks.
+ * <p>
+ * Entry names mimic a class-file layout ({@code org/acme/pkgNN/ClassNNNN.class})
+ * so that names share long prefixes and directories nest a few levels deep,
+ * like real dependency JARs. Entry contents are compressible but not
+ * trivially so.
+ */
+final class BenchmarkArchives {
+
+    private BenchmarkArchives() {
+    }
+
+    /**
+     * @param entryCount number of entries
+     * @return the names of the entries written by {@link #create}
+     */
+    static List<String> entryNames(int entryCount) {
+        List<String> names = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            names.add(entryName(i));
+        }
+        return names;
+    }
+
+    static String entryName(int index) {
+        return "org/acme/pkg" + (index % 97) + "/sub" + (index % 7) + "/Class" + index + ".class";
+    }
+
+    /**
+     * Writes an archive with {@code entryCount} entries of {@code entrySize}
+     * bytes each, using the given compression method.
+     *
+     * @param file the archive to create
+     * @param entryCount number of entries
+     * @param entrySize uncompressed size of each entry
+     * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+     * @return {@code file}
+     */
+    static Path create(Path file, int entryCount, int entrySize, int method) {
+        byte[] data = content(entrySize);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        try (OutputStream os = Files.newOutputStream(file);
+                ZipOutputStream zos = new ZipOutputStream(os)) {
+            for (int i = 0; i < entryCount; i++) {
+                ZipEntry ze = new ZipEntry(entryName(i));
+                ze.setMethod(method);
+                if (method == ZipEntry.STORED) {
+                    ze.setSize(data.length);
+                    ze.setCompressedSize(data.length);
+                    ze.setCrc(crc.getValue());
+                }
+                zos.putNextEntry(ze);
+                zos.write(data);
+                zos.closeEntry();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return file;
+    }
+
+    /**
+     * Returns an archive created by {@link #create}, reusing a copy kept in
+     * the temporary directory from an earlier run. Large archives take a while
+     * to generate, so they are only written once.
+     *
+     * @param entryCount number of entries
+     * @param entrySize uncompressed size of each entry
+     * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+     * @return the archive
+     */
+    static Path cached(int entryCount, int entrySize, int method) {
+        try {
+            Path dir = Files.createDirectories(Path.of(System.getProperty("java.io.tmpdir"), "rozip-bench-archives"));
+            String name = "archive-" + entryCount + "x" + entrySize + (method == ZipEntry.STORED ? "-stored" : "-deflated");
+            Path file = dir.resolve(name + ".zip");
+            if (!Files.exists(file)) {
+                Path tmp = create(Files.createTempFile(dir, name, ".tmp"), entryCount, entrySize, method);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Picks {@code count} entry names spread evenly over an archive of
+     * {@code entryCount} entries, in an order that defeats locality.
+     */
+    static String[] sampleNames(int entryCount, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = entryName((int) ((i * 2_654_435_761L) % entryCount));
+        }
+        return names;
+    }
+
+    /**
+     * Reads the central directory of an archive written by {@link #create},
+     * which has no archive comment.
+     */
+    static byte[] centralDirectory(Path zip) {
+        try {
+            byte[] raw = Files.readAllBytes(zip);
+            ByteBuffer buf = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+            int eocd = raw.length - 22;
+            long cdSize = Integer.toUnsignedLong(buf.getInt(eocd + 12));
+            long cdOffset = Integer.toUnsignedLong(buf.getInt(eocd + 16));
+            int zip64Eocd = eocd - 20 - 56;
+            if (zip64Eocd >= 0 && buf.getInt(zip64Eocd) == 0x06064b50) {
+                cdSize = buf.getLong(zip64Eocd + 40);
+                cdOffset = buf.getLong(zip64Eocd + 48);
+            }
+            return Arrays.copyOfRange(raw, (int) cdOffset, (int) (cdOffset + cdSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] content(int size) {
+        byte[] data = new byte[size];
+        long seed = 42;
+        for (int i = 0; i < size; i++) {
+            // mostly text-like bytes with some noise, compresses roughly 3:1
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            data[i] = (i % 16 < 12) ? (byte) ('a' + (i / 16) % 26) : (byte) (seed >>> 56);
+        }
+        return data;
+    }
+}
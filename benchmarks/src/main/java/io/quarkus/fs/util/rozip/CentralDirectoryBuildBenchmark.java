@@ -0,0 +1,58 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the {@link CompactEntryTable} from central directory
+ * bytes already in memory, the CPU-bound part of opening an archive, with
+ * the sequential and the parallel build. The parallel build only pays off
+ * with several cores; the common pool's parallelism is printed when each
+ * trial starts. With {@code lazyMetadata}, only the names are extracted and
+ * the rest of the metadata is left to be decoded on access.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CentralDirectoryBuildBenchmark {
+
+    @Param({ "10000", "100000", "500000", "1000000" })
+    int entries;
+
+    @Param({ "false", "true" })
+    boolean parallel;
+
+    @Param({ "false", "true" })
+    boolean lazyMetadata;
+
+    byte[] cd;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cd = BenchmarkArchives.centralDirectory(BenchmarkArchives.cached(entries, 16, ZipEntry.DEFLATED));
+        System.out.printf("%ncommon pool parallelism: %d%n", ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    @Benchmark
+    public CompactEntryTable build() throws IOException {
+        return CompactEntryTable.buildFromCentralDirectory(cd, cd.length, entries, 0, false, lazyMetadata,
+                parallel);
+    }
+}
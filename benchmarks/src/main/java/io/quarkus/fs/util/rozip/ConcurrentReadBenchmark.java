@@ -0,0 +1,111 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures entry read throughput on a single {@link ReadOnlyZipFileSystem}
+ * shared by many threads, as in a parallel class-loading or augmentation
+ * thread pool.
+ * <p>
+ * {@code readHandles=1} reproduces a single shared file handle, where every
+ * read is serialized; larger values let the handle pool scale. Run
+ * {@link #main} to sweep the thread count and print throughput per thread
+ * count, or run through the JMH launcher with {@code -t <threads>}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentReadBenchmark {
+
+    @Param({ "1", "8" })
+    int readHandles;
+
+    @Param({ "STORED", "DEFLATED" })
+    String method;
+
+    Path dir;
+    ReadOnlyZipFileSystem fs;
+    List<String> names;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("rozip-bench");
+        int zipMethod = "STORED".equals(method) ? ZipEntry.STORED : ZipEntry.DEFLATED;
+        Path zip = BenchmarkArchives.create(dir.resolve("concurrent.zip"), 4096, 4096, zipMethod);
+        names = BenchmarkArchives.entryNames(4096);
+        int previous = ReadOnlyZipFileSystem.MAX_READ_HANDLES;
+        ReadOnlyZipFileSystem.MAX_READ_HANDLES = readHandles;
+        try {
+            fs = ReadOnlyZipFileSystem.open(zip);
+        } finally {
+            ReadOnlyZipFileSystem.MAX_READ_HANDLES = previous;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fs.close();
+        Files.deleteIfExists(dir.resolve("concurrent.zip"));
+        Files.deleteIfExists(dir);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = (int) Thread.currentThread().getId() * 131;
+    }
+
+    @Benchmark
+    public byte[] readEntry(Cursor cursor) throws IOException {
+        int i = cursor.next++ & (names.size() - 1);
+        return fs.readEntryData(names.get(i));
+    }
+
+    /**
+     * Runs {@link #readEntry} for 1 to 32 threads and prints the throughput
+     * of each configuration.
+     */
+    public static void main(String[] args) throws RunnerException {
+        int[] threadCounts = { 1, 2, 4, 8, 16, 32 };
+        StringBuilder table = new StringBuilder(String.format("%-8s %-9s %-12s %s%n",
+                "threads", "method", "readHandles", "ops/ms"));
+        for (int threads : threadCounts) {
+            Options opts = new OptionsBuilder()
+                    .include(ConcurrentReadBenchmark.class.getSimpleName() + ".readEntry")
+                    .threads(threads)
+                    .build();
+            for (RunResult r : new Runner(opts).run()) {
+                table.append(String.format("%-8d %-9s %-12s %.1f%n", threads,
+                        r.getParams().getParam("method"),
+                        r.getParams().getParam("readHandles"),
+                        r.getPrimaryResult().getScore()));
+            }
+        }
+        System.out.print(table);
+    }
+}
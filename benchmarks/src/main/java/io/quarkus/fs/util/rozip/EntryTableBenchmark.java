@@ -0,0 +1,95 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures lookups against the {@link CompactEntryTable} itself, without the
+ * filesystem around it, for each name layout: binary search over the sorted
+ * names, the hash index, and front-coded names. The memory used by the
+ * table, its names and the hash index is printed when each trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntryTableBenchmark {
+
+    static final int SAMPLES = 4096;
+
+    @Param({ "1000", "100000", "1000000" })
+    int entries;
+
+    @Param({ "sorted", "hashed", "compact" })
+    String layout;
+
+    CompactEntryTable table;
+    String[] hits;
+    String[] misses;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Path zip = BenchmarkArchives.cached(entries, 16, ZipEntry.DEFLATED);
+        try (ArchiveReader reader = new PooledArchiveReader(zip, 1)) {
+            ReadOnlyZipOptions options = ReadOnlyZipOptions.defaults()
+                    .withHashIndex(layout.equals("hashed"))
+                    .withCompactNames(layout.equals("compact"));
+            table = ZipCentralDirectory.parse(reader, options).entryTable();
+        }
+        hits = BenchmarkArchives.sampleNames(entries, SAMPLES);
+        misses = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            misses[i] = hits[i].replace(".class", ".clasz");
+        }
+        // the serialized form always holds the plain names
+        long tableBytes = table.serializedSize() - table.withCompactNames(false).nameStorageBytes()
+                + table.nameStorageBytes() - table.hashIndexBytes();
+        System.out.printf("%n%d entries: table %,d bytes, names %,d bytes (%.1f bytes/entry),"
+                + " hash index %,d bytes (%.1f bytes/entry)%n",
+                table.size(), tableBytes, table.nameStorageBytes(), (double) table.nameStorageBytes() / table.size(),
+                table.hashIndexBytes(), (double) table.hashIndexBytes() / table.size());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void getEntry(Blackhole bh) {
+        for (String name : hits) {
+            bh.consume(table.getEntry(name));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void indexOf(Blackhole bh) {
+        for (String name : hits) {
+            int index = table.indexOf(name);
+            bh.consume(table.uncompressedSize(index));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void getEntryMissing(Blackhole bh) {
+        for (String name : misses) {
+            bh.consume(table.getEntry(name));
+        }
+    }
+}
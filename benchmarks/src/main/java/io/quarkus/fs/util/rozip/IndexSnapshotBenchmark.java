@@ -0,0 +1,89 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of opening (and closing) an archive with and without a
+ * persisted index snapshot, as when the same dependency JARs are opened on
+ * every dev-mode restart.
+ * <p>
+ * {@code archives} archives of {@code entries} entries each are opened per
+ * invocation; the defaults approximate the dependencies of a mid-sized
+ * application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexSnapshotBenchmark {
+
+    @Param({ "400" })
+    int archives;
+
+    @Param({ "500", "5000" })
+    int entries;
+
+    @Param({ "false", "true" })
+    boolean snapshot;
+
+    Path dir;
+    Path[] zips;
+    ReadOnlyZipOptions options;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("rozip-bench");
+        zips = new Path[archives];
+        // the archives are identical in content but distinct on disk
+        Path template = BenchmarkArchives.create(dir.resolve("template.zip"), entries, 64, ZipEntry.DEFLATED);
+        for (int i = 0; i < archives; i++) {
+            zips[i] = Files.copy(template, dir.resolve("dep" + i + ".jar"));
+        }
+        options = ReadOnlyZipOptions.defaults();
+        if (snapshot) {
+            options = options.withIndexCacheDirectory(dir.resolve("index-cache"));
+            openAll();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public int openAll() throws IOException {
+        int total = 0;
+        for (Path zip : zips) {
+            try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip, options)) {
+                total += fs.entryExists("org") ? 1 : 0;
+            }
+        }
+        return total;
+    }
+}
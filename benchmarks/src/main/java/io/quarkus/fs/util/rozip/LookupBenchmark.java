@@ -0,0 +1,88 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures entry lookups by name: existence checks for present and absent
+ * entries, and metadata retrieval. Each invocation looks up {@value #SAMPLES}
+ * names spread over the whole archive, so results are per lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LookupBenchmark {
+
+    static final int SAMPLES = 4096;
+
+    @Param({ ArchiveUnderTest.ROZIP, ArchiveUnderTest.ZIPFS, ArchiveUnderTest.ZIPFILE })
+    String impl;
+
+    @Param({ "1000", "100000", "1000000" })
+    int entries;
+
+    ArchiveUnderTest archive;
+    String[] hits;
+    String[] misses;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Path zip = BenchmarkArchives.cached(entries, 16, ZipEntry.DEFLATED);
+        archive = ArchiveUnderTest.open(impl, zip);
+        hits = BenchmarkArchives.sampleNames(entries, SAMPLES);
+        misses = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            // same directories and lengths as real entries, but never present
+            misses[i] = hits[i].replace(".class", ".clasz");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        archive.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void entryExists(Blackhole bh) throws IOException {
+        for (String name : hits) {
+            bh.consume(archive.exists(name));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void entryMissing(Blackhole bh) throws IOException {
+        for (String name : misses) {
+            bh.consume(archive.exists(name));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void getEntryInfo(Blackhole bh) throws IOException {
+        for (String name : hits) {
+            bh.consume(archive.size(name));
+        }
+    }
+}
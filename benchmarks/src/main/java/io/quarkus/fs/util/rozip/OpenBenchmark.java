@@ -0,0 +1,52 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures opening and closing an archive, which is dominated by reading and
+ * indexing the central directory. Compared against the JDK's
+ * {@code ZipFileSystem} and {@link java.util.zip.ZipFile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OpenBenchmark {
+
+    @Param({ ArchiveUnderTest.ROZIP, ArchiveUnderTest.ZIPFS, ArchiveUnderTest.ZIPFILE })
+    String impl;
+
+    @Param({ "1000", "100000", "1000000" })
+    int entries;
+
+    Path zip;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        zip = BenchmarkArchives.cached(entries, 16, ZipEntry.DEFLATED);
+    }
+
+    @Benchmark
+    public Object open() throws IOException {
+        try (ArchiveUnderTest archive = ArchiveUnderTest.open(impl, zip)) {
+            return archive;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures reading a known set of class-sized entries once each, in an
+ * order that defeats locality, as a class loader does at startup: either
+ * each on demand, or after prefetching them all in one sweep. Each
+ * invocation starts from a freshly opened filesystem with an empty cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrefetchBenchmark {
+
+    static final int ENTRIES = 20_000;
+
+    @Param({ "2000", "20000" })
+    int reads;
+
+    @Param({ "POOLED", "MAPPED" })
+    String readMode;
+
+    Path zip;
+    String[] names;
+    ReadOnlyZipFileSystem fs;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        zip = BenchmarkArchives.cached(ENTRIES, 2048, ZipEntry.DEFLATED);
+        names = BenchmarkArchives.sampleNames(ENTRIES, reads);
+    }
+
+    @Setup(Level.Invocation)
+    public void open() throws IOException {
+        fs = ReadOnlyZipFileSystem.open(zip, ReadOnlyZipOptions.defaults()
+                .withReadMode(ReadOnlyZipOptions.ReadMode.valueOf(readMode))
+                .withEntryCacheSize(256L << 20));
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() throws IOException {
+        fs.close();
+    }
+
+    @Benchmark
+    public void readOnDemand(Blackhole bh) throws IOException {
+        for (String name : names) {
+            bh.consume(fs.read(fs.lookup(name)));
+        }
+    }
+
+    @Benchmark
+    public void prefetchThenRead(Blackhole bh) throws IOException {
+        fs.prefetch(Arrays.asList(names));
+        for (String name : names) {
+            bh.consume(fs.read(fs.lookup(name)));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading whole entries: small (class-file sized) and large
+ * entries, STORED and DEFLATED. Entries are read round-robin over
+ * {@link #ENTRIES} distinct entries, so any per-entry cache keeps all of
+ * them after warmup; this measures the steady state of repeated reads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmark {
+
+    static final int ENTRIES = 64;
+
+    @Param({ ArchiveUnderTest.ROZIP, ArchiveUnderTest.ROZIP_CACHE, ArchiveUnderTest.ROZIP_COMPRESSED_CACHE,
+            ArchiveUnderTest.ROZIP_OFF_HEAP_CACHE, ArchiveUnderTest.ZIPFS, ArchiveUnderTest.ZIPFILE })
+    String impl;
+
+    @Param({ "1024", "1048576" })
+    int size;
+
+    @Param({ "STORED", "DEFLATED" })
+    String method;
+
+    ArchiveUnderTest archive;
+    String[] names;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        int m = "STORED".equals(method) ? ZipEntry.STORED : ZipEntry.DEFLATED;
+        Path zip = BenchmarkArchives.cached(ENTRIES, size, m);
+        archive = ArchiveUnderTest.open(impl, zip);
+        names = BenchmarkArchives.entryNames(ENTRIES).toArray(new String[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        archive.close();
+    }
+
+    @Benchmark
+    public byte[] readEntryData() throws IOException {
+        String name = names[next];
+        next = (next + 1) % names.length;
+        return archive.read(name);
+    }
+}
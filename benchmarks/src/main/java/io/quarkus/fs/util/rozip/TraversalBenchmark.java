@@ -0,0 +1,67 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures listing one directory and walking the whole tree, for rozip
+ * with and without its directory index.
+ * {@link java.util.zip.ZipFile} has no directory index, so for it both
+ * operations scan every entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraversalBenchmark {
+
+    @Param({ ArchiveUnderTest.ROZIP, ArchiveUnderTest.ROZIP_DIRECTORY_INDEX, ArchiveUnderTest.ZIPFS,
+            ArchiveUnderTest.ZIPFILE })
+    String impl;
+
+    @Param({ "1000", "100000", "1000000" })
+    int entries;
+
+    ArchiveUnderTest archive;
+    String dir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Path zip = BenchmarkArchives.cached(entries, 16, ZipEntry.DEFLATED);
+        archive = ArchiveUnderTest.open(impl, zip);
+        String name = BenchmarkArchives.entryName(0);
+        dir = name.substring(0, name.lastIndexOf('/'));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        archive.close();
+    }
+
+    @Benchmark
+    public int newDirectoryStream() throws IOException {
+        return archive.list(dir);
+    }
+
+    @Benchmark
+    public long walk() throws IOException {
+        return archive.walk();
+    }
+}
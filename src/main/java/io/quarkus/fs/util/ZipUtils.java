@@ -270,10 +270,12 @@ public class ZipUtils {
      * making it immune to thread-interrupt-induced channel closures
      * (<a href="https://bugs.openjdk.org/browse/JDK-8316882">JDK-8316882</a>).
      * <p>
-     * Entry data is fully materialized in memory on each read (both the
-     * compressed and uncompressed bytes). Individual entries are capped at
-     * 256 MB uncompressed. Callers reading many entries concurrently against
-     * the same filesystem should be aware of the resulting heap usage.
+     * Entries opened with {@link java.nio.file.Files#newInputStream} or
+     * {@link java.nio.file.Files#newByteChannel} are read on demand;
+     * {@link java.nio.file.Files#readAllBytes} fully materializes the entry
+     * in memory (both the compressed and uncompressed bytes). Individual entries
+     * are capped at 256 MB uncompressed. Callers reading many entries concurrently
+     * against the same filesystem should be aware of the resulting heap usage.
      *
      * @param path the ZIP or JAR file
      * @return a read-only {@link FileSystem} instance
@@ -283,6 +285,26 @@ public class ZipUtils {
         return ReadOnlyZipFileSystem.open(path);
     }
 
+    /**
+     * Opens a read-only, non-interruptible {@link FileSystem} for the given ZIP/JAR file,
+     * sharing file handles and the parsed central directory with all other
+     * filesystems opened through this method for the same file.
+     * <p>
+     * This call is thread safe. Each invocation returns a distinct {@link FileSystem}
+     * that must be closed by its caller; the underlying file handles are closed
+     * once the last filesystem for the archive is closed. Paths that resolve to
+     * the same file share the same archive, while a file replaced on disk is
+     * opened afresh.
+     *
+     * @param path the ZIP or JAR file
+     * @return a read-only {@link FileSystem} instance
+     * @throws IOException if the file cannot be read or is not a valid ZIP archive
+     * @see #openReadOnly(Path)
+     */
+    public static FileSystem openReadOnlyShared(Path path) throws IOException {
+        return ReadOnlyZipFileSystem.openShared(path);
+    }
+
     /**
      * This is a hack to get past the <a href="https://bugs.openjdk.java.net/browse/JDK-8232879">JDK-8232879</a>
      * issue which causes CRC errors when writing out data to (jar) files using ZipFileSystem.
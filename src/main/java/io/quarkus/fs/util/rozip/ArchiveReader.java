@@ -0,0 +1,71 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Positional, read-only access to the bytes of a ZIP archive.
+ * <p>
+ * Every read specifies its absolute position, so implementations never
+ * share a file pointer between callers and are free to serve concurrent
+ * reads without a common lock. Implementations must be safe for use by
+ * multiple threads and must not be affected by thread interrupts: an
+ * interrupted reader must neither fail nor disturb reads made by other
+ * threads. This rules out {@link java.nio.channels.FileChannel} based
+ * reads, see <a href="https://bugs.openjdk.org/browse/JDK-8316882">JDK-8316882</a>.
+ * <p>
+ * After {@link #close()}, reads that have not yet started throw
+ * {@link java.nio.file.ClosedFileSystemException}; reads already in
+ * progress are allowed to complete.
+ *
+ * @see ReadOnlyZipFileSystem
+ */
+interface ArchiveReader extends Closeable {
+
+    /**
+     * @return the length of the archive in bytes
+     */
+    long length();
+
+    /**
+     * Reads exactly {@code len} bytes starting at the given absolute position.
+     *
+     * @param position absolute offset within the archive
+     * @param buf the destination buffer
+     * @param off offset within {@code buf}
+     * @param len number of bytes to read
+     * @throws java.nio.file.ClosedFileSystemException if this reader has been closed
+     * @throws java.io.EOFException if the archive ends before {@code len} bytes are read
+     * @throws IOException if an I/O error occurs
+     */
+    void readFully(long position, byte[] buf, int off, int len) throws IOException;
+
+    /**
+     * Reads exactly {@code buf.length} bytes starting at the given absolute position.
+     *
+     * @see #readFully(long, byte[], int, int)
+     */
+    default void readFully(long position, byte[] buf) throws IOException {
+        readFully(position, buf, 0, buf.length);
+    }
+
+    /**
+     * Returns a read-only view of {@code len} bytes starting at the given
+     * absolute position without copying them, if this reader supports it.
+     * The returned buffer's position is 0 and its limit is {@code len}.
+     * <p>
+     * The default implementation returns {@code null}; callers must then fall
+     * back to {@link #readFully(long, byte[], int, int)}.
+     *
+     * @param position absolute offset within the archive
+     * @param len number of bytes
+     * @return a read-only view of the bytes, or {@code null} if not supported
+     *         for this range
+     * @throws java.nio.file.ClosedFileSystemException if this reader has been closed
+     * @throws IOException if the range is outside the archive
+     */
+    default ByteBuffer slice(long position, int len) throws IOException {
+        return null;
+    }
+}
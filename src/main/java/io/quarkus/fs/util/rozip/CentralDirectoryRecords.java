@@ -0,0 +1,109 @@
+package io.quarkus.fs.util.rozip;
+
+/**
+ * Entry metadata of a {@link CompactEntryTable} that is decoded from the raw
+ * central directory on access instead of when the archive is opened.
+ * <p>
+ * The central directory bytes are retained as read from the archive, along
+ * with the offset of each entry's record, indexed like the table's sorted
+ * names. Every accessor decodes its field from the record, including the
+ * ZIP64 extended information and timestamp extra fields when present, so
+ * opening an archive only costs locating the records and indexing the names.
+ * This suits archives that are opened to probe for a handful of entries,
+ * at the price of keeping the central directory in memory (typically about
+ * as much as the decoded metadata would take) and of decoding on every
+ * access.
+ * <p>
+ * The records have been validated by
+ * {@link CompactEntryTable#buildFromCentralDirectory} and are not checked
+ * again.
+ * <p>
+ * Instances are immutable and safe for concurrent use.
+ */
+final class CentralDirectoryRecords {
+
+    // Central directory entry header field offsets
+    private static final int CD_HEADER_SIZE = 46;
+    private static final int CD_OFF_COMPRESSION_METHOD = 10;
+    private static final int CD_OFF_DOS_TIME = 12;
+    private static final int CD_OFF_DOS_DATE = 14;
+    private static final int CD_OFF_CRC32 = 16;
+    private static final int CD_OFF_COMPRESSED_SIZE = 20;
+    private static final int CD_OFF_UNCOMPRESSED_SIZE = 24;
+    private static final int CD_OFF_NAME_LENGTH = 28;
+    private static final int CD_OFF_EXTRA_LENGTH = 30;
+    private static final int CD_OFF_LOCAL_HEADER_OFFSET = 42;
+
+    private static final long ZIP64_SENTINEL = 0xFFFFFFFFL;
+
+    private final byte[] cdBytes;
+    private final int[] recordOffsets;
+
+    /**
+     * @param cdBytes the raw central directory bytes
+     * @param recordOffsets the offset in {@code cdBytes} of the record of
+     *        each entry, in the order of the table's entries
+     */
+    CentralDirectoryRecords(byte[] cdBytes, int[] recordOffsets) {
+        this.cdBytes = cdBytes;
+        this.recordOffsets = recordOffsets;
+    }
+
+    long compressedSize(int index) {
+        return zip64Field(recordOffsets[index], 1);
+    }
+
+    long uncompressedSize(int index) {
+        return zip64Field(recordOffsets[index], 0);
+    }
+
+    long crc32(int index) {
+        return LittleEndian.readUint32(cdBytes, recordOffsets[index] + CD_OFF_CRC32);
+    }
+
+    long localHeaderOffset(int index) {
+        return zip64Field(recordOffsets[index], 2);
+    }
+
+    /**
+     * @return the last-modified time in the stored form of {@link DosTime}
+     */
+    long lastModifiedTime(int index) {
+        int pos = recordOffsets[index];
+        int dosTime = LittleEndian.readUint16(cdBytes, pos + CD_OFF_DOS_TIME);
+        int dosDate = LittleEndian.readUint16(cdBytes, pos + CD_OFF_DOS_DATE);
+        return ZipCentralDirectory.readTimestampFromExtra(cdBytes, extraOffset(pos),
+                LittleEndian.readUint16(cdBytes, pos + CD_OFF_EXTRA_LENGTH), DosTime.raw(dosDate, dosTime));
+    }
+
+    int compressionMethod(int index) {
+        // stored as a byte by the eagerly decoded table
+        return LittleEndian.readUint16(cdBytes, recordOffsets[index] + CD_OFF_COMPRESSION_METHOD) & 0xFF;
+    }
+
+    /**
+     * Reads a size or offset field of the record at {@code pos}, taking its
+     * value from the ZIP64 extended information extra field when any of the
+     * three fields holds the ZIP64 sentinel.
+     *
+     * @param field 0 for the uncompressed size, 1 for the compressed size,
+     *        2 for the local header offset, in the order of
+     *        {@link ZipCentralDirectory#readZip64Extra}
+     */
+    private long zip64Field(int pos, int field) {
+        long uncompressedSize = LittleEndian.readUint32(cdBytes, pos + CD_OFF_UNCOMPRESSED_SIZE);
+        long compressedSize = LittleEndian.readUint32(cdBytes, pos + CD_OFF_COMPRESSED_SIZE);
+        long localHeaderOffset = LittleEndian.readUint32(cdBytes, pos + CD_OFF_LOCAL_HEADER_OFFSET);
+        if (uncompressedSize != ZIP64_SENTINEL && compressedSize != ZIP64_SENTINEL
+                && localHeaderOffset != ZIP64_SENTINEL) {
+            return field == 0 ? uncompressedSize : field == 1 ? compressedSize : localHeaderOffset;
+        }
+        return ZipCentralDirectory.readZip64Extra(cdBytes, extraOffset(pos),
+                LittleEndian.readUint16(cdBytes, pos + CD_OFF_EXTRA_LENGTH),
+                uncompressedSize, compressedSize, localHeaderOffset)[field];
+    }
+
+    private int extraOffset(int pos) {
+        return pos + CD_HEADER_SIZE + LittleEndian.readUint16(cdBytes, pos + CD_OFF_NAME_LENGTH);
+    }
+}
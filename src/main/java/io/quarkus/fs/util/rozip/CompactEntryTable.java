@@ -1,11 +1,16 @@
 package io.quarkus.fs.util.rozip;
 
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * A memory-efficient, immutable index of ZIP central directory entries.
@@ -28,8 +33,13 @@ import java.util.List;
  * <p>
  * Entry metadata (compressed size, uncompressed size, CRC-32, local
  * header offset, last-modified time, compression method, directory flag)
- * is stored in parallel primitive arrays indexed by the same entry index,
- * keeping data dense and cache-friendly.
+ * is stored in parallel columns indexed by the same entry index,
+ * keeping data dense and cache-friendly. The 64-bit columns are
+ * {@link PackedLongColumn}s, which store a 32-bit delta per entry and keep
+ * the rare values that do not fit, such as ZIP64 sizes and offsets, in a
+ * side table, so the metadata takes about 25 bytes per entry.
+ * Last-modified times taken from the DOS fields are stored unconverted
+ * and only converted to epoch milliseconds when read, see {@link DosTime}.
  *
  * <pre>
  * nameBytes:   [ c o m / A . c l a s s c o m / B . c l a s s ]
@@ -42,6 +52,47 @@ import java.util.List;
  * ...
  * </pre>
  *
+ * <h2>Lazy metadata</h2>
+ *
+ * Alternatively, the metadata arrays can be left out and the raw central
+ * directory retained instead, with the offset of each entry's record in
+ * {@link #records}: only names and directory flags are extracted when the
+ * archive is opened, and the other metadata is decoded from the record
+ * whenever it is accessed. See {@link CentralDirectoryRecords}.
+ *
+ * <h2>Compact names</h2>
+ *
+ * Alternatively, the names can be stored front-coded in {@link #frontCoded}
+ * instead of {@link #nameBytes} and {@link #nameOffsets}, each name as the
+ * length of the prefix it shares with its predecessor and the remaining
+ * suffix. Names in an archive share long package paths, so this typically
+ * shrinks them to a fraction of their size, at the price of decoding names
+ * during lookups. Compact tables have no hash index, and lookups encode the
+ * query to UTF-8 first. See {@link FrontCodedNames}.
+ *
+ * <h2>Hash index</h2>
+ *
+ * Exact-name lookups can optionally be served by an open-addressing hash
+ * table ({@link #hashSlots}) instead of the binary search: an {@code int[]}
+ * whose length is a power of two of at least twice the entry count, mapping
+ * each slot to an entry index or {@code -1}. A name's home slot is derived
+ * from a hash of its UTF-8 bytes and collisions are resolved by linear
+ * probing, so a lookup typically compares against a single stored name
+ * rather than the ~17 names a binary search visits in a 100K-entry archive.
+ * The table costs 8 to 16 bytes per entry. Prefix searches (directory
+ * listings and implicit directories) always use the sorted order.
+ *
+ * <h2>Allocation-free lookups</h2>
+ *
+ * Exact-name lookups ({@link #indexOf(String)}, {@link #exists},
+ * {@link #hasEntriesUnder}) compare the query {@link String} against the
+ * stored UTF-8 bytes character by character instead of encoding it first,
+ * and {@link #indexOf(String)} returns a primitive index whose metadata is
+ * read with accessors such as {@link #uncompressedSize(int)}, so a lookup
+ * allocates nothing. This applies to names made of Latin-1 characters,
+ * which covers virtually all class and resource names; other names are
+ * encoded to UTF-8 first.
+ *
  * <h2>Directory tree</h2>
  *
  * Directory children are derived from the sorted entry names at query
@@ -53,6 +104,20 @@ import java.util.List;
  * directories (not present as explicit entries in the ZIP but implied
  * by file paths) are detected by checking whether any entry name
  * starts with the directory prefix.
+ * <p>
+ * The scan visits the whole subtree of the directory, so listing the root
+ * or a top-level directory of a large archive visits almost every entry.
+ * Optionally, a {@link DirectoryIndex} built when the archive is opened
+ * links every entry and implicit directory to its parent and siblings, and
+ * a listing follows the links of the directory's immediate children
+ * instead.
+ *
+ * <h2>Snapshots</h2>
+ *
+ * The arrays, including the hash index, can be written to a
+ * {@link ByteBuffer} with {@link #writeTo} and restored with {@link #readFrom}, which lets {@link EntryTableSnapshot}
+ * persist a table and skip parsing and sorting when the same archive is
+ * opened again.
  *
  * <h2>Thread safety</h2>
  *
@@ -81,72 +146,168 @@ final class CompactEntryTable {
 
     private final byte[] nameBytes;
     private final int[] nameOffsets;
-    private final long[] localHeaderOffsets;
-    private final long[] compressedSizes;
-    private final long[] uncompressedSizes;
+    private final PackedLongColumn localHeaderOffsets;
+    private final PackedLongColumn compressedSizes;
+    private final PackedLongColumn uncompressedSizes;
     private final int[] crc32Values;
-    private final long[] lastModifiedTimes;
+    private final PackedLongColumn lastModifiedTimes;
     private final byte[] compressionMethods;
     private final BitSet directories;
     private final int entryCount;
+    private final int[] hashSlots;
+    private final CentralDirectoryRecords records;
+    private final FrontCodedNames frontCoded;
+    private final DirectoryIndex directoryIndex;
 
     /**
      * Builds a compact entry table directly from raw central directory bytes.
      * Parses entry metadata and references names as (offset, length) pairs
      * into {@code cdBytes} throughout parsing and sorting, then copies the
      * sorted names into a single concatenated byte array.
+     * <p>
+     * Central directories of at least
+     * {@link ReadOnlyZipFileSystem#PARALLEL_PARSE_THRESHOLD} entries are
+     * parsed and sorted in parallel in the common {@link ForkJoinPool}: the
+     * record boundaries are found in one sequential pass that only reads the
+     * length fields, the records are then decoded in chunks concurrently, and
+     * {@link EntryNameSorter} sorts partitions of the entries concurrently
+     * and merges them. Smaller central directories, and all of them
+     * when the common pool has no parallelism, are handled on the calling
+     * thread.
+     * <p>
+     * With {@code lazyMetadata}, only the names and directory flags are
+     * extracted from the records and {@code cdBytes} is retained by the
+     * table to decode the rest of the metadata on access; it must not be
+     * modified afterwards.
      *
      * @param cdBytes the raw central directory bytes
      * @param cdSize the number of valid bytes in {@code cdBytes}
      * @param totalEntries the declared number of entries
      * @param cdOffset the absolute file offset of the central directory (for error messages)
+     * @param hashIndex whether to build a hash index for exact-name lookups
+     * @param lazyMetadata whether to decode entry metadata on access
      * @return a new compact entry table
      * @throws IOException if the central directory is malformed
      */
     static CompactEntryTable buildFromCentralDirectory(byte[] cdBytes, int cdSize,
-            long totalEntries, long cdOffset) throws IOException {
+            long totalEntries, long cdOffset, boolean hashIndex, boolean lazyMetadata) throws IOException {
+        boolean parallel = totalEntries >= ReadOnlyZipFileSystem.PARALLEL_PARSE_THRESHOLD
+                && ForkJoinPool.getCommonPoolParallelism() > 1;
+        return buildFromCentralDirectory(cdBytes, cdSize, totalEntries, cdOffset, hashIndex, lazyMetadata,
+                parallel);
+    }
+
+    /**
+     * Builds a compact entry table from raw central directory bytes,
+     * explicitly choosing between the sequential and the parallel build.
+     *
+     * @see #buildFromCentralDirectory(byte[], int, long, long, boolean, boolean)
+     */
+    static CompactEntryTable buildFromCentralDirectory(byte[] cdBytes, int cdSize,
+            long totalEntries, long cdOffset, boolean hashIndex, boolean lazyMetadata, boolean parallel)
+            throws IOException {
         int count = (int) Math.min(totalEntries, Integer.MAX_VALUE);
         if (count == 0) {
             return empty();
         }
 
-        int[] nameStarts = new int[count];
-        int[] nameLens = new int[count];
-        long[] tmpLocalHeaderOffsets = new long[count];
-        long[] tmpCompressedSizes = new long[count];
-        long[] tmpUncompressedSizes = new long[count];
-        int[] tmpCrc32Values = new int[count];
-        long[] tmpLastModifiedTimes = new long[count];
-        byte[] tmpCompressionMethods = new byte[count];
-        BitSet tmpDirectories = new BitSet(count);
-
-        int actualCount = 0;
-        int pos = 0;
-        for (int i = 0; i < count && pos + CD_HEADER_SIZE <= cdSize; i++) {
-            if (LittleEndian.readInt32(cdBytes, pos) != ZipCentralDirectory.CENTRAL_DIR_SIG) {
-                throw new IOException(
-                        "Invalid central directory entry signature at offset " + (cdOffset + pos));
+        ParsedEntries parsed = new ParsedEntries(count, lazyMetadata);
+        if (lazyMetadata) {
+            // extracting a name is too little work to be worth a parallel pass
+            int pos = 0;
+            for (int i = 0; i < count && pos + CD_HEADER_SIZE <= cdSize; i++) {
+                int next = nextRecord(cdBytes, pos, cdSize, cdOffset);
+                parsed.parseName(i, cdBytes, pos);
+                parsed.count++;
+                pos = next;
+            }
+        } else if (parallel) {
+            int[] recordStarts = new int[count];
+            int pos = 0;
+            for (int i = 0; i < count && pos + CD_HEADER_SIZE <= cdSize; i++) {
+                recordStarts[i] = pos;
+                pos = nextRecord(cdBytes, pos, cdSize, cdOffset);
+                parsed.count++;
+            }
+            ForkJoinPool.commonPool().invoke(new ParseTask(cdBytes, recordStarts, parsed, 0, parsed.count));
+        } else {
+            int pos = 0;
+            for (int i = 0; i < count && pos + CD_HEADER_SIZE <= cdSize; i++) {
+                int next = nextRecord(cdBytes, pos, cdSize, cdOffset);
+                parsed.parse(i, cdBytes, pos);
+                parsed.count++;
+                pos = next;
             }
+        }
 
-            int method = LittleEndian.readUint16(cdBytes, pos + CD_OFF_COMPRESSION_METHOD);
-            int dosTime = LittleEndian.readUint16(cdBytes, pos + CD_OFF_DOS_TIME);
-            int dosDate = LittleEndian.readUint16(cdBytes, pos + CD_OFF_DOS_DATE);
-            long crc32 = LittleEndian.readUint32(cdBytes, pos + CD_OFF_CRC32);
-            long compressedSize = LittleEndian.readUint32(cdBytes, pos + CD_OFF_COMPRESSED_SIZE);
-            long uncompressedSize = LittleEndian.readUint32(cdBytes, pos + CD_OFF_UNCOMPRESSED_SIZE);
-            int origNameLen = LittleEndian.readUint16(cdBytes, pos + CD_OFF_NAME_LENGTH);
-            int extraLen = LittleEndian.readUint16(cdBytes, pos + CD_OFF_EXTRA_LENGTH);
-            int commentLen = LittleEndian.readUint16(cdBytes, pos + CD_OFF_COMMENT_LENGTH);
-            long localHeaderOffset = LittleEndian.readUint32(cdBytes, pos + CD_OFF_LOCAL_HEADER_OFFSET);
+        return sortAndBuildFromCd(parsed, cdBytes, hashIndex, parallel);
+    }
 
-            if (pos + CD_HEADER_SIZE + origNameLen + extraLen + commentLen > cdSize) {
-                throw new IOException("Truncated central directory entry at offset " + (cdOffset + pos));
-            }
+    /**
+     * Validates the signature and lengths of the central directory record at
+     * {@code pos}.
+     *
+     * @return the position of the next record
+     * @throws IOException if the record is malformed or truncated
+     */
+    private static int nextRecord(byte[] cdBytes, int pos, int cdSize, long cdOffset) throws IOException {
+        if (LittleEndian.readInt32(cdBytes, pos) != ZipCentralDirectory.CENTRAL_DIR_SIG) {
+            throw new IOException(
+                    "Invalid central directory entry signature at offset " + (cdOffset + pos));
+        }
+        int end = pos + CD_HEADER_SIZE
+                + LittleEndian.readUint16(cdBytes, pos + CD_OFF_NAME_LENGTH)
+                + LittleEndian.readUint16(cdBytes, pos + CD_OFF_EXTRA_LENGTH)
+                + LittleEndian.readUint16(cdBytes, pos + CD_OFF_COMMENT_LENGTH);
+        if (end > cdSize) {
+            throw new IOException("Truncated central directory entry at offset " + (cdOffset + pos));
+        }
+        return end;
+    }
 
-            int extraOffset = pos + CD_HEADER_SIZE + origNameLen;
+    /**
+     * Entry metadata decoded from the central directory, in central
+     * directory order, before sorting. Names are referenced as (offset,
+     * length) pairs into the central directory bytes. Each index is written
+     * by exactly one thread, so records can be decoded concurrently. For
+     * lazy metadata only the names, directory flags and record offsets are
+     * collected and the metadata arrays are {@code null}.
+     */
+    private static final class ParsedEntries {
 
+        final int[] recordStarts;
+        final int[] nameStarts;
+        final int[] nameLens;
+        final long[] localHeaderOffsets;
+        final long[] compressedSizes;
+        final long[] uncompressedSizes;
+        final int[] crc32Values;
+        final long[] lastModifiedTimes;
+        final byte[] compressionMethods;
+        final boolean[] directories;
+        int count;
+
+        ParsedEntries(int capacity, boolean lazyMetadata) {
+            recordStarts = lazyMetadata ? new int[capacity] : null;
+            nameStarts = new int[capacity];
+            nameLens = new int[capacity];
+            localHeaderOffsets = lazyMetadata ? null : new long[capacity];
+            compressedSizes = lazyMetadata ? null : new long[capacity];
+            uncompressedSizes = lazyMetadata ? null : new long[capacity];
+            crc32Values = lazyMetadata ? null : new int[capacity];
+            lastModifiedTimes = lazyMetadata ? null : new long[capacity];
+            compressionMethods = lazyMetadata ? null : new byte[capacity];
+            directories = new boolean[capacity];
+        }
+
+        /**
+         * Extracts the name and directory flag of the record at {@code pos},
+         * which has been validated by {@link #nextRecord}, into index
+         * {@code i}, along with the record offset for lazy metadata.
+         */
+        void parseName(int i, byte[] cdBytes, int pos) {
             int nameStart = pos + CD_HEADER_SIZE;
-            int nameLen = origNameLen;
+            int nameLen = LittleEndian.readUint16(cdBytes, pos + CD_OFF_NAME_LENGTH);
             if (nameLen > 0 && cdBytes[nameStart] == '/') {
                 nameStart++;
                 nameLen--;
@@ -155,9 +316,31 @@ final class CompactEntryTable {
             if (isDirectory) {
                 nameLen--;
             }
+            if (recordStarts != null) {
+                recordStarts[i] = pos;
+            }
+            nameStarts[i] = nameStart;
+            nameLens[i] = nameLen;
+            directories[i] = isDirectory;
+        }
 
-            nameStarts[actualCount] = nameStart;
-            nameLens[actualCount] = nameLen;
+        /**
+         * Decodes the record at {@code pos}, which has been validated by
+         * {@link #nextRecord}, into index {@code i}.
+         */
+        void parse(int i, byte[] cdBytes, int pos) {
+            parseName(i, cdBytes, pos);
+            int method = LittleEndian.readUint16(cdBytes, pos + CD_OFF_COMPRESSION_METHOD);
+            int dosTime = LittleEndian.readUint16(cdBytes, pos + CD_OFF_DOS_TIME);
+            int dosDate = LittleEndian.readUint16(cdBytes, pos + CD_OFF_DOS_DATE);
+            long crc32 = LittleEndian.readUint32(cdBytes, pos + CD_OFF_CRC32);
+            long compressedSize = LittleEndian.readUint32(cdBytes, pos + CD_OFF_COMPRESSED_SIZE);
+            long uncompressedSize = LittleEndian.readUint32(cdBytes, pos + CD_OFF_UNCOMPRESSED_SIZE);
+            int origNameLen = LittleEndian.readUint16(cdBytes, pos + CD_OFF_NAME_LENGTH);
+            int extraLen = LittleEndian.readUint16(cdBytes, pos + CD_OFF_EXTRA_LENGTH);
+            long localHeaderOffset = LittleEndian.readUint32(cdBytes, pos + CD_OFF_LOCAL_HEADER_OFFSET);
+
+            int extraOffset = pos + CD_HEADER_SIZE + origNameLen;
 
             if (ZipCentralDirectory.hasZip64Overrides(compressedSize, uncompressedSize,
                     localHeaderOffset)) {
@@ -168,55 +351,79 @@ final class CompactEntryTable {
                 localHeaderOffset = zip64[2];
             }
 
+            // converting a DOS time needs the time zone rules, so it is
+            // deferred until the time is read
             long lastModified = ZipCentralDirectory.readTimestampFromExtra(cdBytes,
-                    extraOffset, extraLen,
-                    ZipCentralDirectory.dosToEpochMillis(dosDate, dosTime));
-
-            tmpLocalHeaderOffsets[actualCount] = localHeaderOffset;
-            tmpCompressedSizes[actualCount] = compressedSize;
-            tmpUncompressedSizes[actualCount] = uncompressedSize;
-            tmpCrc32Values[actualCount] = (int) crc32;
-            tmpLastModifiedTimes[actualCount] = lastModified;
-            tmpCompressionMethods[actualCount] = (byte) method;
-            if (isDirectory) {
-                tmpDirectories.set(actualCount);
-            }
+                    extraOffset, extraLen, DosTime.raw(dosDate, dosTime));
+
+            localHeaderOffsets[i] = localHeaderOffset;
+            compressedSizes[i] = compressedSize;
+            uncompressedSizes[i] = uncompressedSize;
+            crc32Values[i] = (int) crc32;
+            lastModifiedTimes[i] = lastModified;
+            compressionMethods[i] = (byte) method;
+        }
+    }
 
-            actualCount++;
-            pos += CD_HEADER_SIZE + origNameLen + extraLen + commentLen;
+    /**
+     * Decodes the records with the given start offsets, splitting the range
+     * until it is small enough to decode on one thread.
+     */
+    private static final class ParseTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private static final int CHUNK_SIZE = 16 * 1024;
+
+        private final byte[] cdBytes;
+        private final int[] recordStarts;
+        private final ParsedEntries parsed;
+        private final int from;
+        private final int to;
+
+        ParseTask(byte[] cdBytes, int[] recordStarts, ParsedEntries parsed, int from, int to) {
+            this.cdBytes = cdBytes;
+            this.recordStarts = recordStarts;
+            this.parsed = parsed;
+            this.from = from;
+            this.to = to;
         }
 
-        return sortAndBuildFromCd(actualCount, cdBytes, nameStarts, nameLens,
-                tmpLocalHeaderOffsets, tmpCompressedSizes, tmpUncompressedSizes,
-                tmpCrc32Values, tmpLastModifiedTimes, tmpCompressionMethods, tmpDirectories);
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                for (int i = from; i < to; i++) {
+                    parsed.parse(i, cdBytes, recordStarts[i]);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ParseTask(cdBytes, recordStarts, parsed, from, mid),
+                    new ParseTask(cdBytes, recordStarts, parsed, mid, to));
+        }
     }
 
     private static CompactEntryTable empty() {
+        PackedLongColumn none = PackedLongColumn.of(new long[0]);
         return new CompactEntryTable(EMPTY_BYTES, new int[] { 0 },
-                new long[0], new long[0], new long[0], new int[0],
-                new long[0], new byte[0], new BitSet(), 0);
+                none, none, none, new int[0],
+                none, new byte[0], new BitSet(), 0, null, null, null, null);
     }
 
     /**
      * Sorts entries by name, deduplicates, and builds the final compact
      * arrays. Names are referenced as (offset, length) pairs into
      * {@code cdBytes} and copied into the concatenated name array only
-     * once, in sorted order.
+     * once, in sorted order. For lazy metadata, the record offsets are
+     * permuted instead of the metadata arrays. The hash index, if requested,
+     * is built last from the final arrays.
      */
-    private static CompactEntryTable sortAndBuildFromCd(int count, byte[] cdBytes,
-            int[] nameStarts, int[] nameLens,
-            long[] tmpLocalHeaderOffsets, long[] tmpCompressedSizes,
-            long[] tmpUncompressedSizes, int[] tmpCrc32Values,
-            long[] tmpLastModifiedTimes, byte[] tmpCompressionMethods,
-            BitSet tmpDirectories) {
+    private static CompactEntryTable sortAndBuildFromCd(ParsedEntries parsed, byte[] cdBytes,
+            boolean hashIndex, boolean parallel) {
+        int count = parsed.count;
+        int[] nameStarts = parsed.nameStarts;
+        int[] nameLens = parsed.nameLens;
 
-        int[] sortOrder = new int[count];
-        for (int i = 0; i < count; i++) {
-            sortOrder[i] = i;
-        }
-        mergeSort(sortOrder, count, (a, b) -> compareBytesRange(
-                cdBytes, nameStarts[a], nameLens[a],
-                cdBytes, nameStarts[b], nameLens[b]));
+        int[] sortOrder = new EntryNameSorter(cdBytes, nameStarts, nameLens, count).sort(parallel);
 
         boolean[] skip = new boolean[count];
         int skipCount = 0;
@@ -240,14 +447,16 @@ final class CompactEntryTable {
 
         int finalCount = count - skipCount;
 
+        boolean lazy = parsed.recordStarts != null;
         byte[] nameBytesArr = new byte[totalNameBytes];
         int[] nameOffsetsArr = new int[finalCount + 1];
-        long[] localHeaderOffsetsArr = new long[finalCount];
-        long[] compressedSizesArr = new long[finalCount];
-        long[] uncompressedSizesArr = new long[finalCount];
-        int[] crc32Arr = new int[finalCount];
-        long[] lastModArr = new long[finalCount];
-        byte[] methodsArr = new byte[finalCount];
+        int[] recordOffsetsArr = lazy ? new int[finalCount] : null;
+        long[] localHeaderOffsetsArr = lazy ? null : new long[finalCount];
+        long[] compressedSizesArr = lazy ? null : new long[finalCount];
+        long[] uncompressedSizesArr = lazy ? null : new long[finalCount];
+        int[] crc32Arr = lazy ? null : new int[finalCount];
+        long[] lastModArr = lazy ? null : new long[finalCount];
+        byte[] methodsArr = lazy ? null : new byte[finalCount];
         BitSet dirsSet = new BitSet(finalCount);
 
         int namePos = 0;
@@ -264,13 +473,17 @@ final class CompactEntryTable {
             System.arraycopy(cdBytes, nStart, nameBytesArr, namePos, nLen);
             namePos += nLen;
 
-            localHeaderOffsetsArr[outIdx] = tmpLocalHeaderOffsets[orig];
-            compressedSizesArr[outIdx] = tmpCompressedSizes[orig];
-            uncompressedSizesArr[outIdx] = tmpUncompressedSizes[orig];
-            crc32Arr[outIdx] = tmpCrc32Values[orig];
-            lastModArr[outIdx] = tmpLastModifiedTimes[orig];
-            methodsArr[outIdx] = tmpCompressionMethods[orig];
-            if (tmpDirectories.get(orig)) {
+            if (lazy) {
+                recordOffsetsArr[outIdx] = parsed.recordStarts[orig];
+            } else {
+                localHeaderOffsetsArr[outIdx] = parsed.localHeaderOffsets[orig];
+                compressedSizesArr[outIdx] = parsed.compressedSizes[orig];
+                uncompressedSizesArr[outIdx] = parsed.uncompressedSizes[orig];
+                crc32Arr[outIdx] = parsed.crc32Values[orig];
+                lastModArr[outIdx] = parsed.lastModifiedTimes[orig];
+                methodsArr[outIdx] = parsed.compressionMethods[orig];
+            }
+            if (parsed.directories[orig]) {
                 dirsSet.set(outIdx);
             }
             outIdx++;
@@ -278,21 +491,198 @@ final class CompactEntryTable {
         nameOffsetsArr[finalCount] = namePos;
 
         return new CompactEntryTable(nameBytesArr, nameOffsetsArr,
-                localHeaderOffsetsArr, compressedSizesArr, uncompressedSizesArr,
-                crc32Arr, lastModArr, methodsArr, dirsSet, finalCount);
+                pack(localHeaderOffsetsArr), pack(compressedSizesArr), pack(uncompressedSizesArr),
+                crc32Arr, pack(lastModArr), methodsArr, dirsSet, finalCount,
+                hashIndex ? buildHashIndex(nameBytesArr, nameOffsetsArr, finalCount) : null,
+                lazy ? new CentralDirectoryRecords(cdBytes, recordOffsetsArr) : null, null, null);
+    }
+
+    private static PackedLongColumn pack(long[] values) {
+        return values == null ? null : PackedLongColumn.of(values);
+    }
+
+    /**
+     * Builds the open-addressing hash table described in the class
+     * documentation for the given sorted names.
+     */
+    private static int[] buildHashIndex(byte[] nameBytes, int[] nameOffsets, int count) {
+        int[] slots = new int[hashTableSize(count)];
+        Arrays.fill(slots, -1);
+        int mask = slots.length - 1;
+        for (int i = 0; i < count; i++) {
+            int start = nameOffsets[i];
+            int slot = hash(nameBytes, start, nameOffsets[i + 1] - start) & mask;
+            while (slots[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i;
+        }
+        return slots;
+    }
+
+    /**
+     * @return the smallest power of two that is at least {@code 2 * count},
+     *         keeping the load factor at or below 0.5
+     */
+    private static int hashTableSize(int count) {
+        return Integer.highestOneBit(Math.max(2 * count - 1, 1)) << 1;
+    }
+
+    /**
+     * Returns a table with the same entries that has a hash index if and only
+     * if {@code hashIndex} is {@code true}. The arrays are shared with this
+     * table; returns {@code this} if it already matches, or if this table has
+     * compact names, which are never hashed.
+     */
+    CompactEntryTable withHashIndex(boolean hashIndex) {
+        if (hashIndex == (hashSlots != null) || frontCoded != null) {
+            return this;
+        }
+        return new CompactEntryTable(nameBytes, nameOffsets, localHeaderOffsets, compressedSizes,
+                uncompressedSizes, crc32Values, lastModifiedTimes, compressionMethods, directories, entryCount,
+                hashIndex ? buildHashIndex(nameBytes, nameOffsets, entryCount) : null, records, null,
+                directoryIndex);
+    }
+
+    /**
+     * Returns a table with the same entries whose names are front-coded if
+     * and only if {@code compactNames} is {@code true}. The metadata is
+     * shared with this table; returns {@code this} if it already matches.
+     * The returned table has no hash index, which can be added to a table
+     * with plain names with {@link #withHashIndex}.
+     */
+    CompactEntryTable withCompactNames(boolean compactNames) {
+        if (compactNames == (frontCoded != null)) {
+            return this;
+        }
+        if (compactNames) {
+            return new CompactEntryTable(null, null, localHeaderOffsets, compressedSizes, uncompressedSizes,
+                    crc32Values, lastModifiedTimes, compressionMethods, directories, entryCount, null, records,
+                    FrontCodedNames.encode(nameBytes, nameOffsets, entryCount), directoryIndex);
+        }
+        int[] offsets = new int[entryCount + 1];
+        byte[] names = frontCoded.decodeAll(offsets);
+        return new CompactEntryTable(names, offsets, localHeaderOffsets, compressedSizes, uncompressedSizes,
+                crc32Values, lastModifiedTimes, compressionMethods, directories, entryCount, null, records, null,
+                directoryIndex);
+    }
+
+    /**
+     * Returns a table with the same entries that has a directory index if
+     * and only if {@code directoryIndex} is {@code true}. The other arrays
+     * are shared with this table; returns {@code this} if it already
+     * matches.
+     */
+    CompactEntryTable withDirectoryIndex(boolean directoryIndex) {
+        if (directoryIndex == (this.directoryIndex != null)) {
+            return this;
+        }
+        if (frontCoded != null) {
+            // the index is built from the plain names
+            return withCompactNames(false).withDirectoryIndex(directoryIndex).withCompactNames(true);
+        }
+        return new CompactEntryTable(nameBytes, nameOffsets, localHeaderOffsets, compressedSizes,
+                uncompressedSizes, crc32Values, lastModifiedTimes, compressionMethods, directories, entryCount,
+                hashSlots, records, null,
+                directoryIndex ? DirectoryIndex.build(nameBytes, nameOffsets, entryCount) : null);
+    }
+
+    /**
+     * @return {@code true} if directory listings use a directory index
+     */
+    boolean hasDirectoryIndex() {
+        return directoryIndex != null;
+    }
+
+    /**
+     * @return the number of bytes used by the directory index, 0 if there is none
+     */
+    long directoryIndexBytes() {
+        return directoryIndex == null ? 0 : directoryIndex.sizeInBytes();
+    }
+
+    /**
+     * @return {@code true} if entry names are stored front-coded
+     */
+    boolean hasCompactNames() {
+        return frontCoded != null;
+    }
+
+    /**
+     * @return the number of bytes used by the entry names, in either layout
+     */
+    long nameStorageBytes() {
+        return frontCoded != null ? frontCoded.sizeInBytes() : nameBytes.length + 4L * nameOffsets.length;
+    }
+
+    /**
+     * @return {@code true} if exact-name lookups use a hash index
+     */
+    boolean hasHashIndex() {
+        return hashSlots != null;
+    }
+
+    /**
+     * @return the number of bytes used by the hash index, 0 if there is none
+     */
+    long hashIndexBytes() {
+        return hashSlots == null ? 0 : 4L * hashSlots.length;
+    }
+
+    /**
+     * @return {@code true} if entry metadata is decoded from the retained
+     *         central directory on access
+     */
+    boolean hasLazyMetadata() {
+        return records != null;
+    }
+
+    /**
+     * Returns a table with the same entries whose metadata is held in arrays,
+     * decoding it from the central directory if this table has lazy
+     * metadata. Returns {@code this} otherwise.
+     */
+    private CompactEntryTable withDecodedMetadata() {
+        if (records == null) {
+            return this;
+        }
+        long[] localHeaderOffsetsArr = new long[entryCount];
+        long[] compressedSizesArr = new long[entryCount];
+        long[] uncompressedSizesArr = new long[entryCount];
+        int[] crc32Arr = new int[entryCount];
+        long[] lastModArr = new long[entryCount];
+        byte[] methodsArr = new byte[entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            localHeaderOffsetsArr[i] = records.localHeaderOffset(i);
+            compressedSizesArr[i] = records.compressedSize(i);
+            uncompressedSizesArr[i] = records.uncompressedSize(i);
+            crc32Arr[i] = (int) records.crc32(i);
+            lastModArr[i] = records.lastModifiedTime(i);
+            methodsArr[i] = (byte) records.compressionMethod(i);
+        }
+        return new CompactEntryTable(nameBytes, nameOffsets, pack(localHeaderOffsetsArr), pack(compressedSizesArr),
+                pack(uncompressedSizesArr), crc32Arr, pack(lastModArr), methodsArr, directories, entryCount, hashSlots,
+                null, frontCoded, directoryIndex);
     }
 
     /**
      * Constructs a table from pre-built parallel arrays. All arrays must
      * be consistently indexed: element {@code i} across all arrays
      * describes the same entry. Names must be sorted by unsigned UTF-8
-     * byte order.
+     * byte order. {@code hashSlots} is the hash index over these names,
+     * or {@code null}. If {@code records} is not {@code null}, the metadata
+     * arrays are {@code null} and metadata is decoded from it instead. If
+     * {@code frontCoded} is not {@code null}, it holds the names instead of
+     * {@code nameBytes} and {@code nameOffsets}, which are {@code null}, and
+     * there is no hash index. {@code directoryIndex} is the directory tree
+     * of these names, or {@code null}.
      */
     private CompactEntryTable(byte[] nameBytes, int[] nameOffsets,
-            long[] localHeaderOffsets, long[] compressedSizes,
-            long[] uncompressedSizes, int[] crc32Values,
-            long[] lastModifiedTimes, byte[] compressionMethods,
-            BitSet directories, int entryCount) {
+            PackedLongColumn localHeaderOffsets, PackedLongColumn compressedSizes,
+            PackedLongColumn uncompressedSizes, int[] crc32Values,
+            PackedLongColumn lastModifiedTimes, byte[] compressionMethods,
+            BitSet directories, int entryCount, int[] hashSlots, CentralDirectoryRecords records,
+            FrontCodedNames frontCoded, DirectoryIndex directoryIndex) {
         this.nameBytes = nameBytes;
         this.nameOffsets = nameOffsets;
         this.localHeaderOffsets = localHeaderOffsets;
@@ -303,6 +693,166 @@ final class CompactEntryTable {
         this.compressionMethods = compressionMethods;
         this.directories = directories;
         this.entryCount = entryCount;
+        this.hashSlots = hashSlots;
+        this.records = records;
+        this.frontCoded = frontCoded;
+        this.directoryIndex = directoryIndex;
+    }
+
+    /**
+     * Returns this table with lazy metadata and compact names decoded, the
+     * form in which {@link #writeTo} writes it. Decoding takes a pass over
+     * the whole central directory, so callers that need both
+     * {@link #serializedSize()} and {@link #writeTo} should decode once and
+     * call both on the result.
+     *
+     * @return this table if it is already fully decoded, or a decoded copy
+     */
+    CompactEntryTable decoded() {
+        return records != null || frontCoded != null ? withDecodedMetadata().withCompactNames(false) : this;
+    }
+
+    /**
+     * @return the number of bytes {@link #writeTo} writes for this table
+     */
+    int serializedSize() {
+        if (records != null || frontCoded != null) {
+            return decoded().serializedSize();
+        }
+        return 4 + 4 + nameBytes.length
+                + 4 * nameOffsets.length
+                + localHeaderOffsets.serializedSize()
+                + compressedSizes.serializedSize()
+                + uncompressedSizes.serializedSize()
+                + 4 * entryCount // CRC-32 values
+                + lastModifiedTimes.serializedSize()
+                + entryCount // compression methods
+                + 4 + 8 * directories.toLongArray().length
+                + 4 + 4 * (hashSlots == null ? 0 : hashSlots.length);
+    }
+
+    /**
+     * Writes the arrays of this table to the given buffer, in the buffer's
+     * byte order. Writes exactly {@link #serializedSize()} bytes. Lazy
+     * metadata and compact names are {@linkplain #decoded() decoded} first,
+     * so the written table is always fully decoded.
+     */
+    void writeTo(ByteBuffer out) {
+        if (records != null || frontCoded != null) {
+            decoded().writeTo(out);
+            return;
+        }
+        out.putInt(entryCount);
+        out.putInt(nameBytes.length);
+        out.put(nameBytes);
+        putInts(out, nameOffsets);
+        localHeaderOffsets.writeTo(out);
+        compressedSizes.writeTo(out);
+        uncompressedSizes.writeTo(out);
+        putInts(out, crc32Values);
+        lastModifiedTimes.writeTo(out);
+        out.put(compressionMethods);
+        long[] directoryWords = directories.toLongArray();
+        out.putInt(directoryWords.length);
+        putLongs(out, directoryWords);
+        int[] slots = hashSlots == null ? new int[0] : hashSlots;
+        out.putInt(slots.length);
+        putInts(out, slots);
+    }
+
+    /**
+     * Restores a table written by {@link #writeTo}, reading in the buffer's
+     * byte order. The structure is validated so that a damaged snapshot is
+     * rejected rather than producing out-of-bounds lookups; entry metadata
+     * is taken as is.
+     *
+     * @throws IOException if the data is truncated or inconsistent
+     */
+    static CompactEntryTable readFrom(ByteBuffer in) throws IOException {
+        try {
+            int count = in.getInt();
+            int nameLength = in.getInt();
+            // every entry needs at least 25 bytes of metadata, so this rejects
+            // corrupt counts before anything is allocated
+            if (count < 0 || nameLength < 0 || nameLength > in.remaining()
+                    || count > (in.remaining() - nameLength) / 25) {
+                throw new IOException("Corrupt entry table snapshot");
+            }
+            byte[] names = new byte[nameLength];
+            in.get(names);
+            int[] offsets = getInts(in, count + 1);
+            PackedLongColumn localHeaderOffsets = PackedLongColumn.readFrom(in, count);
+            PackedLongColumn compressedSizes = PackedLongColumn.readFrom(in, count);
+            PackedLongColumn uncompressedSizes = PackedLongColumn.readFrom(in, count);
+            int[] crc32Values = getInts(in, count);
+            PackedLongColumn lastModifiedTimes = PackedLongColumn.readFrom(in, count);
+            byte[] methods = new byte[count];
+            in.get(methods);
+            int words = in.getInt();
+            if (words < 0 || words > in.remaining() / 8) {
+                throw new IOException("Corrupt entry table snapshot");
+            }
+            BitSet directories = BitSet.valueOf(getLongs(in, words));
+            int slotCount = in.getInt();
+            if (slotCount != 0 && slotCount != hashTableSize(count) || slotCount > in.remaining() / 4) {
+                throw new IOException("Corrupt entry table snapshot");
+            }
+            int[] slots = slotCount == 0 ? null : getInts(in, slotCount);
+
+            if (offsets[0] != 0 || offsets[count] != nameLength || directories.length() > count) {
+                throw new IOException("Corrupt entry table snapshot");
+            }
+            for (int i = 0; i < count; i++) {
+                if (offsets[i] > offsets[i + 1]) {
+                    throw new IOException("Corrupt entry table snapshot");
+                }
+            }
+            if (slots != null) {
+                // every entry must occupy one slot, which also leaves the empty
+                // slots that terminate probing
+                int used = 0;
+                for (int slot : slots) {
+                    if (slot < -1 || slot >= count) {
+                        throw new IOException("Corrupt entry table snapshot");
+                    }
+                    if (slot >= 0) {
+                        used++;
+                    }
+                }
+                if (used != count) {
+                    throw new IOException("Corrupt entry table snapshot");
+                }
+            }
+            return new CompactEntryTable(names, offsets, localHeaderOffsets, compressedSizes,
+                    uncompressedSizes, crc32Values, lastModifiedTimes, methods, directories, count, slots, null, null,
+                    null);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated entry table snapshot", e);
+        }
+    }
+
+    private static void putInts(ByteBuffer out, int[] values) {
+        out.asIntBuffer().put(values);
+        out.position(out.position() + 4 * values.length);
+    }
+
+    private static void putLongs(ByteBuffer out, long[] values) {
+        out.asLongBuffer().put(values);
+        out.position(out.position() + 8 * values.length);
+    }
+
+    private static int[] getInts(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * count);
+        return values;
+    }
+
+    private static long[] getLongs(ByteBuffer in, int count) {
+        long[] values = new long[count];
+        in.asLongBuffer().get(values);
+        in.position(in.position() + 8 * count);
+        return values;
     }
 
     /**
@@ -321,7 +871,7 @@ final class CompactEntryTable {
      * @return the entry info, or {@code null} if not found
      */
     ZipEntryInfo getEntry(String name) {
-        int index = binarySearch(toUTF8(name));
+        int index = indexOf(name);
         if (index < 0) {
             return null;
         }
@@ -337,11 +887,7 @@ final class CompactEntryTable {
      * @return {@code true} if the name exists
      */
     boolean exists(String name) {
-        byte[] nameUtf8 = toUTF8(name);
-        if (binarySearch(nameUtf8) >= 0) {
-            return true;
-        }
-        return hasEntriesUnder(nameUtf8);
+        return indexOf(name) >= 0 || hasEntriesUnder(name);
     }
 
     /**
@@ -353,7 +899,118 @@ final class CompactEntryTable {
      * @return {@code true} if at least one entry is under this directory
      */
     boolean hasEntriesUnder(String name) {
-        return hasEntriesUnder(toUTF8(name));
+        if (frontCoded != null || !isLatin1(name)) {
+            return hasEntriesUnder(toUTF8(name));
+        }
+        if (name.isEmpty()) {
+            return entryCount > 0;
+        }
+        int lo = 0, hi = entryCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareLatin1(mid, name, true) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo < entryCount && compareLatin1(lo, name, true) == 0;
+    }
+
+    /**
+     * Looks up an entry by name without allocating.
+     *
+     * @param name the entry name (without leading {@code "/"})
+     * @return the index of the entry, to be passed to the accessors such as
+     *         {@link #uncompressedSize(int)}, or {@code -1} if not found
+     */
+    int indexOf(String name) {
+        if (frontCoded != null) {
+            return frontCoded.indexOf(toUTF8(name));
+        }
+        // hash the UTF-8 encoding of the name on the fly, as hash(byte[], ...) would
+        int h = 0;
+        int utf8Len = 0;
+        for (int i = 0; i < name.length(); i++) {
+            int c = name.charAt(i);
+            if (c < 0x80) {
+                h = 31 * h + c;
+                utf8Len++;
+            } else if (c < 0x100) {
+                h = 31 * (31 * h + (0xC0 | c >> 6)) + (0x80 | c & 0x3F);
+                utf8Len += 2;
+            } else {
+                return indexOf(toUTF8(name));
+            }
+        }
+        if (hashSlots == null) {
+            int lo = 0, hi = entryCount - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int cmp = compareLatin1(mid, name, false);
+                if (cmp < 0) {
+                    lo = mid + 1;
+                } else if (cmp > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+        int mask = hashSlots.length - 1;
+        int slot = mix(h) & mask;
+        int index;
+        while ((index = hashSlots[slot]) >= 0) {
+            if (nameOffsets[index + 1] - nameOffsets[index] == utf8Len && compareLatin1(index, name, false) == 0) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @param index an index returned by {@link #indexOf(String)}
+     * @return the name of the entry, without a trailing {@code "/"} for directories
+     */
+    String nameAt(int index) {
+        if (frontCoded != null) {
+            return frontCoded.nameAt(index);
+        }
+        int start = nameOffsets[index];
+        return new String(nameBytes, start, nameOffsets[index + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    long compressedSize(int index) {
+        return records != null ? records.compressedSize(index) : compressedSizes.get(index);
+    }
+
+    long uncompressedSize(int index) {
+        return records != null ? records.uncompressedSize(index) : uncompressedSizes.get(index);
+    }
+
+    /**
+     * @return the CRC-32 of the entry as an unsigned value
+     */
+    long crc32(int index) {
+        return records != null ? records.crc32(index) : Integer.toUnsignedLong(crc32Values[index]);
+    }
+
+    long localHeaderOffset(int index) {
+        return records != null ? records.localHeaderOffset(index) : localHeaderOffsets.get(index);
+    }
+
+    long lastModifiedTime(int index) {
+        return DosTime.toEpochMillis(records != null ? records.lastModifiedTime(index) : lastModifiedTimes.get(index));
+    }
+
+    int compressionMethod(int index) {
+        return records != null ? records.compressionMethod(index) : compressionMethods[index] & 0xFF;
+    }
+
+    boolean isDirectory(int index) {
+        return directories.get(index);
     }
 
     /**
@@ -371,13 +1028,19 @@ final class CompactEntryTable {
     List<String> getDirectoryChildren(String name) {
         byte[] nameUtf8 = toUTF8(name);
         byte[] prefix = toPrefixBytes(nameUtf8);
+        if (directoryIndex != null) {
+            return getIndexedDirectoryChildren(nameUtf8, prefix);
+        }
+        if (frontCoded != null) {
+            return getCompactDirectoryChildren(nameUtf8, prefix);
+        }
 
         int start = lowerBound(prefix);
         if (start >= entryCount || !nameStartsWith(start, prefix)) {
             if (nameUtf8.length == 0) {
                 return List.of();
             }
-            int idx = binarySearch(nameUtf8);
+            int idx = indexOf(nameUtf8);
             if (idx >= 0 && directories.get(idx)) {
                 return List.of();
             }
@@ -401,8 +1064,202 @@ final class CompactEntryTable {
     }
 
     /**
-     * Constructs a {@link ZipEntryInfo} from the parallel arrays at the
-     * given index.
+     * {@link #getDirectoryChildren} through the directory index.
+     */
+    private List<String> getIndexedDirectoryChildren(byte[] nameUtf8, byte[] prefix) {
+        int node = directoryNode(nameUtf8, prefix);
+        if (node < 0) {
+            return null;
+        }
+        int child = directoryIndex.firstChild(node);
+        if (child < 0) {
+            return node == directoryIndex.root() || directories.get(node) ? List.of() : null;
+        }
+        List<String> children = new ArrayList<>();
+        for (; child >= 0; child = directoryIndex.nextSibling(child)) {
+            children.add(childName(child));
+        }
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Finds the node of the directory index for the given name: the root,
+     * the entry of that name, or else the implicit directory that is the
+     * ancestor of the first entry under {@code prefix}, found by climbing
+     * one level for the entry itself and one per {@code '/'} after the
+     * prefix.
+     *
+     * @return the node, or {@code -1} if there is neither an entry nor an
+     *         implicit directory of that name
+     */
+    private int directoryNode(byte[] nameUtf8, byte[] prefix) {
+        if (nameUtf8.length == 0) {
+            return directoryIndex.root();
+        }
+        int index = indexOf(nameUtf8);
+        if (index >= 0) {
+            return index;
+        }
+        int first;
+        int levels = 1;
+        if (frontCoded != null) {
+            FrontCodedNames.Cursor cursor = frontCoded.seek(prefix);
+            if (!cursor.startsWith(prefix)) {
+                return -1;
+            }
+            first = cursor.index;
+            levels += countSlashes(cursor.name, prefix.length, cursor.length);
+        } else {
+            first = lowerBound(prefix);
+            if (first >= entryCount || !nameStartsWith(first, prefix)) {
+                return -1;
+            }
+            levels += countSlashes(nameBytes, nameOffsets[first] + prefix.length, nameOffsets[first + 1]);
+        }
+        int node = first;
+        for (int i = 0; i < levels; i++) {
+            node = directoryIndex.parent(node);
+        }
+        return node;
+    }
+
+    private static int countSlashes(byte[] bytes, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '/') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the simple name of the given node of the directory index: the
+     *         last segment of its entry's name, or of its path for an
+     *         implicit directory
+     */
+    private String childName(int node) {
+        int index = node;
+        int pathLength = -1;
+        if (directoryIndex.isImplicit(node)) {
+            index = directoryIndex.implicitEntry(node);
+            pathLength = directoryIndex.implicitPathLength(node);
+        }
+        byte[] bytes;
+        int start;
+        int end;
+        if (frontCoded != null) {
+            FrontCodedNames.Cursor cursor = frontCoded.cursorAt(index);
+            bytes = cursor.name;
+            start = 0;
+            end = pathLength < 0 ? cursor.length : pathLength;
+        } else {
+            bytes = nameBytes;
+            start = nameOffsets[index];
+            end = pathLength < 0 ? nameOffsets[index + 1] : start + pathLength;
+        }
+        int from = end;
+        while (from > start && bytes[from - 1] != '/') {
+            from--;
+        }
+        return new String(bytes, from, end - from, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * {@link #getDirectoryChildren} for compact names, decoding the names
+     * under {@code prefix} with a single cursor.
+     */
+    private List<String> getCompactDirectoryChildren(byte[] nameUtf8, byte[] prefix) {
+        FrontCodedNames.Cursor cursor = frontCoded.seek(prefix);
+        if (!cursor.startsWith(prefix)) {
+            if (nameUtf8.length == 0) {
+                return List.of();
+            }
+            int idx = frontCoded.indexOf(nameUtf8);
+            if (idx >= 0 && directories.get(idx)) {
+                return List.of();
+            }
+            return null;
+        }
+
+        List<String> children = new ArrayList<>();
+        // the cursor's buffer is overwritten by the next name, so the
+        // previous child is kept in a buffer of its own
+        byte[] prev = new byte[cursor.name.length];
+        int prevLen = -1;
+        do {
+            int childLen = 0;
+            while (prefix.length + childLen < cursor.length && cursor.name[prefix.length + childLen] != '/') {
+                childLen++;
+            }
+            if (childLen != prevLen || !regionEquals(cursor.name, prefix.length, prev, 0, childLen)) {
+                children.add(new String(cursor.name, prefix.length, childLen, StandardCharsets.UTF_8));
+                System.arraycopy(cursor.name, prefix.length, prev, 0, childLen);
+                prevLen = childLen;
+            }
+        } while (cursor.next() && cursor.startsWith(prefix));
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Compares the name at {@code index} against the UTF-8 encoding of a
+     * Latin-1 {@code query}, without encoding it. Returns negative if the
+     * stored name is less than the query, zero if equal, positive if
+     * greater.
+     * <p>
+     * With {@code dirPrefix}, the query is {@code query + "/"} and a stored
+     * name starting with it compares as zero, like
+     * {@link #compareNamePrefix}.
+     */
+    private int compareLatin1(int index, String query, boolean dirPrefix) {
+        int pos = nameOffsets[index];
+        int end = nameOffsets[index + 1];
+        int len = query.length();
+        for (int i = 0; i < len || dirPrefix && i == len; i++) {
+            int c = i < len ? query.charAt(i) : '/';
+            if (pos == end) {
+                return -1;
+            }
+            int diff = (nameBytes[pos++] & 0xFF) - (c < 0x80 ? c : 0xC0 | c >> 6);
+            if (diff != 0) {
+                return diff;
+            }
+            if (c >= 0x80) {
+                if (pos == end) {
+                    return -1;
+                }
+                diff = (nameBytes[pos++] & 0xFF) - (0x80 | c & 0x3F);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+        }
+        return dirPrefix || pos == end ? 0 : 1;
+    }
+
+    /**
+     * @return {@code true} if every character of {@code s} is below U+0100
+     */
+    private static boolean isLatin1(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x100) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Constructs a {@link ZipEntryInfo} for the entry at the given index,
+     * decoding its name from the name bytes.
+     */
+    ZipEntryInfo entryAt(int index) {
+        return entryAt(index, nameAt(index));
+    }
+
+    /**
+     * Constructs a {@link ZipEntryInfo} from the metadata at the given
+     * index.
      *
      * @param index position in the sorted arrays
      * @param name the caller's name string, reused as the record's name
@@ -410,13 +1267,62 @@ final class CompactEntryTable {
     private ZipEntryInfo entryAt(int index, String name) {
         return new ZipEntryInfo(
                 name,
-                compressedSizes[index],
-                uncompressedSizes[index],
-                compressionMethods[index] & 0xFF,
-                Integer.toUnsignedLong(crc32Values[index]),
-                localHeaderOffsets[index],
+                compressedSize(index),
+                uncompressedSize(index),
+                compressionMethod(index),
+                crc32(index),
+                localHeaderOffset(index),
                 directories.get(index),
-                lastModifiedTimes[index]);
+                records != null ? records.lastModifiedTime(index) : lastModifiedTimes.get(index));
+    }
+
+    /**
+     * Finds the entry with exactly the given name, through the hash index if
+     * there is one and by binary search otherwise.
+     *
+     * @param query the UTF-8 encoded name to search for
+     * @return the index, or {@code -1} if not found
+     */
+    private int indexOf(byte[] query) {
+        if (frontCoded != null) {
+            return frontCoded.indexOf(query);
+        }
+        if (hashSlots == null) {
+            return Math.max(binarySearch(query), -1);
+        }
+        int mask = hashSlots.length - 1;
+        int slot = hash(query, 0, query.length) & mask;
+        int index;
+        while ((index = hashSlots[slot]) >= 0) {
+            int start = nameOffsets[index];
+            if (nameOffsets[index + 1] - start == query.length
+                    && regionEquals(nameBytes, start, query, 0, query.length)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Hashes a UTF-8 byte range for the hash index. The polynomial hash is
+     * finished with the MurmurHash3 mix so that the low bits used to pick a
+     * slot depend on every byte.
+     */
+    private static int hash(byte[] bytes, int off, int len) {
+        int h = 0;
+        for (int i = off; i < off + len; i++) {
+            h = 31 * h + (bytes[i] & 0xFF);
+        }
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
     }
 
     /**
@@ -528,12 +1434,16 @@ final class CompactEntryTable {
      */
     private boolean hasEntriesUnder(byte[] nameUtf8) {
         byte[] prefix = toPrefixBytes(nameUtf8);
+        if (frontCoded != null) {
+            return frontCoded.seek(prefix).startsWith(prefix);
+        }
         int lb = lowerBound(prefix);
         return lb < entryCount && nameStartsWith(lb, prefix);
     }
 
     /**
-     * Encodes a string to UTF-8 bytes. Single conversion point for all public methods.
+     * Encodes a string to UTF-8 bytes, for lookups that cannot compare the
+     * string directly.
      */
     private static byte[] toUTF8(String s) {
         return s.getBytes(StandardCharsets.UTF_8);
@@ -555,49 +1465,12 @@ final class CompactEntryTable {
         return prefix;
     }
 
-    @FunctionalInterface
-    private interface IntComparator {
-        int compare(int a, int b);
-    }
-
-    /**
-     * Sorts an {@code int[]} of indices using an iterative bottom-up merge
-     * sort with a custom comparator. Operates directly on primitive
-     * {@code int} values.
-     */
-    private static void mergeSort(int[] arr, int len, IntComparator cmp) {
-        int[] tmp = new int[len];
-        int[] src = arr, dst = tmp;
-        for (int width = 1; width < len; width *= 2) {
-            for (int lo = 0; lo < len; lo += width * 2) {
-                int mid = Math.min(lo + width, len);
-                int hi = Math.min(lo + width * 2, len);
-                int i = lo, j = mid, k = lo;
-                while (i < mid && j < hi) {
-                    dst[k++] = cmp.compare(src[i], src[j]) <= 0 ? src[i++] : src[j++];
-                }
-                while (i < mid) {
-                    dst[k++] = src[i++];
-                }
-                while (j < hi) {
-                    dst[k++] = src[j++];
-                }
-            }
-            int[] swap = src;
-            src = dst;
-            dst = swap;
-        }
-        if (src != arr) {
-            System.arraycopy(src, 0, arr, 0, len);
-        }
-    }
-
     /**
      * Lexicographic comparison of two byte ranges using unsigned byte
-     * values. Used by {@link #sortAndBuildFromCd} to sort entry names
-     * referenced as (offset, length) pairs.
+     * values. Used by {@link EntryNameSorter} to sort entry names
+     * referenced as (offset, length) pairs and by {@link FrontCodedNames}.
      */
-    private static int compareBytesRange(byte[] a, int aOff, int aLen,
+    static int compareBytesRange(byte[] a, int aOff, int aLen,
             byte[] b, int bOff, int bLen) {
         int minLen = Math.min(aLen, bLen);
         for (int i = 0; i < minLen; i++) {
@@ -0,0 +1,269 @@
+package io.quarkus.fs.util.rozip;
+
+import java.util.Arrays;
+
+/**
+ * The directory tree of a {@link CompactEntryTable}, linking every entry and
+ * every implicit directory to its parent and its siblings, so that listing a
+ * directory visits only its immediate children instead of scanning its
+ * whole subtree.
+ * <p>
+ * The nodes of the tree are identified by {@code int}s: the entries of the
+ * table are nodes {@code 0} to {@code entryCount - 1}, the root directory is
+ * node {@code entryCount} ({@link #root()}), and the directories that only
+ * exist as prefixes of entry names follow it. Each node has a parent
+ * ({@link #parent}), a first child ({@link #firstChild}) and a next sibling
+ * ({@link #nextSibling}), {@code -1} where there is none. Children are linked
+ * in the sorted order of the entry names that introduce them. An entry whose
+ * name is also a prefix of other entries, normally an explicit directory, is
+ * the directory node of those entries. An implicit directory keeps the index
+ * of the first entry under it and the length of its path, so that its name
+ * can be taken from that entry's name.
+ *
+ * <pre>
+ * entries: 0 META-INF/  1 META-INF/MANIFEST.MF  2 org/acme/A.class
+ *
+ *            root (3)
+ *           /        \
+ *   META-INF (0) -> org (4, implicit: entry 2, length 3)
+ *        |              |
+ *   MANIFEST.MF (1)  acme (5, implicit: entry 2, length 8)
+ *                       |
+ *                    A.class (2)
+ * </pre>
+ * <p>
+ * The index takes 12 bytes per node and 8 more per implicit directory.
+ * Instances are immutable and safe for concurrent use.
+ */
+final class DirectoryIndex {
+
+    private final int entryCount;
+    private final int[] parents;
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final int[] implicitEntries;
+    private final int[] implicitPathLengths;
+
+    private DirectoryIndex(int entryCount, int[] parents, int[] firstChildren, int[] nextSiblings,
+            int[] implicitEntries, int[] implicitPathLengths) {
+        this.entryCount = entryCount;
+        this.parents = parents;
+        this.firstChildren = firstChildren;
+        this.nextSiblings = nextSiblings;
+        this.implicitEntries = implicitEntries;
+        this.implicitPathLengths = implicitPathLengths;
+    }
+
+    /**
+     * Builds the tree of sorted names in one pass. The directories of the
+     * previous name are kept on a stack; those that are not prefixes of the
+     * next name are popped, since the names under a directory are adjacent
+     * in sorted order, and the missing ones are pushed, reusing the entry of
+     * the same name if there is one.
+     *
+     * @param nameBytes the concatenated names, sorted by unsigned byte order
+     * @param nameOffsets the start offset of each name, followed by the end
+     *        of the last one
+     * @param count the number of names
+     */
+    static DirectoryIndex build(byte[] nameBytes, int[] nameOffsets, int count) {
+        Builder builder = new Builder(count);
+        int[] stackNodes = new int[16];
+        int[] stackEnds = new int[16];
+        stackNodes[0] = count;
+        int depth = 0;
+        int prevStart = 0;
+        int prevLen = 0;
+        for (int i = 0; i < count; i++) {
+            int start = nameOffsets[i];
+            int len = nameOffsets[i + 1] - start;
+            int common = 0;
+            int max = Math.min(len, prevLen);
+            while (common < max && nameBytes[start + common] == nameBytes[prevStart + common]) {
+                common++;
+            }
+            // a directory remains open if the name shares its path and the '/' after it
+            while (depth > 0 && stackEnds[depth] >= common) {
+                depth--;
+            }
+            for (int j = depth == 0 ? 0 : stackEnds[depth] + 1; j < len; j++) {
+                if (nameBytes[start + j] != '/') {
+                    continue;
+                }
+                int node = findEntry(nameBytes, nameOffsets, i, start, j);
+                if (node < 0) {
+                    node = builder.addImplicit(i, j);
+                    builder.link(stackNodes[depth], node);
+                }
+                if (++depth == stackNodes.length) {
+                    stackNodes = Arrays.copyOf(stackNodes, 2 * depth);
+                    stackEnds = Arrays.copyOf(stackEnds, 2 * depth);
+                }
+                stackNodes[depth] = node;
+                stackEnds[depth] = j;
+            }
+            builder.link(stackNodes[depth], i);
+            prevStart = start;
+            prevLen = len;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Binary search among the first {@code limit} names, which all sort
+     * before any name the query is a proper prefix of.
+     *
+     * @return the index of the name equal to the {@code len} bytes at
+     *         {@code off}, or {@code -1}
+     */
+    private static int findEntry(byte[] nameBytes, int[] nameOffsets, int limit, int off, int len) {
+        int lo = 0, hi = limit - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int start = nameOffsets[mid];
+            int cmp = CompactEntryTable.compareBytesRange(nameBytes, start, nameOffsets[mid + 1] - start,
+                    nameBytes, off, len);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the node of the root directory
+     */
+    int root() {
+        return entryCount;
+    }
+
+    /**
+     * @return the parent of the given node, or {@code -1} for the root
+     */
+    int parent(int node) {
+        return parents[node];
+    }
+
+    /**
+     * @return the first child of the given node, or {@code -1} if it has none
+     */
+    int firstChild(int node) {
+        return firstChildren[node];
+    }
+
+    /**
+     * @return the next sibling of the given node, or {@code -1} if it is the last child
+     */
+    int nextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    /**
+     * @return {@code true} if the node is a directory that has no entry
+     */
+    boolean isImplicit(int node) {
+        return node > entryCount;
+    }
+
+    /**
+     * @param node an implicit directory
+     * @return the index of the first entry under the directory
+     */
+    int implicitEntry(int node) {
+        return implicitEntries[node - entryCount - 1];
+    }
+
+    /**
+     * @param node an implicit directory
+     * @return the length in bytes of the directory's path, a prefix of the
+     *         name of its {@link #implicitEntry}
+     */
+    int implicitPathLength(int node) {
+        return implicitPathLengths[node - entryCount - 1];
+    }
+
+    /**
+     * @return the number of bytes used by this index
+     */
+    long sizeInBytes() {
+        return 4L * (parents.length + firstChildren.length + nextSiblings.length
+                + implicitEntries.length + implicitPathLengths.length);
+    }
+
+    /**
+     * Collects the links of a tree whose number of implicit directories is
+     * not known in advance.
+     */
+    private static final class Builder {
+
+        private final int entryCount;
+        private int nodeCount;
+        private int[] parents;
+        private int[] firstChildren;
+        private int[] lastChildren;
+        private int[] nextSiblings;
+        private int[] implicitEntries;
+        private int[] implicitPathLengths;
+
+        Builder(int entryCount) {
+            this.entryCount = entryCount;
+            this.nodeCount = entryCount + 1;
+            int capacity = nodeCount + 16;
+            parents = new int[capacity];
+            firstChildren = new int[capacity];
+            lastChildren = new int[capacity];
+            nextSiblings = new int[capacity];
+            Arrays.fill(parents, -1);
+            Arrays.fill(firstChildren, -1);
+            Arrays.fill(nextSiblings, -1);
+            implicitEntries = new int[16];
+            implicitPathLengths = new int[16];
+        }
+
+        int addImplicit(int entry, int pathLength) {
+            int implicit = nodeCount - entryCount - 1;
+            if (nodeCount == parents.length) {
+                int capacity = nodeCount + Math.max(nodeCount >> 3, 16);
+                parents = grow(parents, capacity);
+                firstChildren = grow(firstChildren, capacity);
+                lastChildren = Arrays.copyOf(lastChildren, capacity);
+                nextSiblings = grow(nextSiblings, capacity);
+            }
+            if (implicit == implicitEntries.length) {
+                implicitEntries = Arrays.copyOf(implicitEntries, 2 * implicit);
+                implicitPathLengths = Arrays.copyOf(implicitPathLengths, 2 * implicit);
+            }
+            implicitEntries[implicit] = entry;
+            implicitPathLengths[implicit] = pathLength;
+            return nodeCount++;
+        }
+
+        void link(int parent, int child) {
+            parents[child] = parent;
+            if (firstChildren[parent] < 0) {
+                firstChildren[parent] = child;
+            } else {
+                nextSiblings[lastChildren[parent]] = child;
+            }
+            lastChildren[parent] = child;
+        }
+
+        DirectoryIndex build() {
+            int implicitCount = nodeCount - entryCount - 1;
+            return new DirectoryIndex(entryCount, Arrays.copyOf(parents, nodeCount),
+                    Arrays.copyOf(firstChildren, nodeCount), Arrays.copyOf(nextSiblings, nodeCount),
+                    Arrays.copyOf(implicitEntries, implicitCount), Arrays.copyOf(implicitPathLengths, implicitCount));
+        }
+
+        private static int[] grow(int[] array, int capacity) {
+            int length = array.length;
+            int[] grown = Arrays.copyOf(array, capacity);
+            Arrays.fill(grown, length, capacity, -1);
+            return grown;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.quarkus.fs.util.rozip;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneRules;
+
+/**
+ * Deferred conversion of DOS timestamps to epoch milliseconds.
+ * <p>
+ * A DOS timestamp is a local date and time, so converting it requires the
+ * rules of the default time zone, which is comparatively expensive and
+ * needless for the vast majority of entries whose time is never read.
+ * Entry tables therefore store last-modified times as {@code long} values
+ * that are either epoch milliseconds, taken from an NTFS or Unix extended
+ * timestamp extra field, or the raw DOS date and time tagged by
+ * {@link #raw(int, int)}. {@link #toEpochMillis(long)} resolves either form.
+ * The tagged values lie around {@link Long#MIN_VALUE}, hundreds of millions
+ * of years before any time an extra field can express.
+ * <p>
+ * Conversions are memoized per date and hour in a small direct-mapped
+ * cache: the entries of an archive are usually written within minutes of
+ * each other, so almost all conversions add the minutes and seconds to a
+ * cached instant. An hour that starts in a gap or during which the zone's
+ * offset changes is never cached and always converted in full, and the
+ * cache is discarded when the default time zone changes.
+ * <p>
+ * This class is thread-safe.
+ */
+final class DosTime {
+
+    private static final long RAW_TAG = Long.MIN_VALUE;
+    private static final int CACHE_SIZE = 64;
+
+    private static volatile Cache cache = new Cache(ZoneId.systemDefault());
+
+    private DosTime() {
+    }
+
+    /**
+     * @param dosDate DOS-format date (bits: 15-9 = year-1980, 8-5 = month, 4-0 = day)
+     * @param dosTime DOS-format time (bits: 15-11 = hour, 10-5 = minute, 4-0 = second/2)
+     * @return the stored form of the DOS date and time, to be resolved with
+     *         {@link #toEpochMillis(long)}
+     */
+    static long raw(int dosDate, int dosTime) {
+        return RAW_TAG | (long) dosDate << 16 | dosTime;
+    }
+
+    /**
+     * @param stored epoch milliseconds, or a value returned by {@link #raw(int, int)}
+     * @return epoch milliseconds, converting a DOS date and time in the
+     *         system default time zone like
+     *         {@link ZipCentralDirectory#dosToEpochMillis(int, int)}
+     */
+    static long toEpochMillis(long stored) {
+        if ((stored & 0xFFFFFFFF_00000000L) != RAW_TAG) {
+            return stored;
+        }
+        int dosDate = (int) (stored >>> 16) & 0xFFFF;
+        int dosTime = (int) stored & 0xFFFF;
+        int minute = (dosTime >> 5) & 0x3F;
+        int second = (dosTime & 0x1F) * 2;
+        if (minute > 59 || second > 59) {
+            return ZipCentralDirectory.dosToEpochMillis(dosDate, dosTime);
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        Cache c = cache;
+        if (!c.zone.equals(zone)) {
+            c = new Cache(zone);
+            cache = c;
+        }
+        long hourStart = c.hourStart(dosDate, (dosTime >> 11) & 0x1F);
+        if (hourStart == Long.MIN_VALUE) {
+            return ZipCentralDirectory.dosToEpochMillis(dosDate, dosTime);
+        }
+        return hourStart + minute * 60_000L + second * 1000L;
+    }
+
+    /**
+     * Start instants of recently converted local hours in one time zone.
+     * Slots are replaced as a whole, so a racing reader sees either the old
+     * or the new entry of a slot.
+     */
+    private static final class Cache {
+
+        private final ZoneId zone;
+        private final ZoneRules rules;
+        private final Entry[] slots = new Entry[CACHE_SIZE];
+
+        Cache(ZoneId zone) {
+            this.zone = zone;
+            this.rules = zone.getRules();
+        }
+
+        /**
+         * @return the epoch milliseconds of the start of the given local
+         *         hour, or {@link Long#MIN_VALUE} if it is invalid or the
+         *         offset changes within it
+         */
+        long hourStart(int dosDate, int hour) {
+            int key = dosDate << 5 | hour;
+            int slot = (key ^ key >>> 6) & (CACHE_SIZE - 1);
+            Entry entry = slots[slot];
+            if (entry == null || entry.key != key) {
+                entry = new Entry(key, computeHourStart(dosDate, hour));
+                slots[slot] = entry;
+            }
+            return entry.millis;
+        }
+
+        private long computeHourStart(int dosDate, int hour) {
+            int year = ((dosDate >> 9) & 0x7F) + 1980;
+            int month = Math.max((dosDate >> 5) & 0x0F, 1);
+            int day = Math.max(dosDate & 0x1F, 1);
+            try {
+                LocalDateTime local = LocalDateTime.of(year, month, day, hour, 0);
+                ZonedDateTime zoned = local.atZone(zone);
+                Instant start = zoned.toInstant();
+                // the start of the hour must not fall into a gap, where it
+                // would be shifted, and no transition may follow within it
+                if (!zoned.toLocalDateTime().equals(local)
+                        || !rules.getOffset(start).equals(rules.getOffset(start.plusSeconds(3599)))) {
+                    return Long.MIN_VALUE;
+                }
+                return start.toEpochMilli();
+            } catch (RuntimeException e) {
+                return Long.MIN_VALUE;
+            }
+        }
+    }
+
+    private record Entry(int key, long millis) {
+    }
+}
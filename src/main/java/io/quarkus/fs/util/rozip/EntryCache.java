@@ -0,0 +1,628 @@
+package io.quarkus.fs.util.rozip;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of entry data bounded by a budget in bytes.
+ * <p>
+ * The cache is a segmented LRU: entries are admitted into a probationary
+ * segment and promoted to a protected segment, which holds up to
+ * {@link #PROTECTED_SHARE} of the budget, when they are read again. When the
+ * protected segment is full, its least recently used entry is demoted back
+ * to the probationary segment, and when the whole cache is over budget, the
+ * least recently used probationary entry is evicted. Entries read only once,
+ * such as the classes of a one-off scan, therefore never displace entries
+ * that are read repeatedly, such as {@code application.properties} or a
+ * Jandex index. An entry larger than the probationary share of the budget
+ * of its segment is not cached at all.
+ * <p>
+ * A cache is either private to one archive or the process-wide
+ * {@linkplain #shared() shared cache} used by all filesystems opened with
+ * {@link ReadOnlyZipOptions#withSharedEntryCache(boolean)}. Entries are
+ * keyed by an {@link Archive}, one per opened archive however many
+ * filesystems share it, and the offset of the entry's local header, which
+ * identifies it within its archive. Eviction only considers recency, so no
+ * archive is favored over another, and an archive that is scanned cannot
+ * displace the entries other archives read repeatedly.
+ * <p>
+ * An entry is cached either uncompressed or, in the
+ * {@linkplain ReadOnlyZipOptions.CacheTier#COMPRESSED compressed tier}, as
+ * the compressed bytes it is inflated from on each hit; the tier is part of
+ * the key and hits are counted per tier.
+ * <p>
+ * The data is kept either in byte arrays on the heap or, off heap, in
+ * chunks of direct memory handed out by a {@link SlabAllocator}, which
+ * keeps long-lived cached data out of the way of the garbage collector.
+ * Off-heap data is copied to the heap on each hit, since its chunk is
+ * reused once the entry is evicted.
+ * <p>
+ * Each entry is charged the length of its data, or the size of its chunk
+ * off heap, plus {@link #ENTRY_OVERHEAD} bytes for the bookkeeping. Off
+ * heap, entries are also evicted while the slabs hold more direct memory
+ * than the budget, which they may when their chunks are only partly used,
+ * so the direct memory of a cache stays within its budget apart from chunks
+ * pinned by a read or about to be cached. Hits
+ * and misses are counted for the cache and for each {@link Owner}, and
+ * evictions for the cache and for each archive; they are reported by
+ * {@link #stats()} and {@link #stats(Owner)}.
+ * <p>
+ * This class is thread-safe. Large caches are split into up to
+ * {@link #MAX_SEGMENTS} segments of at least {@link #MIN_SEGMENT_BYTES},
+ * each with an equal share of the budget, its own LRU order and its own
+ * lock, and entries are spread over them by the hash of their key, so
+ * concurrent reads of different entries rarely contend. A lock is held only
+ * for constant-time map updates, except when the entries of an archive are
+ * removed from the segment; off heap, data is copied in and out of its chunk
+ * outside the lock, the chunk being pinned while it is read.
+ */
+final class EntryCache {
+
+    /**
+     * The share of the budget the protected segment may take.
+     */
+    static final double PROTECTED_SHARE = 0.8;
+
+    /**
+     * The estimated memory used per cached entry in addition to its data,
+     * for the map node, the key and the array header.
+     */
+    static final int ENTRY_OVERHEAD = 96;
+
+    /**
+     * The maximum number of independently locked segments of a cache. It does
+     * not depend on the number of processors, so neither does the largest
+     * entry a cache of a given budget admits.
+     */
+    static final int MAX_SEGMENTS = 16;
+
+    /**
+     * The smallest budget of a segment; smaller caches have fewer segments,
+     * so that a segment of a cache of 32 MB or more admits entries of
+     * 3.2 MB, as large as a typical Jandex index.
+     */
+    static final long MIN_SEGMENT_BYTES = 16 * 1024 * 1024L; // 16 MB
+
+    private static volatile EntryCache shared;
+
+    private final boolean offHeap;
+    private final int maxSegments;
+    private volatile long maxBytes;
+    private volatile long maxEntryWeight;
+    private volatile Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder compressedHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache that keeps its data on the heap.
+     *
+     * @param maxBytes the budget in bytes, at least 1
+     */
+    EntryCache(long maxBytes) {
+        this(maxBytes, false);
+    }
+
+    /**
+     * @param maxBytes the budget in bytes, at least 1
+     * @param offHeap whether to keep the data in direct memory
+     */
+    EntryCache(long maxBytes, boolean offHeap) {
+        this(maxBytes, offHeap, MAX_SEGMENTS);
+    }
+
+    /**
+     * @param maxBytes the budget in bytes, at least 1
+     * @param offHeap whether to keep the data in direct memory
+     * @param maxSegments the maximum number of segments, a power of two
+     */
+    EntryCache(long maxBytes, boolean offHeap, int maxSegments) {
+        this.offHeap = offHeap;
+        this.maxSegments = maxSegments;
+        setMaxBytes(maxBytes);
+    }
+
+    /**
+     * @return the process-wide cache, created with a budget of
+     *         {@code -Drozip.sharedCacheSize} bytes on first use, off heap
+     *         if {@code -Drozip.cacheOffHeap=true}
+     */
+    static EntryCache shared() {
+        EntryCache cache = shared;
+        if (cache == null) {
+            synchronized (EntryCache.class) {
+                cache = shared;
+                if (cache == null) {
+                    shared = cache = new EntryCache(ReadOnlyZipFileSystem.SHARED_CACHE_SIZE,
+                            ReadOnlyZipFileSystem.CACHE_OFF_HEAP);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * @return {@code true} if this is the process-wide cache
+     */
+    boolean isShared() {
+        return this == shared;
+    }
+
+    /**
+     * @return {@code true} if the data is kept in direct memory
+     */
+    boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * The cached entries of one archive, shared by all filesystems reading
+     * it, with their size and evictions.
+     */
+    static final class Archive {
+
+        private final LongAdder entries = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private volatile boolean closed;
+    }
+
+    /**
+     * The hit and miss counters of one filesystem reading an archive.
+     */
+    static final class Owner {
+
+        private final Archive archive;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder compressedHits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        private Owner(Archive archive) {
+            this.archive = archive;
+        }
+
+        /**
+         * @return the archive whose entries this owner reads
+         */
+        Archive archive() {
+            return archive;
+        }
+    }
+
+    /**
+     * @param archive the archive the entry belongs to
+     * @param offset the offset of the entry's local header
+     * @param compressed whether the entry is cached as its compressed bytes
+     */
+    private record Key(Archive archive, long offset, boolean compressed) {
+    }
+
+    /**
+     * @return a new archive, whose entries are removed with {@link #close}
+     *         once no filesystem reads it any more
+     */
+    Archive newArchive() {
+        return new Archive();
+    }
+
+    /**
+     * @return new counters for a filesystem reading the given archive
+     */
+    Owner newOwner(Archive archive) {
+        return new Owner(archive);
+    }
+
+    /**
+     * @return the budget in bytes
+     */
+    long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Changes the budget, evicting entries if the cache is over it. If the
+     * new budget calls for a different number of segments, all entries are
+     * evicted.
+     *
+     * @param maxBytes the budget in bytes, at least 1
+     */
+    synchronized void setMaxBytes(long maxBytes) {
+        int count = maxSegments;
+        while (count > 1 && maxBytes / count < MIN_SEGMENT_BYTES) {
+            count >>= 1;
+        }
+        this.maxBytes = maxBytes;
+        long segmentBytes = maxBytes / count;
+        this.maxEntryWeight = segmentBytes - (long) (segmentBytes * PROTECTED_SHARE);
+        Segment[] current = segments;
+        if (current != null && current.length == count) {
+            for (Segment segment : current) {
+                synchronized (segment) {
+                    segment.setMaxBytes(maxBytes / count);
+                }
+            }
+            return;
+        }
+        Segment[] replacement = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            replacement[i] = new Segment(maxBytes / count);
+        }
+        segments = replacement;
+        if (current != null) {
+            for (Segment segment : current) {
+                synchronized (segment) {
+                    segment.retire();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether data of the given length is small enough to be cached,
+     * so that a caller may read an entry in full rather than stream it. Off
+     * heap, an entry close to the limit may still be rejected once its chunk
+     * is rounded up to a size class.
+     *
+     * @param length the length of the data
+     */
+    boolean admits(long length) {
+        return length + ENTRY_OVERHEAD <= maxEntryWeight;
+    }
+
+    /**
+     * @param compressed whether to look up the compressed bytes of the entry
+     * @return the cached data of the entry, a copy if it is kept off heap,
+     *         or {@code null} if it is not cached
+     */
+    byte[] get(Owner owner, long offset, boolean compressed) {
+        Key key = new Key(owner.archive, offset, compressed);
+        Segment segment;
+        Object value;
+        for (;;) {
+            segment = segment(key);
+            synchronized (segment) {
+                if (!segment.retired) {
+                    value = segment.get(key);
+                    break;
+                }
+            }
+        }
+        if (value == null) {
+            misses.increment();
+            owner.misses.increment();
+            return null;
+        }
+        hits.increment();
+        owner.hits.increment();
+        if (compressed) {
+            compressedHits.increment();
+            owner.compressedHits.increment();
+        }
+        if (value instanceof byte[] data) {
+            return data;
+        }
+        SlabAllocator.Chunk chunk = (SlabAllocator.Chunk) value;
+        try {
+            return chunk.toByteArray();
+        } finally {
+            synchronized (segment) {
+                segment.slabs.unpin(chunk);
+            }
+        }
+    }
+
+    /**
+     * Checks whether an entry is cached, without counting a hit or a miss
+     * or updating its recency.
+     *
+     * @param compressed whether to look for the compressed bytes of the entry
+     */
+    boolean contains(Owner owner, long offset, boolean compressed) {
+        Key key = new Key(owner.archive, offset, compressed);
+        for (;;) {
+            Segment segment = segment(key);
+            synchronized (segment) {
+                if (!segment.retired) {
+                    return segment.contains(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the data of an entry to the probationary segment, evicting the
+     * least recently used entries as needed. Does nothing if the entry is
+     * already cached or too large, or if its archive is closed.
+     *
+     * @param compressed whether {@code data} holds the compressed bytes of the entry
+     * @param data the data, which must not be modified afterwards unless
+     *        the cache is off heap, where it is copied
+     */
+    void put(Owner owner, long offset, boolean compressed, byte[] data) {
+        Key key = new Key(owner.archive, offset, compressed);
+        Segment segment;
+        SlabAllocator.Chunk chunk;
+        for (;;) {
+            segment = segment(key);
+            synchronized (segment) {
+                if (segment.retired) {
+                    continue;
+                }
+                if (!segment.admits(key, data.length)) {
+                    return;
+                }
+                if (segment.slabs == null) {
+                    segment.insert(key, data);
+                    return;
+                }
+                chunk = segment.slabs.allocate(data.length);
+                break;
+            }
+        }
+        chunk.write(data);
+        synchronized (segment) {
+            if (segment.retired || !segment.admits(key, data.length)) {
+                segment.slabs.free(chunk);
+            } else {
+                segment.insert(key, chunk);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries of an archive, without counting them as
+     * evictions. The counters are kept.
+     */
+    void clear(Archive archive) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.remove(archive);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries of an archive and stops caching new ones, once
+     * no filesystem reads it any more.
+     */
+    void close(Archive archive) {
+        archive.closed = true;
+        clear(archive);
+    }
+
+    /**
+     * @return the number of bytes of direct memory held for off-heap data
+     */
+    long offHeapBytes() {
+        long total = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                total += segment.slabs == null ? 0 : segment.slabs.allocatedBytes();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return the counters and the current size of the cache, which are
+     *         not read atomically while it is in use
+     */
+    ReadOnlyZipCacheStats stats() {
+        int entries = 0;
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                entries += segment.probation.size() + segment.protectedSegment.size();
+                bytes += segment.probationBytes + segment.protectedBytes;
+            }
+        }
+        return new ReadOnlyZipCacheStats(hits.sum(), compressedHits.sum(), misses.sum(), evictions.sum(),
+                entries, bytes, maxBytes);
+    }
+
+    /**
+     * @return the hit and miss counters of an owner, with the evictions and
+     *         the current size of the entries of its archive and the budget
+     *         of the whole cache
+     */
+    ReadOnlyZipCacheStats stats(Owner owner) {
+        Archive archive = owner.archive;
+        return new ReadOnlyZipCacheStats(owner.hits.sum(), owner.compressedHits.sum(), owner.misses.sum(),
+                archive.evictions.sum(), archive.entries.intValue(), archive.bytes.sum(), maxBytes);
+    }
+
+    private Segment segment(Key key) {
+        Segment[] current = segments;
+        int h = key.hashCode();
+        return current[(h ^ h >>> 16) & (current.length - 1)];
+    }
+
+    /**
+     * An independently locked share of the cache, guarded by its own
+     * monitor.
+     */
+    private final class Segment {
+
+        private final SlabAllocator slabs;
+        private long maxBytes;
+        private long protectedMaxBytes;
+        // values are byte arrays on the heap and chunks off heap
+        private final LinkedHashMap<Key, Object> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<Key, Object> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<Archive, Set<Key>> keysByArchive = new HashMap<>();
+        private long probationBytes;
+        private long protectedBytes;
+        private boolean retired;
+
+        Segment(long maxBytes) {
+            this.slabs = offHeap ? new SlabAllocator(maxBytes) : null;
+            setMaxBytes(maxBytes);
+        }
+
+        void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            this.protectedMaxBytes = (long) (maxBytes * PROTECTED_SHARE);
+            demote();
+            evict();
+        }
+
+        /**
+         * @return the data of the entry, pinned if it is a chunk, or
+         *         {@code null}
+         */
+        Object get(Key key) {
+            Object value = protectedSegment.get(key);
+            if (value == null) {
+                value = probation.remove(key);
+                if (value == null) {
+                    return null;
+                }
+                long weight = weight(value);
+                probationBytes -= weight;
+                protectedSegment.put(key, value);
+                protectedBytes += weight;
+                // demoting keeps the total unchanged, so nothing needs to be evicted
+                demote();
+            }
+            if (slabs != null) {
+                slabs.pin((SlabAllocator.Chunk) value);
+            }
+            return value;
+        }
+
+        boolean contains(Key key) {
+            return protectedSegment.containsKey(key) || probation.containsKey(key);
+        }
+
+        /**
+         * @return {@code true} if data of the given length may be cached
+         *         under a key that is not cached yet
+         */
+        boolean admits(Key key, int length) {
+            long weight = (slabs == null ? length : slabs.chunkSize(length)) + ENTRY_OVERHEAD;
+            return weight <= maxBytes - protectedMaxBytes && !key.archive().closed && !contains(key);
+        }
+
+        void insert(Key key, Object value) {
+            long weight = weight(value);
+            probation.put(key, value);
+            probationBytes += weight;
+            keysByArchive.computeIfAbsent(key.archive(), a -> new HashSet<>()).add(key);
+            key.archive().entries.increment();
+            key.archive().bytes.add(weight);
+            evict();
+        }
+
+        /**
+         * Removes the entries of an archive, in time proportional to their
+         * number.
+         */
+        void remove(Archive archive) {
+            Set<Key> keys = keysByArchive.remove(archive);
+            if (keys == null) {
+                return;
+            }
+            for (Key key : keys) {
+                Object value = probation.remove(key);
+                long weight;
+                if (value != null) {
+                    weight = weight(value);
+                    probationBytes -= weight;
+                } else {
+                    value = protectedSegment.remove(key);
+                    weight = weight(value);
+                    protectedBytes -= weight;
+                }
+                release(value);
+                archive.entries.decrement();
+                archive.bytes.add(-weight);
+            }
+        }
+
+        /**
+         * Evicts all entries of a segment that has been replaced.
+         */
+        void retire() {
+            retired = true;
+            setMaxBytes(0);
+        }
+
+        private void demote() {
+            while (protectedBytes > protectedMaxBytes) {
+                Map.Entry<Key, Object> eldest = removeEldest(protectedSegment);
+                long weight = weight(eldest.getValue());
+                protectedBytes -= weight;
+                probation.put(eldest.getKey(), eldest.getValue());
+                probationBytes += weight;
+            }
+        }
+
+        private void evict() {
+            while (overBudget()) {
+                Map.Entry<Key, Object> eldest;
+                long weight;
+                if (!probation.isEmpty()) {
+                    eldest = removeEldest(probation);
+                    weight = weight(eldest.getValue());
+                    probationBytes -= weight;
+                } else {
+                    eldest = removeEldest(protectedSegment);
+                    weight = weight(eldest.getValue());
+                    protectedBytes -= weight;
+                }
+                release(eldest.getValue());
+                Archive archive = eldest.getKey().archive();
+                Set<Key> keys = keysByArchive.get(archive);
+                keys.remove(eldest.getKey());
+                if (keys.isEmpty()) {
+                    keysByArchive.remove(archive);
+                }
+                archive.entries.decrement();
+                archive.bytes.add(-weight);
+                archive.evictions.increment();
+                evictions.increment();
+            }
+        }
+
+        /**
+         * @return {@code true} if the entries are charged more than the
+         *         budget or, off heap, the slabs hold more direct memory than
+         *         the budget once their empty slabs are released and entries
+         *         remain to be evicted
+         */
+        private boolean overBudget() {
+            if (probationBytes + protectedBytes > maxBytes) {
+                return true;
+            }
+            if (slabs == null || slabs.allocatedBytes() <= maxBytes) {
+                return false;
+            }
+            slabs.releaseEmptySlabs();
+            return slabs.allocatedBytes() > maxBytes && !(probation.isEmpty() && protectedSegment.isEmpty());
+        }
+
+        private void release(Object value) {
+            if (slabs != null) {
+                slabs.free((SlabAllocator.Chunk) value);
+            }
+        }
+    }
+
+    private static long weight(Object value) {
+        int size = value instanceof byte[] data ? data.length : ((SlabAllocator.Chunk) value).capacity();
+        return size + ENTRY_OVERHEAD;
+    }
+
+    private static Map.Entry<Key, Object> removeEldest(LinkedHashMap<Key, Object> segment) {
+        Iterator<Map.Entry<Key, Object>> it = segment.entrySet().iterator();
+        Map.Entry<Key, Object> eldest = it.next();
+        it.remove();
+        return eldest;
+    }
+}
@@ -0,0 +1,307 @@
+package io.quarkus.fs.util.rozip;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts the entries of a central directory by the unsigned byte order of
+ * their UTF-8 names, for {@link CompactEntryTable}. Names are referenced as
+ * (offset, length) pairs into the central directory bytes and the result is
+ * a permutation of the entry indices.
+ * <p>
+ * Before sorting, the names are checked in central directory order. Many
+ * tools write entries already sorted, in which case nothing is sorted at
+ * all; if the names form only a few ascending runs, the runs are merged.
+ * <p>
+ * Otherwise the entries are merge-sorted on cached 8-byte keys. Names in a
+ * JAR typically share a long prefix ({@code org/apache/...}), so the length
+ * of the prefix common to all names is determined first and each entry's
+ * key is the 8 bytes that follow it, read as a big-endian {@code long}
+ * (zero-padded past the end of the name). Keys are computed in one pass and
+ * permuted along with the entries, so most comparisons are a single
+ * {@code long} comparison on sequential memory; only entries with equal
+ * keys fall back to comparing the rest of their names.
+ * <p>
+ * The parallel sort splits the entries into partitions that are sorted
+ * concurrently in the common {@link ForkJoinPool} and merged.
+ * <p>
+ * Instances are not thread-safe, apart from the partitions of a parallel
+ * sort, which only touch their own range of every array.
+ */
+final class EntryNameSorter {
+
+    private static final int INSERTION_SORT_SIZE = 16;
+    private static final int PARTITION_SIZE = 64 * 1024;
+
+    private final byte[] bytes;
+    private final int[] starts;
+    private final int[] lens;
+    private final int count;
+    private final int[] tmp;
+    private long[] keys;
+    private long[] keyTmp;
+    private int prefixLength;
+
+    /**
+     * @param bytes the bytes the names are stored in
+     * @param starts the offset of each entry's name in {@code bytes}
+     * @param lens the length of each entry's name
+     * @param count the number of entries
+     */
+    EntryNameSorter(byte[] bytes, int[] starts, int[] lens, int count) {
+        this.bytes = bytes;
+        this.starts = starts;
+        this.lens = lens;
+        this.count = count;
+        this.tmp = new int[count];
+    }
+
+    /**
+     * @param parallel whether to sort partitions concurrently
+     * @return the entry indices in name order; the order of entries with
+     *         equal names is unspecified
+     */
+    int[] sort(boolean parallel) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        // up to count / 32 runs are cheaper to merge than to sort
+        int[] runStarts = new int[count / 32 + 2];
+        int runs = findRuns(order, runStarts);
+        if (runs == 1) {
+            return order;
+        }
+        if (runs > 0) {
+            mergeRuns(order, runStarts, runs);
+            return order;
+        }
+        keys = new long[count];
+        keyTmp = new long[count];
+        prefixLength = commonPrefixLength();
+        if (parallel) {
+            ForkJoinPool.commonPool().invoke(new SortTask(this, order, 0, count));
+        } else {
+            sortByKey(order, 0, count);
+        }
+        return order;
+    }
+
+    /**
+     * Splits {@code order} into ascending runs.
+     *
+     * @return the number of runs, whose starts are stored in
+     *         {@code runStarts} followed by {@link #count}, or {@code 0} if
+     *         there are more runs than {@code runStarts} can hold
+     */
+    private int findRuns(int[] order, int[] runStarts) {
+        int runs = 0;
+        runStarts[runs++] = 0;
+        for (int i = 1; i < count; i++) {
+            if (compare(order[i - 1], order[i]) > 0) {
+                if (runs == runStarts.length - 1) {
+                    return 0;
+                }
+                runStarts[runs++] = i;
+            }
+        }
+        runStarts[runs] = count;
+        return runs;
+    }
+
+    /**
+     * Merges adjacent runs pairwise until a single run remains.
+     */
+    private void mergeRuns(int[] order, int[] runStarts, int runs) {
+        int[] src = order, dst = tmp;
+        while (runs > 1) {
+            int merged = 0;
+            for (int r = 0; r < runs; r += 2) {
+                int lo = runStarts[r];
+                if (r + 1 < runs) {
+                    merge(src, dst, lo, runStarts[r + 1], runStarts[r + 2]);
+                } else {
+                    System.arraycopy(src, lo, dst, lo, runStarts[r + 1] - lo);
+                }
+                runStarts[merged++] = lo;
+            }
+            runStarts[merged] = count;
+            runs = merged;
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+        if (src != order) {
+            System.arraycopy(src, 0, order, 0, count);
+        }
+    }
+
+    /**
+     * Merges the sorted ranges {@code src[lo, mid)} and {@code src[mid, hi)}
+     * into {@code dst[lo, hi)}, comparing full names.
+     */
+    private void merge(int[] src, int[] dst, int lo, int mid, int hi) {
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi) {
+            dst[k++] = compare(src[i], src[j]) <= 0 ? src[i++] : src[j++];
+        }
+        System.arraycopy(src, i, dst, k, mid - i);
+        System.arraycopy(src, j, dst, k + mid - i, hi - j);
+    }
+
+    /**
+     * @return the number of leading bytes shared by all names
+     */
+    private int commonPrefixLength() {
+        int first = starts[0];
+        int prefix = lens[0];
+        for (int e = 1; e < count && prefix > 0; e++) {
+            int start = starts[e];
+            int len = Math.min(prefix, lens[e]);
+            int i = 0;
+            while (i < len && bytes[first + i] == bytes[start + i]) {
+                i++;
+            }
+            prefix = i;
+        }
+        return prefix;
+    }
+
+    /**
+     * Returns the 8 bytes of the name of {@code entry} following the common
+     * prefix as a big-endian value, zero-padded past the end of the name,
+     * with the sign bit flipped so that signed comparison of keys is
+     * unsigned comparison of the bytes.
+     */
+    private long key(int entry) {
+        int off = starts[entry] + prefixLength;
+        int available = lens[entry] - prefixLength;
+        long key = 0;
+        for (int i = 0; i < 8; i++) {
+            key = key << 8 | (i < available ? bytes[off + i] & 0xFF : 0);
+        }
+        return key ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Compares two entries given their keys, comparing the rest of their
+     * names only if the keys are equal.
+     */
+    private int compare(long keyA, int a, long keyB, int b) {
+        if (keyA != keyB) {
+            return keyA < keyB ? -1 : 1;
+        }
+        int skip = prefixLength + 8;
+        int restA = lens[a] - skip;
+        int restB = lens[b] - skip;
+        if (restA < 0 || restB < 0) {
+            // a name ends within the key, where zero padding is ambiguous
+            return compare(a, b);
+        }
+        return CompactEntryTable.compareBytesRange(bytes, starts[a] + skip, restA, bytes, starts[b] + skip, restB);
+    }
+
+    private int compare(int a, int b) {
+        return CompactEntryTable.compareBytesRange(bytes, starts[a], lens[a], bytes, starts[b], lens[b]);
+    }
+
+    /**
+     * Sorts {@code order[from, to)} by key: computes the keys of the range,
+     * insertion-sorts small blocks, then merges them bottom-up, permuting
+     * {@link #keys} along with the entries.
+     */
+    private void sortByKey(int[] order, int from, int to) {
+        for (int i = from; i < to; i++) {
+            keys[i] = key(order[i]);
+        }
+        for (int lo = from; lo < to; lo += INSERTION_SORT_SIZE) {
+            int hi = Math.min(lo + INSERTION_SORT_SIZE, to);
+            for (int i = lo + 1; i < hi; i++) {
+                int entry = order[i];
+                long key = keys[i];
+                int j = i - 1;
+                while (j >= lo && compare(keys[j], order[j], key, entry) > 0) {
+                    order[j + 1] = order[j];
+                    keys[j + 1] = keys[j];
+                    j--;
+                }
+                order[j + 1] = entry;
+                keys[j + 1] = key;
+            }
+        }
+        int[] src = order, dst = tmp;
+        long[] srcKeys = keys, dstKeys = keyTmp;
+        for (int width = INSERTION_SORT_SIZE; width < to - from; width *= 2) {
+            for (int lo = from; lo < to; lo += width * 2) {
+                mergeByKey(src, srcKeys, dst, dstKeys, lo, Math.min(lo + width, to), Math.min(lo + width * 2, to));
+            }
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+        }
+        if (src != order) {
+            System.arraycopy(src, from, order, from, to - from);
+            System.arraycopy(srcKeys, from, keys, from, to - from);
+        }
+    }
+
+    /**
+     * Merges the sorted ranges {@code [lo, mid)} and {@code [mid, hi)} of
+     * {@code src} and {@code srcKeys} into {@code dst} and {@code dstKeys}.
+     */
+    private void mergeByKey(int[] src, long[] srcKeys, int[] dst, long[] dstKeys, int lo, int mid, int hi) {
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi) {
+            if (compare(srcKeys[i], src[i], srcKeys[j], src[j]) <= 0) {
+                dstKeys[k] = srcKeys[i];
+                dst[k++] = src[i++];
+            } else {
+                dstKeys[k] = srcKeys[j];
+                dst[k++] = src[j++];
+            }
+        }
+        System.arraycopy(srcKeys, i, dstKeys, k, mid - i);
+        System.arraycopy(src, i, dst, k, mid - i);
+        k += mid - i;
+        System.arraycopy(srcKeys, j, dstKeys, k, hi - j);
+        System.arraycopy(src, j, dst, k, hi - j);
+    }
+
+    /**
+     * Sorts a range of entries by sorting both halves concurrently and
+     * merging them, down to partitions small enough for
+     * {@link #sortByKey}.
+     */
+    private static final class SortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final EntryNameSorter sorter;
+        private final int[] order;
+        private final int from;
+        private final int to;
+
+        SortTask(EntryNameSorter sorter, int[] order, int from, int to) {
+            this.sorter = sorter;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARTITION_SIZE) {
+                sorter.sortByKey(order, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SortTask(sorter, order, from, mid), new SortTask(sorter, order, mid, to));
+            sorter.mergeByKey(order, sorter.keys, sorter.tmp, sorter.keyTmp, from, mid, to);
+            System.arraycopy(sorter.tmp, from, order, from, to - from);
+            System.arraycopy(sorter.keyTmp, from, sorter.keys, from, to - from);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * An on-disk snapshot of the {@link CompactEntryTable} built for one archive,
+ * used to skip central directory parsing and sorting when the same archive is
+ * opened again.
+ * <p>
+ * Snapshots live in a cache directory, one file per archive, named after a
+ * hash of the archive's absolute path. A snapshot records the archive path,
+ * size, last-modified time and a CRC-32 of its End of Central Directory
+ * record(s), and is only used if all of them still match. The EOCD
+ * records the central directory's offset, size and entry count, so it
+ * changes whenever the entries do, even if the modification time is
+ * preserved.
+ * <p>
+ * Snapshots are an optimization only: a missing, stale, damaged or
+ * unreadable snapshot makes {@link #load} return {@code null}, and failures
+ * to write one are ignored, so the archive is then parsed as usual. Snapshot
+ * files are read through a memory mapping and written to a temporary file
+ * that is atomically moved into place, so concurrent processes sharing a
+ * cache directory never observe a partially written snapshot.
+ * <p>
+ * The file format is versioned by {@link #VERSION}; snapshots of another
+ * version are ignored and overwritten.
+ */
+final class EntryTableSnapshot {
+
+    private static final int MAGIC = 0x495a4f52; // "ROZI"
+    static final int VERSION = 4;
+
+    private final Path snapshotFile;
+    private final String archivePath;
+    private final long archiveSize;
+    private final long archiveLastModified;
+
+    /**
+     * @param cacheDirectory the directory holding snapshots; created on first store
+     * @param archive the archive on the default filesystem
+     * @param archiveSize the size of the archive in bytes
+     * @throws IOException if the archive's modification time cannot be read
+     */
+    EntryTableSnapshot(Path cacheDirectory, Path archive, long archiveSize) throws IOException {
+        this.archivePath = archive.toAbsolutePath().normalize().toString();
+        this.archiveSize = archiveSize;
+        this.archiveLastModified = Files.getLastModifiedTime(archive).toMillis();
+        byte[] pathBytes = archivePath.getBytes(StandardCharsets.UTF_8);
+        this.snapshotFile = cacheDirectory.resolve(UUID.nameUUIDFromBytes(pathBytes) + ".idx");
+    }
+
+    /**
+     * @return the file this snapshot is stored in
+     */
+    Path file() {
+        return snapshotFile;
+    }
+
+    /**
+     * Loads the snapshot if it exists and matches the archive.
+     *
+     * @param eocdCrc CRC-32 of the archive's End of Central Directory record(s)
+     * @return the stored entry table, or {@code null} if there is no usable snapshot
+     */
+    CompactEntryTable load(long eocdCrc) {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            return null;
+        }
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (in.remaining() < 12 || in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return null;
+            }
+            int pathLength = in.getInt();
+            if (pathLength < 0 || pathLength > in.remaining()) {
+                return null;
+            }
+            byte[] path = new byte[pathLength];
+            in.get(path);
+            if (!archivePath.equals(new String(path, StandardCharsets.UTF_8))
+                    || in.getLong() != archiveSize
+                    || in.getLong() != archiveLastModified
+                    || in.getLong() != eocdCrc) {
+                return null;
+            }
+            return CompactEntryTable.readFrom(in);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores a snapshot of the given table, replacing any previous one.
+     * Failures are ignored.
+     *
+     * @param eocdCrc CRC-32 of the archive's End of Central Directory record(s)
+     * @param table the entry table built from the archive
+     */
+    void store(long eocdCrc, CompactEntryTable table) {
+        byte[] path = archivePath.getBytes(StandardCharsets.UTF_8);
+        // a lazy or compact table is decoded once for sizing and writing
+        CompactEntryTable decoded = table.decoded();
+        ByteBuffer out = ByteBuffer.allocate(4 + 4 + 4 + path.length + 8 * 3 + decoded.serializedSize())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(path.length).put(path);
+        out.putLong(archiveSize).putLong(archiveLastModified).putLong(eocdCrc);
+        decoded.writeTo(out);
+
+        Path tmp = null;
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            tmp = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(), ".tmp");
+            Files.write(tmp, out.array());
+            try {
+                Files.move(tmp, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // nothing more to do; the snapshot is an optimization
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package io.quarkus.fs.util.rozip;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sorted UTF-8 entry names stored with front coding, the compact name
+ * layout of {@link CompactEntryTable}.
+ * <p>
+ * Sorted names share long prefixes with their predecessors
+ * ({@code io/quarkus/deployment/...}), so each name is stored as the length
+ * of the prefix it shares with the previous name followed by the remaining
+ * suffix, both lengths as unsigned LEB128 varints. Every
+ * {@link #RESTART_INTERVAL}-th name is a restart point stored in full
+ * (length and bytes), and the offset of each restart point is kept in
+ * {@link #restartOffsets}. A name is decoded by starting from the restart
+ * point of its block and applying the suffixes of the following names; a
+ * search binary-searches the restart points, which can be compared in
+ * place, and then decodes forward through a single block.
+ *
+ * <pre>
+ * names:  io/quarkus/a, io/quarkus/ab, io/quarkus/b, ...
+ * bytes:  [12]io/quarkus/a [12][1]b [10][1]b ...
+ *          ^ restart point  ^ shared, suffix length, suffix
+ * </pre>
+ * <p>
+ * Instances are immutable and safe for concurrent use; each search or
+ * decode uses its own {@link Cursor}.
+ */
+final class FrontCodedNames {
+
+    static final int RESTART_INTERVAL = 16;
+
+    private final byte[] bytes;
+    private final int[] restartOffsets;
+    private final int count;
+    private final int maxNameLength;
+
+    private FrontCodedNames(byte[] bytes, int[] restartOffsets, int count, int maxNameLength) {
+        this.bytes = bytes;
+        this.restartOffsets = restartOffsets;
+        this.count = count;
+        this.maxNameLength = maxNameLength;
+    }
+
+    /**
+     * Front-codes concatenated sorted names.
+     *
+     * @param nameBytes the concatenated names
+     * @param nameOffsets the start offset of each name, followed by the end
+     *        of the last one
+     * @param count the number of names
+     */
+    static FrontCodedNames encode(byte[] nameBytes, int[] nameOffsets, int count) {
+        byte[] out = new byte[nameBytes.length + 6 * count];
+        int[] restartOffsets = new int[(count + RESTART_INTERVAL - 1) / RESTART_INTERVAL];
+        int maxNameLength = 0;
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            int start = nameOffsets[i];
+            int len = nameOffsets[i + 1] - start;
+            maxNameLength = Math.max(maxNameLength, len);
+            int shared = 0;
+            if (i % RESTART_INTERVAL == 0) {
+                restartOffsets[i / RESTART_INTERVAL] = pos;
+            } else {
+                int prevStart = nameOffsets[i - 1];
+                int max = Math.min(len, start - prevStart);
+                while (shared < max && nameBytes[prevStart + shared] == nameBytes[start + shared]) {
+                    shared++;
+                }
+                pos = writeVarint(out, pos, shared);
+            }
+            pos = writeVarint(out, pos, len - shared);
+            System.arraycopy(nameBytes, start + shared, out, pos, len - shared);
+            pos += len - shared;
+        }
+        byte[] bytes = new byte[pos];
+        System.arraycopy(out, 0, bytes, 0, pos);
+        return new FrontCodedNames(bytes, restartOffsets, count, maxNameLength);
+    }
+
+    private static int writeVarint(byte[] out, int pos, int value) {
+        while (value >= 0x80) {
+            out[pos++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**
+     * @return the number of bytes used by the encoded names and restart offsets
+     */
+    long sizeInBytes() {
+        return bytes.length + 4L * restartOffsets.length;
+    }
+
+    /**
+     * @return the name at the given index
+     */
+    String nameAt(int index) {
+        Cursor cursor = cursorAt(index);
+        return new String(cursor.name, 0, cursor.length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes all names into the concatenated layout.
+     *
+     * @param nameOffsets receives the start offset of each name, followed by
+     *        the end of the last one; must hold {@code count + 1} elements
+     * @return the concatenated names
+     */
+    byte[] decodeAll(int[] nameOffsets) {
+        byte[] out = new byte[totalLength()];
+        Cursor cursor = new Cursor();
+        cursor.seekBlock(0);
+        int pos = 0;
+        while (cursor.next()) {
+            nameOffsets[cursor.index] = pos;
+            System.arraycopy(cursor.name, 0, out, pos, cursor.length);
+            pos += cursor.length;
+        }
+        nameOffsets[count] = pos;
+        return out;
+    }
+
+    private int totalLength() {
+        Cursor cursor = new Cursor();
+        cursor.seekBlock(0);
+        int total = 0;
+        while (cursor.next()) {
+            total += cursor.length;
+        }
+        return total;
+    }
+
+    /**
+     * @return the index of the name equal to {@code query}, or {@code -1}
+     */
+    int indexOf(byte[] query) {
+        Cursor cursor = seek(query);
+        return cursor.index < count && cursor.equalsName(query) ? cursor.index : -1;
+    }
+
+    /**
+     * @return a cursor on the name at the given index
+     */
+    Cursor cursorAt(int index) {
+        Cursor cursor = new Cursor();
+        cursor.seekBlock(index / RESTART_INTERVAL);
+        while (cursor.index < index) {
+            cursor.next();
+        }
+        return cursor;
+    }
+
+    /**
+     * Returns a cursor on the first name that is greater than or equal to
+     * {@code key} in unsigned byte order, which is the first name starting
+     * with {@code key} if there is one. The cursor's index is the number of
+     * names if all names are less than {@code key}.
+     */
+    Cursor seek(byte[] key) {
+        // the last restart point less than the key, whose block contains the
+        // lower bound unless it is the next restart point
+        int lo = 0, hi = restartOffsets.length - 1, block = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int pos = restartOffsets[mid];
+            int len = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = bytes[pos++];
+                len |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (CompactEntryTable.compareBytesRange(bytes, pos, len, key, 0, key.length) < 0) {
+                block = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        Cursor cursor = new Cursor();
+        cursor.seekBlock(block);
+        while (cursor.next()) {
+            if (CompactEntryTable.compareBytesRange(cursor.name, 0, cursor.length, key, 0, key.length) >= 0) {
+                break;
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Decodes consecutive names. {@link #name} holds the name at
+     * {@link #index} in its first {@link #length} bytes; {@link #index} is
+     * the number of names once the cursor has moved past the last one.
+     */
+    final class Cursor {
+
+        final byte[] name = new byte[maxNameLength];
+        int length;
+        int index;
+        private int pos;
+
+        /**
+         * Positions the cursor before the first name of the given block.
+         */
+        private void seekBlock(int block) {
+            index = block * RESTART_INTERVAL - 1;
+            pos = block < restartOffsets.length ? restartOffsets[block] : bytes.length;
+        }
+
+        /**
+         * Moves to the next name.
+         *
+         * @return {@code false} if there is no next name
+         */
+        boolean next() {
+            if (index + 1 >= count) {
+                index = count;
+                length = 0;
+                return false;
+            }
+            index++;
+            int shared = index % RESTART_INTERVAL == 0 ? 0 : readVarint();
+            int suffix = readVarint();
+            System.arraycopy(bytes, pos, name, shared, suffix);
+            pos += suffix;
+            length = shared + suffix;
+            return true;
+        }
+
+        /**
+         * @return {@code true} if the current name starts with {@code prefix}
+         */
+        boolean startsWith(byte[] prefix) {
+            if (index >= count || length < prefix.length) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (name[i] != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return {@code true} if the current name is equal to {@code query}
+         */
+        boolean equalsName(byte[] query) {
+            return length == query.length && startsWith(query);
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = bytes[pos++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An {@link ArchiveReader} that memory-maps the whole archive once and then
+ * serves every read from the mapping.
+ * <p>
+ * The archive is mapped read-only through a {@link FileChannel} that is
+ * closed again before the constructor returns. A mapping stays valid after
+ * its channel is closed, so no {@link java.nio.channels.InterruptibleChannel}
+ * remains that an interrupted thread could close: reads are plain memory
+ * accesses, never block in a system call and are not affected by interrupts.
+ * Only the thread opening the archive must not be interrupted while the
+ * mapping is being created.
+ * <p>
+ * Archives larger than {@value #SEGMENT_SIZE} bytes are mapped as several
+ * consecutive segments. {@link #slice(long, int)} exposes zero-copy views of
+ * ranges that lie within a single segment.
+ * <p>
+ * {@link #close()} only marks this reader as closed; the mapping itself is
+ * released by the garbage collector once no slices handed out by this reader
+ * are reachable. Unmapping explicitly would be unsafe while such slices or
+ * in-flight reads still refer to it. As with any mapped file, truncating the
+ * archive while it is open makes accesses to the missing region fail with an
+ * {@link InternalError}.
+ */
+final class MappedArchiveReader implements ArchiveReader {
+
+    static final int SEGMENT_SIZE = 1 << 30;
+
+    private final MappedByteBuffer[] segments;
+    private final long length;
+    private volatile boolean closed;
+
+    /**
+     * Maps the given archive.
+     *
+     * @param path the archive on the default filesystem
+     * @throws IOException if the archive cannot be opened or mapped
+     */
+    MappedArchiveReader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            length = channel.size();
+            int count = (int) Math.max(1, (length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = (long) i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, length - start));
+            }
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void readFully(long position, byte[] buf, int off, int len) throws IOException {
+        ensureOpen();
+        checkRange(position, len);
+        while (len > 0) {
+            MappedByteBuffer segment = segments[(int) (position / SEGMENT_SIZE)];
+            int index = (int) (position % SEGMENT_SIZE);
+            int n = Math.min(len, segment.limit() - index);
+            segment.get(index, buf, off, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Returns a read-only view of {@code len} bytes at the given position
+     * without copying, or {@code null} if the range spans two segments.
+     */
+    @Override
+    public ByteBuffer slice(long position, int len) throws IOException {
+        ensureOpen();
+        checkRange(position, len);
+        MappedByteBuffer segment = segments[(int) (position / SEGMENT_SIZE)];
+        int index = (int) (position % SEGMENT_SIZE);
+        if (index + len > segment.limit()) {
+            return null;
+        }
+        return segment.slice(index, len).asReadOnlyBuffer();
+    }
+
+    /**
+     * Marks this reader as closed. The mapping is left to the garbage collector.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    private void checkRange(long position, int len) throws EOFException {
+        if (position < 0 || len < 0 || position > length - len) {
+            throw new EOFException("Read of " + len + " bytes at " + position
+                    + " exceeds archive length " + length);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new ClosedFileSystemException();
+        }
+    }
+}
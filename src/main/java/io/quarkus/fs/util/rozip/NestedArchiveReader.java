@@ -0,0 +1,75 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedFileSystemException;
+
+/**
+ * An {@link ArchiveReader} over a STORED archive entry, presenting the range
+ * of the outer archive that holds the entry data as an archive of its own.
+ * <p>
+ * Reads are translated by the entry's data offset and delegated to the outer
+ * archive's reader, so a nested archive shares the outer file handles (or
+ * mapping) and needs no copy of its bytes. Closing this reader does not
+ * close the outer reader; once the outer reader is closed, reads through
+ * this one fail with {@link ClosedFileSystemException} as well.
+ */
+final class NestedArchiveReader implements ArchiveReader {
+
+    private final ArchiveReader outer;
+    private final long offset;
+    private final long length;
+    private volatile boolean closed;
+
+    /**
+     * @param outer the reader of the enclosing archive
+     * @param offset absolute offset of the nested archive within the outer one
+     * @param length length of the nested archive in bytes
+     */
+    NestedArchiveReader(ArchiveReader outer, long offset, long length) {
+        this.outer = outer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void readFully(long position, byte[] buf, int off, int len) throws IOException {
+        ensureOpen();
+        checkRange(position, len);
+        outer.readFully(offset + position, buf, off, len);
+    }
+
+    @Override
+    public ByteBuffer slice(long position, int len) throws IOException {
+        ensureOpen();
+        checkRange(position, len);
+        return outer.slice(offset + position, len);
+    }
+
+    /**
+     * Marks this reader as closed. The outer reader is left open.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    private void checkRange(long position, int len) throws EOFException {
+        if (position < 0 || len < 0 || position > length - len) {
+            throw new EOFException("Read of " + len + " bytes at " + position
+                    + " exceeds nested archive length " + length);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new ClosedFileSystemException();
+        }
+    }
+}
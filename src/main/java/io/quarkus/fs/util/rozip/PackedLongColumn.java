@@ -0,0 +1,146 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An immutable column of {@code long} values stored in 4 bytes per value
+ * where possible, for the metadata of {@link CompactEntryTable}.
+ * <p>
+ * Each value is stored as an unsigned 32-bit delta from the smallest value
+ * of the column ({@link #base}). Sizes and offsets of entries in archives
+ * below 4 GB fit as they are; last-modified times fit because the raw DOS
+ * timestamps of {@link DosTime} span less than 2<sup>32</sup> and the
+ * extended timestamps of an archive's entries are usually close together.
+ * A value whose delta does not fit, such as a ZIP64 size or offset, is
+ * stored as {@link #OVERFLOW} and looked up in a side table that holds the
+ * indices of the overflowing values in ascending order alongside the values
+ * themselves.
+ * <p>
+ * Instances are immutable and safe for concurrent use.
+ */
+final class PackedLongColumn {
+
+    private static final int OVERFLOW = -1;
+    private static final int[] NO_INDICES = new int[0];
+    private static final long[] NO_VALUES = new long[0];
+
+    private final long base;
+    private final int[] deltas;
+    private final int[] overflowIndices;
+    private final long[] overflowValues;
+
+    private PackedLongColumn(long base, int[] deltas, int[] overflowIndices, long[] overflowValues) {
+        this.base = base;
+        this.deltas = deltas;
+        this.overflowIndices = overflowIndices;
+        this.overflowValues = overflowValues;
+    }
+
+    /**
+     * @param values the values to store; not retained
+     * @return a column holding the given values
+     */
+    static PackedLongColumn of(long[] values) {
+        long base = Long.MAX_VALUE;
+        for (long value : values) {
+            base = Math.min(base, value);
+        }
+        int[] deltas = new int[values.length];
+        int overflows = 0;
+        for (int i = 0; i < values.length; i++) {
+            long delta = values[i] - base;
+            // the difference is exact as an unsigned value even if it overflows a long
+            if (Long.compareUnsigned(delta, 0xFFFFFFFFL) < 0) {
+                deltas[i] = (int) delta;
+            } else {
+                deltas[i] = OVERFLOW;
+                overflows++;
+            }
+        }
+        int[] overflowIndices = overflows == 0 ? NO_INDICES : new int[overflows];
+        long[] overflowValues = overflows == 0 ? NO_VALUES : new long[overflows];
+        for (int i = 0, o = 0; o < overflows; i++) {
+            if (deltas[i] == OVERFLOW) {
+                overflowIndices[o] = i;
+                overflowValues[o++] = values[i];
+            }
+        }
+        return new PackedLongColumn(base, deltas, overflowIndices, overflowValues);
+    }
+
+    /**
+     * @return the value at the given index
+     */
+    long get(int index) {
+        int delta = deltas[index];
+        if (delta != OVERFLOW) {
+            return base + Integer.toUnsignedLong(delta);
+        }
+        return overflowValues[Arrays.binarySearch(overflowIndices, index)];
+    }
+
+    /**
+     * @return the number of bytes {@link #writeTo} writes for this column
+     */
+    int serializedSize() {
+        return 8 + 4 * deltas.length + 4 + 12 * overflowIndices.length;
+    }
+
+    /**
+     * Writes this column to the given buffer, in the buffer's byte order.
+     * The number of values is not written.
+     */
+    void writeTo(ByteBuffer out) {
+        out.putLong(base);
+        out.asIntBuffer().put(deltas);
+        out.position(out.position() + 4 * deltas.length);
+        out.putInt(overflowIndices.length);
+        out.asIntBuffer().put(overflowIndices);
+        out.position(out.position() + 4 * overflowIndices.length);
+        out.asLongBuffer().put(overflowValues);
+        out.position(out.position() + 8 * overflowValues.length);
+    }
+
+    /**
+     * Restores a column of {@code count} values written by {@link #writeTo},
+     * validating that every overflow marker has a value.
+     *
+     * @throws IOException if the data is inconsistent
+     * @throws java.nio.BufferUnderflowException if the data is truncated
+     */
+    static PackedLongColumn readFrom(ByteBuffer in, int count) throws IOException {
+        long base = in.getLong();
+        if (count > in.remaining() / 4) {
+            throw new IOException("Corrupt entry table snapshot");
+        }
+        int[] deltas = new int[count];
+        in.asIntBuffer().get(deltas);
+        in.position(in.position() + 4 * count);
+        int overflows = in.getInt();
+        if (overflows < 0 || overflows > count || overflows > in.remaining() / 12) {
+            throw new IOException("Corrupt entry table snapshot");
+        }
+        int[] overflowIndices = new int[overflows];
+        in.asIntBuffer().get(overflowIndices);
+        in.position(in.position() + 4 * overflows);
+        long[] overflowValues = new long[overflows];
+        in.asLongBuffer().get(overflowValues);
+        in.position(in.position() + 8 * overflows);
+
+        int o = 0;
+        for (int i = 0; i < count; i++) {
+            if (deltas[i] == OVERFLOW) {
+                if (o == overflows || overflowIndices[o] != i) {
+                    throw new IOException("Corrupt entry table snapshot");
+                }
+                o++;
+            }
+        }
+        if (o != overflows) {
+            throw new IOException("Corrupt entry table snapshot");
+        }
+        return new PackedLongColumn(base, deltas, overflowIndices, overflowValues);
+    }
+}
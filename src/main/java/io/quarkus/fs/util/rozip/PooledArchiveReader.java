@@ -0,0 +1,218 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link ArchiveReader} that serves concurrent reads from an elastic pool
+ * of independent {@link RandomAccessFile} handles.
+ * <p>
+ * A {@link RandomAccessFile} has a single file pointer, so a seek followed
+ * by a read must not be interleaved with another thread's. Rather than
+ * serializing all readers on one handle, each read borrows an idle handle
+ * from a lock-free deque, performs its seek and read without holding any
+ * shared monitor, and returns the handle. A new handle is opened only when
+ * every existing handle is busy, so single-threaded use keeps exactly one
+ * file descriptor open. The number of handles is bounded by a
+ * {@link Semaphore}; once the bound is reached, further readers wait for a
+ * handle to be returned. Waiting is uninterruptible, and
+ * {@link RandomAccessFile} I/O is not affected by interrupts, so the
+ * interrupt immunity of the single-handle design is preserved.
+ * <p>
+ * Additional handles are opened by path. If the archive has been deleted or
+ * replaced since this reader was created (detected by comparing the file
+ * key, size and modification time), the new handle is discarded and the
+ * pool is permanently shrunk to the handles already open, so reads never
+ * observe a different file than the one whose central directory was parsed.
+ * <p>
+ * {@link #close()} closes all idle handles immediately; handles in use by
+ * in-flight reads are closed as soon as they are returned.
+ */
+final class PooledArchiveReader implements ArchiveReader {
+
+    private final Path path;
+    private final long length;
+    private final Object fileKey;
+    private final long lastModified;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<RandomAccessFile> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger openHandles = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Opens the first handle on the given archive.
+     *
+     * @param path the archive on the default filesystem
+     * @param maxHandles upper bound on the number of handles; {@code 1}
+     *        reproduces a single, shared handle
+     * @throws IOException if the archive cannot be opened
+     */
+    PooledArchiveReader(Path path, int maxHandles) throws IOException {
+        if (maxHandles < 1) {
+            throw new IllegalArgumentException("maxHandles must be at least 1: " + maxHandles);
+        }
+        this.path = path;
+        this.permits = new Semaphore(maxHandles);
+        RandomAccessFile first = new RandomAccessFile(path.toFile(), "r");
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            this.fileKey = attrs.fileKey();
+            this.lastModified = attrs.lastModifiedTime().toMillis();
+            this.length = first.length();
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(first, e);
+            throw e;
+        }
+        openHandles.set(1);
+        idle.push(first);
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void readFully(long position, byte[] buf, int off, int len) throws IOException {
+        RandomAccessFile raf = borrow();
+        try {
+            raf.seek(position);
+            raf.readFully(buf, off, len);
+        } finally {
+            giveBack(raf);
+        }
+    }
+
+    /**
+     * @return the number of handles currently open
+     */
+    int openHandles() {
+        return openHandles.get();
+    }
+
+    /**
+     * Closes all idle handles. Handles borrowed by in-flight reads are closed
+     * when they are returned. This method is idempotent.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        drain();
+    }
+
+    /**
+     * Acquires a permit and takes an idle handle, opening a new one if none is
+     * idle. The caller must pass the handle to {@link #giveBack} when done.
+     */
+    RandomAccessFile borrow() throws IOException {
+        while (true) {
+            ensureOpen();
+            permits.acquireUninterruptibly();
+            if (closed) {
+                permits.release();
+                throw new ClosedFileSystemException();
+            }
+            RandomAccessFile raf = idle.pollFirst();
+            if (raf == null) {
+                try {
+                    raf = openAdditional();
+                } catch (IOException | RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+                if (raf == null) {
+                    // The archive can no longer be reopened. Every open handle is busy
+                    // (otherwise one would have been idle), so retiring this permit
+                    // leaves at least as many permits as handles.
+                    continue;
+                }
+            }
+            return raf;
+        }
+    }
+
+    /**
+     * Returns a borrowed handle to the pool and releases its permit.
+     */
+    void giveBack(RandomAccessFile raf) throws IOException {
+        idle.offerFirst(raf);
+        permits.release();
+        if (closed) {
+            // close() may have drained the pool before the handle was returned
+            drain();
+        }
+    }
+
+    /**
+     * Opens another handle on the archive, verifying that it still refers to
+     * the file this reader was created for.
+     *
+     * @return the new handle, or {@code null} if the archive has been deleted
+     *         or replaced
+     */
+    private RandomAccessFile openAdditional() throws IOException {
+        ensureOpen();
+        RandomAccessFile raf;
+        try {
+            raf = new RandomAccessFile(path.toFile(), "r");
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (raf.length() != length
+                    || attrs.lastModifiedTime().toMillis() != lastModified
+                    || !Objects.equals(attrs.fileKey(), fileKey)) {
+                raf.close();
+                return null;
+            }
+        } catch (IOException e) {
+            closeQuietly(raf, e);
+            return null;
+        }
+        openHandles.incrementAndGet();
+        return raf;
+    }
+
+    private void drain() throws IOException {
+        IOException failure = null;
+        RandomAccessFile raf;
+        while ((raf = idle.pollFirst()) != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+            openHandles.decrementAndGet();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new ClosedFileSystemException();
+        }
+    }
+
+    private static void closeQuietly(RandomAccessFile raf, Exception primary) {
+        try {
+            raf.close();
+        } catch (IOException closeEx) {
+            primary.addSuppressed(closeEx);
+        }
+    }
+}
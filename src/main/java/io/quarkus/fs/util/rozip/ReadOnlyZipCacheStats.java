@@ -0,0 +1,47 @@
+package io.quarkus.fs.util.rozip;
+
+/**
+ * A snapshot of the counters of the entry cache of a
+ * {@link ReadOnlyZipFileSystem}, returned by
+ * {@link ReadOnlyZipFileSystem#cacheStats()}.
+ * <p>
+ * The counters accumulate over the lifetime of the filesystem; the current
+ * size reflects the moment the snapshot was taken. All values are zero when
+ * caching is disabled. Filesystems obtained from
+ * {@link ReadOnlyZipFileSystem#openShared(java.nio.file.Path)} for the same
+ * file count their own hits and misses but share the entries, the size and
+ * the evictions of their archive.
+ *
+ * @param hits the number of reads served from the cache, from either tier
+ * @param compressedHits the number of those reads served from compressed
+ *        bytes, which were inflated again (see
+ *        {@link ReadOnlyZipOptions.CacheTier#COMPRESSED})
+ * @param misses the number of reads of entries that were not cached
+ * @param evictions the number of entries removed to stay within the budget;
+ *        entries removed by {@link ReadOnlyZipFileSystem#clearCache()} or
+ *        when a filesystem is closed are not counted
+ * @param entries the number of entries currently cached
+ * @param bytes the number of bytes currently charged to the budget
+ * @param maxBytes the budget in bytes
+ */
+public record ReadOnlyZipCacheStats(long hits, long compressedHits, long misses, long evictions, int entries,
+        long bytes, long maxBytes) {
+
+    static final ReadOnlyZipCacheStats DISABLED = new ReadOnlyZipCacheStats(0, 0, 0, 0, 0, 0, 0);
+
+    /**
+     * @return the number of reads served from uncompressed data
+     */
+    public long uncompressedHits() {
+        return hits - compressedHits;
+    }
+
+    /**
+     * @return the share of reads served from the cache, or 0 if nothing has
+     *         been read
+     */
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -1,28 +1,43 @@
 package io.quarkus.fs.util.rozip;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
-import java.lang.ref.SoftReference;
+import java.lang.ref.Cleaner;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.ClosedFileSystemException;
 import java.nio.file.FileStore;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystemException;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.UserPrincipalLookupService;
 import java.nio.file.spi.FileSystemProvider;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 import java.util.zip.CRC32;
@@ -40,11 +55,23 @@ import java.util.zip.Inflater;
  * This eliminates the root cause of
  * <a href="https://bugs.openjdk.org/browse/JDK-8316882">JDK-8316882</a>.
  * <p>
- * Entry data is read on demand and decompressed into a byte array. STORED and
- * DEFLATED compression methods are supported. All reads are synchronized on
- * the underlying {@link RandomAccessFile} for thread safety.
+ * Entry data is read on demand, either decompressed into a byte array or
+ * streamed and inflated incrementally through an {@link InputStream}. STORED
+ * and DEFLATED compression methods are supported. Reads are positional and go
+ * through a {@link PooledArchiveReader}, which hands each concurrent reader
+ * its own {@link RandomAccessFile} handle instead of serializing all readers
+ * on a single one. Alternatively, a {@link StripedArchiveReader} with a fixed
+ * set of handles, or a {@link MappedArchiveReader} serving reads from a
+ * memory mapping, can be selected through {@link ReadOnlyZipOptions}.
  * <p>
- * Instances are created via the {@link #open(Path)} factory method.
+ * Besides the NIO API, entries can be resolved once with
+ * {@link #lookup(String)} to an {@code int} handle that gives allocation-free
+ * access to their metadata and direct access to their data.
+ * <p>
+ * Instances are created via the {@link #open(Path)},
+ * {@link #open(Path, ReadOnlyZipOptions)} and {@link #openShared(Path)}
+ * factory methods, or via
+ * {@link #openNested(Path)} for archives nested inside another one.
  *
  * @see ReadOnlyZipPath
  * @see ReadOnlyZipFileSystemProvider
@@ -54,30 +81,60 @@ public class ReadOnlyZipFileSystem extends FileSystem {
     private static final int LOCAL_HEADER_SIG = 0x04034b50;
     private static final int LOCAL_HEADER_FIXED_SIZE = 30;
     private static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
-    private static final int METHOD_STORED = 0;
-    private static final int METHOD_DEFLATED = 8;
+    static final int METHOD_STORED = 0;
+    static final int METHOD_DEFLATED = 8;
 
     static final long MAX_ENTRY_SIZE = 256 * 1024 * 1024L; // 256 MB
     private static final long MAX_COMPRESSION_RATIO = 1000;
+    static final long DEFAULT_CACHE_SIZE = 64 * 1024 * 1024L; // 64 MB
     static boolean CACHE_ENABLED = Boolean.getBoolean("rozip.cache");
+    static long CACHE_SIZE = Long.getLong("rozip.cacheSize", 0);
+    static boolean SHARED_CACHE = Boolean.getBoolean("rozip.sharedCache");
+    static long SHARED_CACHE_SIZE = Long.getLong("rozip.sharedCacheSize", DEFAULT_CACHE_SIZE);
+    static ReadOnlyZipOptions.CacheTier CACHE_TIER = ReadOnlyZipOptions.parseCacheTier(
+            System.getProperty("rozip.cacheTier"));
+    static boolean CACHE_OFF_HEAP = Boolean.getBoolean("rozip.cacheOffHeap");
+    static final int PREFETCH_MAX_READ = 4 * 1024 * 1024; // 4 MB
+    private static final int PREFETCH_MAX_GAP = 64 * 1024;
+    // local extra fields are often longer than the central directory's
+    private static final int PREFETCH_HEADER_SLACK = 256;
+    static int MAX_READ_HANDLES = Integer.getInteger("rozip.readHandles",
+            Math.min(Runtime.getRuntime().availableProcessors(), 8));
+    static String INDEX_CACHE_DIR = System.getProperty("rozip.indexCache");
+    static int PARALLEL_PARSE_THRESHOLD = Integer.getInteger("rozip.parallelParseThreshold", 200_000);
+    static boolean HASH_INDEX = Boolean.parseBoolean(System.getProperty("rozip.hashIndex", "true"));
+    static boolean LAZY_METADATA = Boolean.getBoolean("rozip.lazyMetadata");
+    static boolean COMPACT_NAMES = Boolean.getBoolean("rozip.compactNames");
+    static boolean DIRECTORY_INDEX = Boolean.getBoolean("rozip.directoryIndex");
 
     private final Path zipPath;
-    private final RandomAccessFile raf;
+    private final ArchiveReader reader;
+    private final Path spillFile;
+    private final Cleaner.Cleanable spillCleanup;
+    private final ReadOnlyZipFileSystem parent;
+    // nested filesystems reading through this one's reader, closed along with it
+    private final Set<ReadOnlyZipFileSystem> nestedInPlace = ConcurrentHashMap.newKeySet();
+    private final SharedArchive shared;
     private final CompactEntryTable entryTable;
     private final ReadOnlyZipPath rootPath;
     private final FileStore fileStore;
     private final AtomicBoolean open = new AtomicBoolean(true);
     private static final int MAX_INFLATER_POOL_SIZE = 8;
     private final Deque<Inflater> inflaterPool = new ArrayDeque<>();
-    private final ConcurrentHashMap<String, SoftReference<byte[]>> entryCache;
+    private final EntryCache entryCache;
+    private final EntryCache.Owner cacheOwner;
+    private final ReadOnlyZipOptions.CacheTier cacheTier;
 
     /**
      * Opens a read-only, non-interruptible filesystem for the given ZIP/JAR file.
      * <p>
      * The central directory is parsed immediately. The underlying
      * {@link RandomAccessFile} remains open until {@link #close()} is called.
+     * Additional handles on the same file are opened on demand while several
+     * threads read concurrently, up to {@code -Drozip.readHandles} (by default
+     * the number of available processors, capped at 8).
      * <p>
-     * Each invocation opens a new, independent file handle — no caching or
+     * Each invocation opens new, independent file handles — no caching or
      * deduplication is performed. Callers that need to avoid duplicate handles
      * for the same archive should cache the returned instance themselves.
      *
@@ -86,13 +143,99 @@ public class ReadOnlyZipFileSystem extends FileSystem {
      * @throws IOException if the file cannot be read or is not a valid ZIP archive
      */
     public static ReadOnlyZipFileSystem open(Path zipFile) throws IOException {
-        RandomAccessFile raf = new RandomAccessFile(zipFile.toFile(), "r");
+        return open(zipFile, ReadOnlyZipOptions.defaults());
+    }
+
+    /**
+     * Opens a read-only, non-interruptible filesystem for the given ZIP/JAR file
+     * using the given options.
+     * <p>
+     * With {@link ReadOnlyZipOptions.ReadMode#STRIPED}, all
+     * {@link ReadOnlyZipOptions#readHandles()} handles are opened immediately
+     * and each thread reads through the handle selected by its thread id.
+     * With {@link ReadOnlyZipOptions.ReadMode#MAPPED}, the archive is
+     * memory-mapped once and no file handle remains open afterwards.
+     * If {@link ReadOnlyZipOptions#indexCacheDirectory()} is set, a matching
+     * snapshot of the parsed central directory is used instead of parsing it.
+     *
+     * @param zipFile path to the ZIP or JAR file
+     * @param options how the archive should be read
+     * @return a new {@link ReadOnlyZipFileSystem} instance
+     * @throws IOException if the file cannot be read or is not a valid ZIP archive
+     * @see #open(Path)
+     */
+    public static ReadOnlyZipFileSystem open(Path zipFile, ReadOnlyZipOptions options) throws IOException {
+        ArchiveReader reader = openReader(zipFile, options);
+        return new ReadOnlyZipFileSystem(zipFile, reader, parse(zipFile, reader, options), entryCache(options),
+                options.entryCacheTier());
+    }
+
+    /**
+     * Opens a read-only, non-interruptible filesystem for the given ZIP/JAR
+     * file, sharing file handles and the parsed central directory with every
+     * other filesystem opened this way for the same file.
+     * <p>
+     * Archives are identified by their real path, file key, size and
+     * modification time, so different paths to the same file share one
+     * archive, while a file replaced on disk is opened afresh. The first
+     * invocation for an archive opens and parses it using
+     * {@link ReadOnlyZipOptions#defaults()}; later ones only take a
+     * reference to it.
+     * <p>
+     * Each invocation returns a distinct filesystem that must be closed
+     * independently; closing it only affects that instance. The shared file
+     * handles are closed, and the central directory released, when the last
+     * filesystem for the archive is closed.
+     *
+     * @param zipFile path to the ZIP or JAR file
+     * @return a new {@link ReadOnlyZipFileSystem} instance
+     * @throws IOException if the file cannot be read or is not a valid ZIP archive
+     */
+    public static ReadOnlyZipFileSystem openShared(Path zipFile) throws IOException {
+        SharedArchive.Key key = SharedArchive.Key.of(zipFile);
+        SharedArchive shared = SharedArchive.retain(key);
+        if (shared == null) {
+            ArchiveReader reader = openReader(key.realPath(), ReadOnlyZipOptions.defaults());
+            ZipCentralDirectory cd = parse(key.realPath(), reader, ReadOnlyZipOptions.defaults());
+            shared = SharedArchive.register(new SharedArchive(key, reader, cd,
+                    entryCache(ReadOnlyZipOptions.defaults())));
+        }
+        return new ReadOnlyZipFileSystem(zipFile, shared.reader(), shared.centralDirectory(), null, null, shared,
+                shared.entryCache(), ReadOnlyZipOptions.defaults().entryCacheTier());
+    }
+
+    private static ArchiveReader openReader(Path zipFile, ReadOnlyZipOptions options) throws IOException {
+        return switch (options.readMode()) {
+            case POOLED -> new PooledArchiveReader(zipFile, options.readHandles());
+            case STRIPED -> new StripedArchiveReader(zipFile, options.readHandles());
+            case MAPPED -> new MappedArchiveReader(zipFile);
+        };
+    }
+
+    /**
+     * @return the entry cache to use with the given options, or {@code null}
+     *         if entries are not cached
+     */
+    private static EntryCache entryCache(ReadOnlyZipOptions options) {
+        if (options.sharedEntryCache()) {
+            return EntryCache.shared();
+        }
+        return options.entryCacheSize() > 0 ? new EntryCache(options.entryCacheSize(), options.entryCacheOffHeap())
+                : null;
+    }
+
+    /**
+     * Parses the central directory, closing the reader if that fails.
+     */
+    private static ZipCentralDirectory parse(Path zipFile, ArchiveReader reader, ReadOnlyZipOptions options)
+            throws IOException {
         try {
-            ZipCentralDirectory cd = ZipCentralDirectory.parse(raf);
-            return new ReadOnlyZipFileSystem(zipFile, raf, cd);
+            EntryTableSnapshot snapshot = options.indexCacheDirectory() == null ? null
+                    : new EntryTableSnapshot(options.indexCacheDirectory(), zipFile, reader.length());
+            return ZipCentralDirectory.parse(reader, snapshot, options);
         } catch (IOException | RuntimeException e) {
             try {
-                raf.close();
+                reader.close();
             } catch (IOException closeEx) {
                 e.addSuppressed(closeEx);
             }
@@ -104,18 +247,198 @@ public class ReadOnlyZipFileSystem extends FileSystem {
      * Constructs a new filesystem backed by the given archive file.
      *
      * @param zipPath path to the ZIP/JAR file on the default filesystem
-     * @param raf an open file handle for reading entry data
+     * @param reader an open reader for entry data
      * @param cd the parsed central directory
+     * @param entryCache the entry cache, or {@code null} to disable caching
+     * @param cacheTier the form in which DEFLATED entries are cached
      */
-    private ReadOnlyZipFileSystem(Path zipPath, RandomAccessFile raf, ZipCentralDirectory cd) {
+    private ReadOnlyZipFileSystem(Path zipPath, ArchiveReader reader, ZipCentralDirectory cd, EntryCache entryCache,
+            ReadOnlyZipOptions.CacheTier cacheTier) {
+        this(zipPath, reader, cd, null, null, null, entryCache, cacheTier);
+    }
+
+    /**
+     * Constructs a new filesystem backed by the given archive.
+     *
+     * @param zipPath path to the ZIP/JAR file, either on the default
+     *        filesystem or, for a nested archive, within the outer filesystem
+     * @param reader an open reader for entry data
+     * @param cd the parsed central directory
+     * @param spillFile temporary copy of the archive to delete on close, or {@code null}
+     * @param parent the filesystem whose reader a nested archive read in
+     *        place reads through, or {@code null}
+     * @param shared the shared archive to release on close instead of closing
+     *        {@code reader}, or {@code null}
+     * @param entryCache the entry cache, private to this archive or the
+     *        shared one, or {@code null} to disable caching; with
+     *        {@code shared}, the cache of the shared archive
+     * @param cacheTier the form in which DEFLATED entries are cached
+     */
+    private ReadOnlyZipFileSystem(Path zipPath, ArchiveReader reader, ZipCentralDirectory cd, Path spillFile,
+            ReadOnlyZipFileSystem parent, SharedArchive shared, EntryCache entryCache,
+            ReadOnlyZipOptions.CacheTier cacheTier) {
         this.zipPath = zipPath;
-        this.raf = raf;
+        this.reader = reader;
+        this.spillFile = spillFile;
+        this.spillCleanup = spillFile == null ? null
+                : SpillCleaner.CLEANER.register(this, SpillCleaner.closeAndDelete(reader, spillFile));
+        this.parent = parent;
+        this.shared = shared;
         this.entryTable = cd.entryTable();
-        this.entryCache = CACHE_ENABLED ? new ConcurrentHashMap<>() : null;
+        this.entryCache = entryCache;
+        this.cacheOwner = entryCache == null ? null
+                : entryCache.newOwner(shared != null ? shared.cacheArchive() : entryCache.newArchive());
+        this.cacheTier = cacheTier;
         this.rootPath = new ReadOnlyZipPath(this, "/");
         this.fileStore = new ReadOnlyZipFileStore(zipPath);
     }
 
+    /**
+     * Opens a ZIP/JAR archive stored as an entry of this archive, such as a
+     * JAR inside an uber-JAR, as a filesystem of its own.
+     * <p>
+     * If the entry is STORED, its central directory is parsed in place and
+     * the nested filesystem reads through this filesystem's reader at the
+     * entry's offset: nothing is extracted and no file handle is opened. Such
+     * a nested filesystem is closed along with this filesystem, even if it
+     * was obtained from {@link #openShared(Path)} and the reader stays open
+     * for other filesystems.
+     * <p>
+     * If the entry is compressed, it is inflated (and its CRC-32 verified)
+     * into a temporary file, which the nested filesystem reads from and
+     * deletes when it is closed. Such a nested filesystem remains usable
+     * after this filesystem is closed and must be closed on its own; if it
+     * is garbage collected without being closed, the temporary file is
+     * deleted then, but a file left by a filesystem that is neither closed
+     * nor collected remains after the JVM exits.
+     * <p>
+     * Its paths convert to {@code jar:jar:...!/inner.jar!/entry} URIs.
+     *
+     * @param entry path of the nested archive within this filesystem
+     * @return a new {@link ReadOnlyZipFileSystem} for the nested archive
+     * @throws java.nio.file.ProviderMismatchException if {@code entry} does
+     *         not belong to this filesystem
+     * @throws NoSuchFileException if the entry does not exist
+     * @throws IOException if the entry is a directory, is not a valid ZIP
+     *         archive, or an I/O error occurs
+     */
+    public ReadOnlyZipFileSystem openNested(Path entry) throws IOException {
+        if (!(entry instanceof ReadOnlyZipPath) || entry.getFileSystem() != this) {
+            throw new ProviderMismatchException("Not a path of " + this + ": " + entry);
+        }
+        ensureOpen();
+        String entryName = ReadOnlyZipFileSystemProvider.toEntryName(entry);
+        ZipEntryInfo info = getFileEntry(entryName);
+
+        ArchiveReader nestedReader;
+        Path spill = null;
+        if (info.compressionMethod() == METHOD_STORED) {
+            long dataOffset = dataOffset(info, readLocalHeader(info));
+            nestedReader = new NestedArchiveReader(reader, dataOffset, info.compressedSize());
+        } else {
+            spill = Files.createTempFile("rozip-nested-", ".zip");
+            try {
+                try (InputStream in = newEntryInputStream(entryName)) {
+                    Files.copy(in, spill, StandardCopyOption.REPLACE_EXISTING);
+                }
+                nestedReader = new PooledArchiveReader(spill, MAX_READ_HANDLES);
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(spill, e);
+                throw e;
+            }
+        }
+        try {
+            ZipCentralDirectory cd = ZipCentralDirectory.parse(nestedReader, ReadOnlyZipOptions.defaults()
+                    .withHashIndex(entryTable.hasHashIndex())
+                    .withLazyMetadata(entryTable.hasLazyMetadata())
+                    .withCompactNames(entryTable.hasCompactNames())
+                    .withDirectoryIndex(entryTable.hasDirectoryIndex()));
+            EntryCache nestedCache = entryCache == null || entryCache.isShared() ? entryCache
+                    : new EntryCache(entryCache.maxBytes(), entryCache.isOffHeap());
+            ReadOnlyZipFileSystem nested = new ReadOnlyZipFileSystem(entry.toAbsolutePath(), nestedReader, cd, spill,
+                    spill == null ? this : null, null, nestedCache, cacheTier);
+            if (spill == null) {
+                nestedInPlace.add(nested);
+                if (!isOpen()) {
+                    // closed concurrently, possibly before the nested filesystem was added
+                    nested.close();
+                    throw new ClosedFileSystemException();
+                }
+            }
+            return nested;
+        } catch (IOException | RuntimeException e) {
+            try {
+                nestedReader.close();
+            } catch (IOException closeEx) {
+                e.addSuppressed(closeEx);
+            }
+            if (spill != null) {
+                deleteQuietly(spill, e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cleans up after nested filesystems that are garbage collected without
+     * being closed. The cleaner thread is only started once a compressed
+     * nested archive is opened.
+     */
+    private static final class SpillCleaner {
+
+        static final Cleaner CLEANER = Cleaner.create();
+
+        /**
+         * @return an action closing the reader of a nested filesystem and
+         *         deleting its temporary file, which must not refer to the
+         *         filesystem itself
+         */
+        static Runnable closeAndDelete(ArchiveReader reader, Path spillFile) {
+            return () -> {
+                try {
+                    reader.close();
+                } catch (IOException | RuntimeException ignored) {
+                    // the file is deleted regardless
+                }
+                try {
+                    Files.deleteIfExists(spillFile);
+                } catch (IOException | RuntimeException ignored) {
+                    // nothing more to do; it is a temporary file
+                }
+            };
+        }
+    }
+
+    private static void deleteQuietly(Path file, Exception primary) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException deleteEx) {
+            primary.addSuppressed(deleteEx);
+        }
+    }
+
+    /**
+     * @return the shared archive backing this filesystem, or {@code null} if
+     *         it was not opened with {@link #openShared(Path)}
+     */
+    SharedArchive getSharedArchive() {
+        return shared;
+    }
+
+    /**
+     * @return the temporary copy backing a nested archive, or {@code null}
+     */
+    Path getSpillFile() {
+        return spillFile;
+    }
+
+    /**
+     * @return the index of the entries of this archive
+     */
+    CompactEntryTable getEntryTable() {
+        return entryTable;
+    }
+
     /**
      * @return the singleton {@link ReadOnlyZipFileSystemProvider}
      */
@@ -125,16 +448,39 @@ public class ReadOnlyZipFileSystem extends FileSystem {
     }
 
     /**
-     * Closes this filesystem and releases the underlying file handle.
+     * Closes this filesystem and releases the underlying file handles.
      * <p>
      * After closing, all operations on paths from this filesystem will throw
-     * {@link ClosedFileSystemException}. This method is idempotent.
+     * {@link ClosedFileSystemException}. Reads already in progress complete
+     * on their own handle, which is closed once they return it. For a
+     * filesystem obtained from {@link #openShared(Path)}, the file handles
+     * are only closed once every filesystem sharing them is closed. Nested
+     * filesystems reading STORED entries of this one in place are closed as
+     * well. This method is idempotent.
      */
     @Override
     public void close() throws IOException {
         if (open.compareAndSet(true, false)) {
-            synchronized (raf) {
-                raf.close();
+            for (ReadOnlyZipFileSystem nested : nestedInPlace) {
+                nested.close();
+            }
+            if (parent != null) {
+                parent.nestedInPlace.remove(this);
+            }
+            try {
+                if (shared != null) {
+                    shared.release();
+                } else {
+                    reader.close();
+                }
+            } finally {
+                if (spillFile != null) {
+                    try {
+                        Files.deleteIfExists(spillFile);
+                    } finally {
+                        spillCleanup.clean();
+                    }
+                }
             }
             synchronized (inflaterPool) {
                 Inflater inf;
@@ -142,8 +488,9 @@ public class ReadOnlyZipFileSystem extends FileSystem {
                     inf.end();
                 }
             }
-            if (entryCache != null) {
-                entryCache.clear();
+            // the entries of a shared archive are removed with its last reference
+            if (entryCache != null && shared == null) {
+                entryCache.close(cacheOwner.archive());
             }
         }
     }
@@ -290,7 +637,8 @@ public class ReadOnlyZipFileSystem extends FileSystem {
     }
 
     /**
-     * @return the path to the underlying ZIP file on the default filesystem
+     * @return the path to the underlying ZIP file on the default filesystem, or
+     *         within the outer filesystem for a nested archive
      */
     Path getZipPath() {
         return zipPath;
@@ -392,8 +740,9 @@ public class ReadOnlyZipFileSystem extends FileSystem {
     /**
      * Reads and decompresses the data for the given entry.
      * <p>
-     * The compressed bytes are read from the underlying {@link RandomAccessFile}
-     * within a synchronized block. If the entry uses DEFLATED compression, the
+     * The compressed bytes are read from the archive with a single positional
+     * read, or taken directly from the mapping when the archive is
+     * memory-mapped. If the entry uses DEFLATED compression, the
      * data is decompressed using {@link Inflater} before being returned.
      *
      * @param entryName the entry name
@@ -403,6 +752,335 @@ public class ReadOnlyZipFileSystem extends FileSystem {
      */
     byte[] readEntryData(String entryName) throws IOException {
         ensureOpen();
+        return readEntryData(getFileEntry(entryName));
+    }
+
+    private byte[] readEntryData(ZipEntryInfo info) throws IOException {
+        byte[] cached = getCached(info);
+        if (cached != null) {
+            return cached;
+        }
+
+        validateEntrySize(info);
+        CompressedEntry ce = readCompressedData(info);
+        if (entryCache == null) {
+            return decompress(ce, info);
+        }
+        if (cachesCompressed(info)) {
+            // taken before inflating, which consumes the buffer
+            byte[] compressed = toByteArray(ce.data());
+            byte[] result = decompress(ce, info);
+            entryCache.put(cacheOwner, info.localHeaderOffset(), true, compressed);
+            return result;
+        }
+        byte[] result = decompress(ce, info);
+        entryCache.put(cacheOwner, info.localHeaderOffset(), false, result);
+        return result;
+    }
+
+    /**
+     * @return {@code true} if the entry is cached as its compressed bytes
+     */
+    private boolean cachesCompressed(ZipEntryInfo info) {
+        return cacheTier == ReadOnlyZipOptions.CacheTier.COMPRESSED && info.compressionMethod() == METHOD_DEFLATED;
+    }
+
+    /**
+     * @return {@code true} if the entry cache is enabled and admits the
+     *         entry, whose size is recorded in the central directory, so that
+     *         a stream or channel over it is served by
+     *         {@link #readEntryData(ZipEntryInfo)} and fills the cache
+     */
+    private boolean cacheable(ZipEntryInfo info) {
+        long size = info.uncompressedSize();
+        return entryCache != null && (size != 0 || info.crc32() == 0) && entryCache.admits(size);
+    }
+
+    /**
+     * Looks up an entry in the entry cache. In the compressed tier, a
+     * DEFLATED entry is inflated from its cached compressed bytes.
+     *
+     * @return the uncompressed data of the entry, or {@code null} if the
+     *         cache is disabled or does not hold the entry
+     */
+    private byte[] getCached(ZipEntryInfo info) throws IOException {
+        if (entryCache == null) {
+            return null;
+        }
+        if (cachesCompressed(info)) {
+            byte[] compressed = entryCache.get(cacheOwner, info.localHeaderOffset(), true);
+            return compressed == null ? null : decompress(new CompressedEntry(ByteBuffer.wrap(compressed), 0), info);
+        }
+        return entryCache.get(cacheOwner, info.localHeaderOffset(), false);
+    }
+
+    /**
+     * Resolves an entry name to a handle that can be passed to
+     * {@link #size(int)}, {@link #crc(int)}, {@link #lastModifiedTime(int)},
+     * {@link #isDirectory(int)}, {@link #read(int)} and {@link #open(int)}.
+     * <p>
+     * Unlike the NIO API, this neither creates paths nor builds attribute
+     * objects: resolving a name and querying a handle allocate nothing.
+     * Handles remain valid for the lifetime of this filesystem, so a caller
+     * such as a class loader can resolve a name once and reuse the handle.
+     * Handles are meaningful only for the filesystem that returned them.
+     *
+     * @param entryName the entry name, with or without a leading {@code '/'}
+     * @return a handle for the entry, or {@code -1} if there is no entry
+     *         with this name; implicit directories and the root have no entry
+     */
+    public int lookup(String entryName) {
+        ensureOpen();
+        entryName = normalizeEntryName(entryName);
+        return entryName.isEmpty() ? -1 : entryTable.indexOf(entryName);
+    }
+
+    /**
+     * @param handle a handle returned by {@link #lookup(String)}
+     * @return the uncompressed size of the entry in bytes
+     * @throws IllegalArgumentException if the handle is not valid
+     */
+    public long size(int handle) {
+        return entryTable.uncompressedSize(checkHandle(handle));
+    }
+
+    /**
+     * @param handle a handle returned by {@link #lookup(String)}
+     * @return the CRC-32 of the uncompressed entry data
+     * @throws IllegalArgumentException if the handle is not valid
+     */
+    public long crc(int handle) {
+        return entryTable.crc32(checkHandle(handle));
+    }
+
+    /**
+     * @param handle a handle returned by {@link #lookup(String)}
+     * @return the last-modified time of the entry in milliseconds since the epoch
+     * @throws IllegalArgumentException if the handle is not valid
+     */
+    public long lastModifiedTime(int handle) {
+        return entryTable.lastModifiedTime(checkHandle(handle));
+    }
+
+    /**
+     * @param handle a handle returned by {@link #lookup(String)}
+     * @return {@code true} if the entry is an explicit directory
+     * @throws IllegalArgumentException if the handle is not valid
+     */
+    public boolean isDirectory(int handle) {
+        return entryTable.isDirectory(checkHandle(handle));
+    }
+
+    /**
+     * Reads and decompresses the data of an entry, as
+     * {@link Files#readAllBytes(Path)} does for its path.
+     *
+     * @param handle a handle returned by {@link #lookup(String)}
+     * @return the uncompressed entry data
+     * @throws IllegalArgumentException if the handle is not valid
+     * @throws IOException if the entry is a directory or an I/O error occurs
+     */
+    public byte[] read(int handle) throws IOException {
+        return readEntryData(getFileEntry(handle));
+    }
+
+    /**
+     * Opens a stream over the uncompressed data of an entry, as
+     * {@link Files#newInputStream} does for its path.
+     *
+     * @param handle a handle returned by {@link #lookup(String)}
+     * @return a stream over the uncompressed entry data
+     * @throws IllegalArgumentException if the handle is not valid
+     * @throws IOException if the entry is a directory or an I/O error occurs
+     */
+    public InputStream open(int handle) throws IOException {
+        return newEntryInputStream(getFileEntry(handle));
+    }
+
+    private int checkHandle(int handle) {
+        ensureOpen();
+        if (handle < 0 || handle >= entryTable.size()) {
+            throw new IllegalArgumentException("Invalid entry handle: " + handle);
+        }
+        return handle;
+    }
+
+    private ZipEntryInfo getFileEntry(int handle) throws FileSystemException {
+        ZipEntryInfo info = entryTable.entryAt(checkHandle(handle));
+        if (info.directory()) {
+            throw new FileSystemException(info.name(), null, "is a directory");
+        }
+        return info;
+    }
+
+    /**
+     * Returns the uncompressed data of the given entry as a read-only
+     * {@link ByteBuffer}, verifying its CRC-32.
+     *
+     * @param entryName the entry name, with or without a leading {@code '/'}
+     * @return a read-only buffer positioned at 0 holding the entry data
+     * @throws NoSuchFileException if the entry does not exist
+     * @throws IOException if the entry is a directory or an I/O error occurs
+     * @see #readEntryBuffer(String, boolean)
+     */
+    public ByteBuffer readEntryBuffer(String entryName) throws IOException {
+        return readEntryBuffer(entryName, true);
+    }
+
+    /**
+     * Returns the uncompressed data of the given entry as a read-only
+     * {@link ByteBuffer}.
+     * <p>
+     * For STORED entries in an archive opened with
+     * {@link ReadOnlyZipOptions.ReadMode#MAPPED}, the returned buffer is a
+     * view of the mapping and no entry bytes are copied. The buffer remains
+     * readable after this filesystem is closed. In the other read modes,
+     * STORED data is read into a heap buffer with a single copy. DEFLATED
+     * entries are always inflated into a heap buffer, as by
+     * {@link Files#readAllBytes(Path)}.
+     * <p>
+     * Passing {@code verifyCrc = false} skips the CRC-32 pass over STORED
+     * data, leaving verification to the caller, for example after the data
+     * has been served. Sizes are still validated, and DEFLATED entries are
+     * always verified since they are inflated in full anyway.
+     *
+     * @param entryName the entry name, with or without a leading {@code '/'}
+     * @param verifyCrc whether to verify the CRC-32 of STORED data
+     * @return a read-only buffer positioned at 0 holding the entry data
+     * @throws NoSuchFileException if the entry does not exist
+     * @throws IOException if the entry is a directory or an I/O error occurs
+     */
+    public ByteBuffer readEntryBuffer(String entryName, boolean verifyCrc) throws IOException {
+        ensureOpen();
+        entryName = normalizeEntryName(entryName);
+        ZipEntryInfo info = getFileEntry(entryName);
+        if (info.compressionMethod() != METHOD_STORED) {
+            return ByteBuffer.wrap(readEntryData(info)).asReadOnlyBuffer();
+        }
+
+        if (entryCache != null) {
+            byte[] cached = entryCache.get(cacheOwner, info.localHeaderOffset(), false);
+            if (cached != null) {
+                return ByteBuffer.wrap(cached).asReadOnlyBuffer();
+            }
+        }
+
+        validateEntrySize(info);
+        ByteBuffer data = readCompressedData(info).data();
+        if (verifyCrc) {
+            CRC32 crc = new CRC32();
+            crc.update(data.duplicate());
+            verifyCrc32(crc.getValue(), info);
+            if (entryCache != null && data.hasArray()) {
+                entryCache.put(cacheOwner, info.localHeaderOffset(), false, data.array());
+            }
+        }
+        return data.asReadOnlyBuffer();
+    }
+
+    /**
+     * Opens a stream over the uncompressed data of the given entry.
+     * <p>
+     * Unlike {@link #readEntryData(String)}, the entry is not materialized:
+     * the local file header is read to locate the entry data, and the
+     * returned {@link ZipEntryInputStream} then reads the compressed bytes in
+     * bounded chunks, inflating them as the caller consumes the stream. The
+     * CRC-32 is verified once the end of the entry is reached.
+     * <p>
+     * If the entry cache is enabled and admits the entry, the entry is read
+     * in full through the cache instead, so that streaming it again is a
+     * hit.
+     *
+     * @param entryName the entry name
+     * @return a stream over the uncompressed entry data
+     * @throws NoSuchFileException if the entry does not exist
+     * @throws IOException if the entry is a directory, exceeds the size limits,
+     *         uses an unsupported compression method, or an I/O error occurs
+     */
+    InputStream newEntryInputStream(String entryName) throws IOException {
+        ensureOpen();
+        return newEntryInputStream(getFileEntry(entryName));
+    }
+
+    private InputStream newEntryInputStream(ZipEntryInfo info) throws IOException {
+        if (cacheable(info)) {
+            return new ByteArrayInputStream(readEntryData(info));
+        }
+
+        validateEntrySize(info);
+        int method = info.compressionMethod();
+        if (method != METHOD_STORED && method != METHOD_DEFLATED) {
+            throw unsupportedCompressionMethod(info);
+        }
+
+        byte[] localHeader = readLocalHeader(info);
+        long dataOffset = dataOffset(info, localHeader);
+        long localUncompressedSize = LittleEndian.readUint32(localHeader, 22);
+
+        long expectedSize = info.uncompressedSize();
+        if (expectedSize == 0 && localUncompressedSize != 0xFFFFFFFFL) {
+            // sizes may be deferred to a data descriptor; the stream does not
+            // need them up front, so the descriptor is not consulted here
+            expectedSize = localUncompressedSize;
+        }
+        if (expectedSize > MAX_ENTRY_SIZE) {
+            throw new IOException("Entry too large (uncompressed " + expectedSize
+                    + " bytes, limit " + MAX_ENTRY_SIZE + "): " + info.name());
+        }
+        if (method == METHOD_DEFLATED && expectedSize == 0 && info.crc32() == 0) {
+            return InputStream.nullInputStream();
+        }
+        return new ZipEntryInputStream(this, info, dataOffset, expectedSize);
+    }
+
+    /**
+     * Opens a seekable channel over the uncompressed data of the given entry.
+     * <p>
+     * Like {@link #newEntryInputStream(String)}, the entry is not
+     * materialized: the returned {@link ZipEntryChannel} reads STORED data at
+     * the requested offset on each read and inflates DEFLATED data forward
+     * as needed. Entries whose uncompressed size is only recorded in a data
+     * descriptor, and entries the entry cache admits, are served from a
+     * fully decompressed byte array instead, the latter read through the
+     * cache so that opening them again is a hit.
+     *
+     * @param entryName the entry name
+     * @return a read-only channel over the uncompressed entry data
+     * @throws NoSuchFileException if the entry does not exist
+     * @throws IOException if the entry is a directory, exceeds the size limits,
+     *         uses an unsupported compression method, or an I/O error occurs
+     */
+    SeekableByteChannel newEntryChannel(String entryName) throws IOException {
+        ensureOpen();
+        ZipEntryInfo info = getFileEntry(entryName);
+
+        if (cacheable(info)) {
+            return new ReadOnlyZipFileSystemProvider.ByteArrayChannel(readEntryData(info));
+        }
+
+        validateEntrySize(info);
+        int method = info.compressionMethod();
+        if (method != METHOD_STORED && method != METHOD_DEFLATED) {
+            throw unsupportedCompressionMethod(info);
+        }
+        long size = method == METHOD_STORED ? info.compressedSize() : info.uncompressedSize();
+        if (method == METHOD_DEFLATED && size == 0 && info.crc32() != 0) {
+            // the size is deferred to a data descriptor; a channel must know it up front
+            return new ReadOnlyZipFileSystemProvider.ByteArrayChannel(readEntryData(entryName));
+        }
+        long dataOffset = dataOffset(info, readLocalHeader(info));
+        return new ZipEntryChannel(this, info, dataOffset, size);
+    }
+
+    /**
+     * Looks up the entry to be read and verifies that it is a regular file.
+     *
+     * @param entryName the entry name
+     * @return the entry info
+     * @throws NoSuchFileException if the entry does not exist
+     * @throws FileSystemException if the entry is an explicit or implicit directory
+     */
+    private ZipEntryInfo getFileEntry(String entryName) throws FileSystemException {
         ZipEntryInfo info = entryTable.getEntry(entryName);
         if (info == null) {
             if (entryTable.hasEntriesUnder(entryName)) {
@@ -413,24 +1091,310 @@ public class ReadOnlyZipFileSystem extends FileSystem {
         if (info.directory()) {
             throw new FileSystemException(entryName, null, "is a directory");
         }
+        return info;
+    }
 
+    /**
+     * Returns the counters of the entry cache, which is enabled with
+     * {@link ReadOnlyZipOptions#withEntryCacheSize(long)} or
+     * {@link ReadOnlyZipOptions#withSharedEntryCache(boolean)}. The hits and
+     * misses are those of this filesystem, while the evictions and the size
+     * cover the entries of its archive, which filesystems obtained from
+     * {@link #openShared(Path)} for the same file share. With the shared
+     * cache, the budget is that of the shared cache.
+     *
+     * @return a snapshot of the cache counters, all zero if the cache is disabled
+     */
+    public ReadOnlyZipCacheStats cacheStats() {
+        return entryCache == null ? ReadOnlyZipCacheStats.DISABLED : entryCache.stats(cacheOwner);
+    }
+
+    /**
+     * Removes the entries of this filesystem's archive from the entry cache,
+     * if it is enabled. Filesystems obtained from {@link #openShared(Path)}
+     * for the same file share their entries, so clearing the cache of one of
+     * them drops the entries of all of them. The removed entries are not
+     * counted as evictions, and the hit and miss counters are kept. Entries
+     * are cached again as they are read.
+     */
+    public void clearCache() {
         if (entryCache != null) {
-            SoftReference<byte[]> ref = entryCache.get(entryName);
-            if (ref != null) {
-                byte[] cached = ref.get();
-                if (cached != null) {
-                    return cached;
+            entryCache.clear(cacheOwner.archive());
+        }
+    }
+
+    /**
+     * Reads the given entries into the entry cache ahead of their use, for
+     * example the classes a previous run loaded, service files and Jandex
+     * indexes when an application starts.
+     * <p>
+     * The entries are read in the order of their offsets in the archive, in
+     * one sweep: entries less than 64 KB apart are coalesced into reads of
+     * up to 4 MB, so that reading many small entries costs a few sequential
+     * reads rather than a positional read each. DEFLATED entries are
+     * inflated, and all entries verified against their CRC-32, in parallel
+     * in the common {@link ForkJoinPool} while the sweep continues; in the
+     * {@linkplain ReadOnlyZipOptions.CacheTier#COMPRESSED compressed tier},
+     * the compressed bytes are cached as they are read and verified when
+     * they are first inflated.
+     * <p>
+     * Names that do not exist or denote directories, entries that are
+     * already cached and entries that cannot be read, such as those using
+     * an unsupported compression method, are skipped. Entries beyond the
+     * cache's budget evict those prefetched before them, so the entries
+     * should fit within it. Prefetching counts no hits or misses. Does
+     * nothing if the entry cache is disabled.
+     *
+     * @param entryNames the entry names, with or without a leading {@code '/'}
+     * @return the number of entries read into the cache
+     * @throws IOException if an entry fails its CRC-32 check or an I/O
+     *         error occurs
+     */
+    public int prefetch(Collection<String> entryNames) throws IOException {
+        ensureOpen();
+        if (entryCache == null) {
+            return 0;
+        }
+        List<ZipEntryInfo> entries = new ArrayList<>(entryNames.size());
+        for (String entryName : entryNames) {
+            entryName = normalizeEntryName(entryName);
+            ZipEntryInfo info = entryName.isEmpty() ? null : entryTable.getEntry(entryName);
+            if (info == null || info.directory()
+                    || entryCache.contains(cacheOwner, info.localHeaderOffset(), cachesCompressed(info))) {
+                continue;
+            }
+            int method = info.compressionMethod();
+            try {
+                if (method == METHOD_STORED || method == METHOD_DEFLATED) {
+                    validateEntrySize(info);
+                    entries.add(info);
                 }
+            } catch (IOException e) {
+                // read on demand instead, which reports the error
+            }
+        }
+        entries.sort((a, b) -> Long.compare(a.localHeaderOffset(), b.localHeaderOffset()));
+        int distinct = 0;
+        for (ZipEntryInfo info : entries) {
+            // skips names requested more than once
+            if (distinct == 0 || entries.get(distinct - 1).localHeaderOffset() != info.localHeaderOffset()) {
+                entries.set(distinct++, info);
             }
         }
+        entries.subList(distinct, entries.size()).clear();
 
-        validateEntrySize(info);
-        CompressedEntry ce = readCompressedData(info);
-        byte[] result = decompress(ce, info);
-        if (entryCache != null) {
-            entryCache.put(entryName, new SoftReference<>(result));
+        boolean parallel = ForkJoinPool.getCommonPoolParallelism() > 1;
+        List<Future<?>> inflations = new ArrayList<>();
+        int start = 0;
+        try {
+            while (start < entries.size()) {
+                int end = prefetchSpanEnd(entries, start);
+                long spanStart = entries.get(start).localHeaderOffset();
+                long spanEnd = Math.min(reader.length(), prefetchExtentEstimate(entries.get(end - 1)));
+                ByteBuffer span = end - start == 1 ? null : readSpan(spanStart, (int) (spanEnd - spanStart));
+                for (int i = start; i < end; i++) {
+                    ZipEntryInfo info = entries.get(i);
+                    CompressedEntry ce = span == null ? null : compressedDataInSpan(info, span, spanStart);
+                    if (ce == null) {
+                        ce = readCompressedData(info);
+                    }
+                    if (cachesCompressed(info)) {
+                        entryCache.put(cacheOwner, info.localHeaderOffset(), true, toByteArray(ce.data()));
+                    } else if (parallel) {
+                        CompressedEntry data = ce;
+                        // unlike a ForkJoinTask, a FutureTask reports the task's own exception
+                        FutureTask<Void> inflation = new FutureTask<>(() -> {
+                            prefetchUncompressed(info, data);
+                            return null;
+                        });
+                        ForkJoinPool.commonPool().execute(inflation);
+                        inflations.add(inflation);
+                    } else {
+                        prefetchUncompressed(info, ce);
+                    }
+                }
+                start = end;
+            }
+        } finally {
+            awaitAll(inflations);
         }
-        return result;
+        return entries.size();
+    }
+
+    /**
+     * @return the end (exclusive) of the run of entries from {@code start}
+     *         that are read together: entries closer than the maximum gap,
+     *         as long as the read stays within the maximum read length
+     */
+    private static int prefetchSpanEnd(List<ZipEntryInfo> entries, int start) {
+        long spanStart = entries.get(start).localHeaderOffset();
+        long spanEnd = prefetchExtentEstimate(entries.get(start));
+        int end = start + 1;
+        while (end < entries.size()) {
+            ZipEntryInfo next = entries.get(end);
+            long nextEnd = prefetchExtentEstimate(next);
+            if (next.localHeaderOffset() - spanEnd > PREFETCH_MAX_GAP || nextEnd - spanStart > PREFETCH_MAX_READ) {
+                break;
+            }
+            spanEnd = Math.max(spanEnd, nextEnd);
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @return an estimate of the end of an entry's data, allowing for the
+     *         longest UTF-8 encoding of its name and a local extra field of
+     *         up to {@link #PREFETCH_HEADER_SLACK} bytes
+     */
+    private static long prefetchExtentEstimate(ZipEntryInfo info) {
+        return info.localHeaderOffset() + LOCAL_HEADER_FIXED_SIZE + 3L * info.name().length()
+                + PREFETCH_HEADER_SLACK + info.compressedSize();
+    }
+
+    private ByteBuffer readSpan(long position, int length) throws IOException {
+        ensureOpen();
+        ByteBuffer span = reader.slice(position, length);
+        if (span == null) {
+            byte[] bytes = new byte[length];
+            reader.readFully(position, bytes);
+            span = ByteBuffer.wrap(bytes);
+        }
+        return span.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Locates an entry's compressed data within a span read by
+     * {@link #prefetch}.
+     *
+     * @return the compressed data as a view of the span, or {@code null} if
+     *         the data extends beyond the span or its uncompressed size is
+     *         deferred to a data descriptor
+     * @throws IOException if the local header has an invalid signature
+     */
+    private static CompressedEntry compressedDataInSpan(ZipEntryInfo info, ByteBuffer span, long spanStart)
+            throws IOException {
+        int header = (int) (info.localHeaderOffset() - spanStart);
+        if (header + LOCAL_HEADER_FIXED_SIZE > span.limit()) {
+            return null;
+        }
+        if (span.getInt(header) != LOCAL_HEADER_SIG) {
+            throw new IOException("Invalid local file header signature for entry: " + info.name());
+        }
+        long localUncompressedSize = Integer.toUnsignedLong(span.getInt(header + 22));
+        boolean dataDescriptor = (span.getShort(header + 6) & 0x08) != 0;
+        if (localUncompressedSize == 0 && info.uncompressedSize() == 0 && dataDescriptor) {
+            return null;
+        }
+        int data = header + LOCAL_HEADER_FIXED_SIZE + Short.toUnsignedInt(span.getShort(header + 26))
+                + Short.toUnsignedInt(span.getShort(header + 28));
+        if (data + info.compressedSize() > span.limit()) {
+            return null;
+        }
+        return new CompressedEntry(span.slice(data, (int) info.compressedSize()), localUncompressedSize);
+    }
+
+    private void prefetchUncompressed(ZipEntryInfo info, CompressedEntry ce) throws IOException {
+        // decompress copies STORED data out of the span, which is not retained
+        entryCache.put(cacheOwner, info.localHeaderOffset(), false, decompress(ce, info));
+    }
+
+    /**
+     * Waits for all inflations started by {@link #prefetch}, rethrowing the
+     * first failure with the others suppressed. Interrupts are deferred
+     * until all inflations are done, since one that outlived the call could
+     * cache its entry after this filesystem is closed.
+     */
+    private static void awaitAll(List<Future<?>> inflations) throws IOException {
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<?> inflation : inflations) {
+            while (true) {
+                try {
+                    inflation.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    } else {
+                        failure.addSuppressed(e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            if (failure == null) {
+                failure = new InterruptedIOException("Interrupted while prefetching");
+            }
+        }
+        if (failure instanceof IOException e) {
+            throw e;
+        } else if (failure instanceof RuntimeException e) {
+            throw e;
+        } else if (failure != null) {
+            throw (Error) failure;
+        }
+    }
+
+    /**
+     * Returns the counters of the process-wide entry cache shared by all
+     * filesystems opened with
+     * {@link ReadOnlyZipOptions#withSharedEntryCache(boolean)}.
+     *
+     * @return a snapshot of the counters and the size of the shared cache
+     */
+    public static ReadOnlyZipCacheStats sharedCacheStats() {
+        return EntryCache.shared().stats();
+    }
+
+    /**
+     * Changes the budget of the process-wide entry cache, evicting the
+     * least recently used entries if it holds more. The initial budget is
+     * {@code -Drozip.sharedCacheSize=<bytes>}, 64 MB by default.
+     *
+     * @param maxBytes the budget in bytes, at least 1
+     * @throws IllegalArgumentException if {@code maxBytes} is less than 1
+     */
+    public static void setSharedCacheSize(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be at least 1: " + maxBytes);
+        }
+        EntryCache.shared().setMaxBytes(maxBytes);
+    }
+
+    /**
+     * Reads {@code len} bytes at the given absolute file position, after
+     * checking that this filesystem is still open.
+     *
+     * @param position absolute offset within the archive
+     * @param buf the destination buffer
+     * @param off offset within {@code buf}
+     * @param len number of bytes to read
+     * @throws ClosedFileSystemException if this filesystem has been closed
+     * @throws IOException if the bytes cannot be read
+     */
+    void readFully(long position, byte[] buf, int off, int len) throws IOException {
+        ensureOpen();
+        reader.readFully(position, buf, off, len);
+    }
+
+    /**
+     * Returns a read-only view of {@code len} bytes at the given absolute file
+     * position without copying, after checking that this filesystem is still
+     * open.
+     *
+     * @return the view, or {@code null} if the archive is not memory-mapped
+     * @throws ClosedFileSystemException if this filesystem has been closed
+     * @throws IOException if the range is outside the archive
+     * @see ArchiveReader#slice(long, int)
+     */
+    ByteBuffer slice(long position, int len) throws IOException {
+        ensureOpen();
+        return reader.slice(position, len);
     }
 
     /**
@@ -438,11 +1402,13 @@ public class ReadOnlyZipFileSystem extends FileSystem {
      * best-known uncompressed size resolved from the local file header or
      * data descriptor.
      *
-     * @param data the raw (possibly compressed) entry bytes
+     * @param data the raw (possibly compressed) entry bytes; either a heap
+     *        buffer wrapping a freshly read array, or a read-only view of the
+     *        memory-mapped archive
      * @param uncompressedSize uncompressed size from the local header or data
      *        descriptor, or 0 if neither source provided it
      */
-    private record CompressedEntry(byte[] data, long uncompressedSize) {
+    private record CompressedEntry(ByteBuffer data, long uncompressedSize) {
     }
 
     /**
@@ -450,7 +1416,9 @@ public class ReadOnlyZipFileSystem extends FileSystem {
      * <p>
      * Seeks to the local file header, reads it to determine the actual data
      * offset (which may differ from the central directory due to differing
-     * extra field lengths), then reads the compressed data.
+     * extra field lengths), then reads the compressed data. When the archive
+     * is memory-mapped, the compressed data is not copied; a view of the
+     * mapping is returned instead.
      * <p>
      * Also resolves the uncompressed size when the central directory reports 0.
      * The local header (offset 22) is checked first. If it is also 0 and the
@@ -464,52 +1432,77 @@ public class ReadOnlyZipFileSystem extends FileSystem {
      * @throws IOException if the file cannot be read or the local header is invalid
      */
     private CompressedEntry readCompressedData(ZipEntryInfo info) throws IOException {
-        // ensureOpen inside synchronized(raf) guarantees the file handle cannot
-        // be closed between the check and the reads — close() also syncs on raf
-        synchronized (raf) {
-            ensureOpen();
-            raf.seek(info.localHeaderOffset());
-            byte[] localHeader = new byte[LOCAL_HEADER_FIXED_SIZE];
-            raf.readFully(localHeader);
-            validateLocalHeader(localHeader, info);
-
-            long localUncompressedSize = LittleEndian.readUint32(localHeader, 22);
-            int nameLen = LittleEndian.readUint16(localHeader, 26);
-            int extraLen = LittleEndian.readUint16(localHeader, 28);
-            long dataOffset = info.localHeaderOffset() + LOCAL_HEADER_FIXED_SIZE + nameLen + extraLen;
-
-            raf.seek(dataOffset);
-            byte[] compressed = new byte[checkedCast(info.compressedSize())];
-            raf.readFully(compressed);
-
-            long uncompressedSize = localUncompressedSize;
-            if (uncompressedSize == 0 && info.uncompressedSize() == 0) {
-                int flags = LittleEndian.readUint16(localHeader, 6);
-                if ((flags & 0x08) != 0) {
-                    boolean zip64 = LittleEndian.readUint16(localHeader, 4) >= 45;
-                    uncompressedSize = readDataDescriptorUncompressedSize(zip64);
-                }
-            }
+        // each read checks that the reader is still open, and a read that has
+        // started completes on its own handle even if close() runs concurrently
+        ensureOpen();
+        byte[] localHeader = readLocalHeader(info);
+        long localUncompressedSize = LittleEndian.readUint32(localHeader, 22);
 
-            return new CompressedEntry(compressed, uncompressedSize);
+        long dataOffset = dataOffset(info, localHeader);
+        int compressedSize = checkedCast(info.compressedSize());
+        ByteBuffer compressed = reader.slice(dataOffset, compressedSize);
+        if (compressed == null) {
+            byte[] bytes = new byte[compressedSize];
+            reader.readFully(dataOffset, bytes);
+            compressed = ByteBuffer.wrap(bytes);
         }
+
+        long uncompressedSize = localUncompressedSize;
+        if (uncompressedSize == 0 && info.uncompressedSize() == 0) {
+            int flags = LittleEndian.readUint16(localHeader, 6);
+            if ((flags & 0x08) != 0) {
+                boolean zip64 = LittleEndian.readUint16(localHeader, 4) >= 45;
+                uncompressedSize = readDataDescriptorUncompressedSize(
+                        dataOffset + compressedSize, zip64);
+            }
+        }
+
+        return new CompressedEntry(compressed, uncompressedSize);
+    }
+
+    /**
+     * Reads and validates the fixed-size part of an entry's local file
+     * header.
+     *
+     * @param info the entry metadata from the central directory
+     * @return the {@value #LOCAL_HEADER_FIXED_SIZE} header bytes
+     * @throws IOException if the header cannot be read or has an invalid signature
+     */
+    private byte[] readLocalHeader(ZipEntryInfo info) throws IOException {
+        byte[] localHeader = new byte[LOCAL_HEADER_FIXED_SIZE];
+        reader.readFully(info.localHeaderOffset(), localHeader);
+        validateLocalHeader(localHeader, info);
+        return localHeader;
+    }
+
+    /**
+     * Computes the absolute offset of an entry's data, which follows the
+     * local header's variable-length name and extra fields. These may differ
+     * in length from the central directory's, so the local values are used.
+     */
+    private static long dataOffset(ZipEntryInfo info, byte[] localHeader) {
+        int nameLen = LittleEndian.readUint16(localHeader, 26);
+        int extraLen = LittleEndian.readUint16(localHeader, 28);
+        return info.localHeaderOffset() + LOCAL_HEADER_FIXED_SIZE + nameLen + extraLen;
     }
 
     /**
-     * Reads the uncompressed size from a data descriptor at the current
+     * Reads the uncompressed size from a data descriptor at the given
      * file position. Handles both the variant with a leading signature
      * ({@code 0x08074b50}) and the variant without, and both 32-bit and
      * 64-bit (ZIP64) field sizes.
      *
+     * @param position absolute offset of the data descriptor, immediately
+     *        after the compressed data
      * @param zip64 {@code true} if the entry uses ZIP64 format (8-byte fields)
      * @return the uncompressed size from the data descriptor
      * @throws IOException if the descriptor cannot be read
      */
-    private long readDataDescriptorUncompressedSize(boolean zip64) throws IOException {
+    private long readDataDescriptorUncompressedSize(long position, boolean zip64) throws IOException {
         if (zip64) {
             // ZIP64: signature?(4) + crc32(4) + compressedSize(8) + uncompressedSize(8)
             byte[] desc = new byte[24];
-            raf.readFully(desc);
+            reader.readFully(position, desc);
             if (LittleEndian.readInt32(desc, 0) == DATA_DESCRIPTOR_SIG) {
                 return LittleEndian.readUint64(desc, 16);
             }
@@ -518,7 +1511,7 @@ public class ReadOnlyZipFileSystem extends FileSystem {
             return LittleEndian.readUint64(desc, 12);
         }
         byte[] desc = new byte[16];
-        raf.readFully(desc);
+        reader.readFully(position, desc);
         if (LittleEndian.readInt32(desc, 0) == DATA_DESCRIPTOR_SIG) {
             // signature(4) + crc32(4) + compressedSize(4) + uncompressedSize(4)
             return LittleEndian.readUint32(desc, 12);
@@ -554,7 +1547,7 @@ public class ReadOnlyZipFileSystem extends FileSystem {
     private byte[] decompress(CompressedEntry ce, ZipEntryInfo info) throws IOException {
         byte[] result;
         if (info.compressionMethod() == METHOD_STORED) {
-            result = ce.data();
+            result = toByteArray(ce.data());
         } else if (info.compressionMethod() == METHOD_DEFLATED) {
             long uncompressedSize = info.uncompressedSize();
             if (uncompressedSize == 0 && ce.uncompressedSize() > 0) {
@@ -569,13 +1562,30 @@ public class ReadOnlyZipFileSystem extends FileSystem {
             }
             result = inflate(ce.data(), checkedCast(uncompressedSize));
         } else {
-            throw new IOException("Unsupported compression method " + info.compressionMethod()
-                    + " for entry: " + info.name());
+            throw unsupportedCompressionMethod(info);
         }
         verifyCrc32(result, info);
         return result;
     }
 
+    /**
+     * Returns the bytes of a buffer produced by {@link #readCompressedData},
+     * without copying when it wraps a whole array.
+     */
+    private static byte[] toByteArray(ByteBuffer data) {
+        if (data.hasArray() && data.arrayOffset() == 0 && data.remaining() == data.array().length) {
+            return data.array();
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.get(data.position(), bytes);
+        return bytes;
+    }
+
+    private static IOException unsupportedCompressionMethod(ZipEntryInfo info) {
+        return new IOException("Unsupported compression method " + info.compressionMethod()
+                + " for entry: " + info.name());
+    }
+
     /**
      * Validates that the entry's compressed and uncompressed sizes are within
      * limits and that the compression ratio is not suspiciously high.
@@ -609,10 +1619,22 @@ public class ReadOnlyZipFileSystem extends FileSystem {
     private static void verifyCrc32(byte[] data, ZipEntryInfo info) throws IOException {
         CRC32 crc = new CRC32();
         crc.update(data);
-        if (crc.getValue() != info.crc32()) {
+        verifyCrc32(crc.getValue(), info);
+    }
+
+    /**
+     * Verifies that a computed CRC-32 matches the value recorded in the
+     * central directory.
+     *
+     * @param actual the CRC-32 computed over the uncompressed entry bytes
+     * @param info the entry metadata containing the expected CRC-32
+     * @throws IOException if the checksums do not match
+     */
+    static void verifyCrc32(long actual, ZipEntryInfo info) throws IOException {
+        if (actual != info.crc32()) {
             throw new IOException("CRC-32 mismatch for entry: " + info.name()
                     + " (expected " + Long.toHexString(info.crc32())
-                    + ", got " + Long.toHexString(crc.getValue()) + ")");
+                    + ", got " + Long.toHexString(actual) + ")");
         }
     }
 
@@ -620,7 +1642,7 @@ public class ReadOnlyZipFileSystem extends FileSystem {
      * Inflates DEFLATE-compressed data into a pre-allocated buffer.
      * <p>
      * When {@code uncompressedSize} is 0 (unknown), delegates to
-     * {@link #inflateDynamic(byte[])} which uses a dynamically-growing buffer.
+     * {@link #inflateDynamic(ByteBuffer)} which uses a dynamically-growing buffer.
      *
      * @param compressed the raw DEFLATE-compressed bytes
      * @param uncompressedSize the expected decompressed size, or 0 if unknown
@@ -628,7 +1650,7 @@ public class ReadOnlyZipFileSystem extends FileSystem {
      * @throws IOException if decompression fails or the actual size does not
      *         match the declared size
      */
-    private byte[] inflate(byte[] compressed, int uncompressedSize) throws IOException {
+    private byte[] inflate(ByteBuffer compressed, int uncompressedSize) throws IOException {
         if (uncompressedSize == 0) {
             // this shouldn't happen for a spec compliant ZIP, this is a defensive measure
             // matching the default ZipFileSystem implementation
@@ -681,11 +1703,11 @@ public class ReadOnlyZipFileSystem extends FileSystem {
      * @return the decompressed bytes
      * @throws IOException if decompression fails or the output exceeds {@link #MAX_ENTRY_SIZE}
      */
-    private byte[] inflateDynamic(byte[] compressed) throws IOException {
+    private byte[] inflateDynamic(ByteBuffer compressed) throws IOException {
         Inflater inflater = borrowInflater();
         try {
             inflater.setInput(compressed);
-            int capacity = Math.max(compressed.length * 2, 256);
+            int capacity = Math.max(compressed.remaining() * 2, 256);
             byte[] result = new byte[capacity];
             int offset = 0;
             while (!inflater.finished()) {
@@ -719,7 +1741,7 @@ public class ReadOnlyZipFileSystem extends FileSystem {
      *
      * @return an {@link Inflater} ready for use
      */
-    private Inflater borrowInflater() {
+    Inflater borrowInflater() {
         synchronized (inflaterPool) {
             Inflater inf = inflaterPool.poll();
             if (inf != null) {
@@ -735,7 +1757,7 @@ public class ReadOnlyZipFileSystem extends FileSystem {
      *
      * @param inf the inflater to return
      */
-    private void returnInflater(Inflater inf) {
+    void returnInflater(Inflater inf) {
         synchronized (inflaterPool) {
             if (open.get() && inflaterPool.size() < MAX_INFLATER_POOL_SIZE) {
                 inf.reset();
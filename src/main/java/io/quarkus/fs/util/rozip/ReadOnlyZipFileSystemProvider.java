@@ -1,6 +1,5 @@
 package io.quarkus.fs.util.rozip;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -94,9 +93,11 @@ class ReadOnlyZipFileSystemProvider extends FileSystemProvider {
     /**
      * Opens an {@link InputStream} to read the contents of the specified entry.
      * <p>
-     * The entire entry is read and decompressed (if needed) into a byte array.
-     * The returned stream reads from that array, so it does not hold any lock
-     * on the underlying ZIP file.
+     * The entry is streamed from the archive rather than materialized: the
+     * compressed bytes are read in bounded chunks and inflated as the stream
+     * is consumed, and the CRC-32 is verified when the end of the entry is
+     * reached. The lock on the underlying ZIP file is only held while a
+     * chunk is being read, never between calls.
      *
      * @param path the entry path
      * @param options open options (only {@link StandardOpenOption#READ} is accepted)
@@ -109,8 +110,7 @@ class ReadOnlyZipFileSystemProvider extends FileSystemProvider {
         validateReadOptions(options);
         ReadOnlyZipFileSystem fs = toFs(path);
         String entryName = toEntryName(path);
-        byte[] data = fs.readEntryData(entryName);
-        return new ByteArrayInputStream(data);
+        return fs.newEntryInputStream(entryName);
     }
 
     /**
@@ -124,6 +124,13 @@ class ReadOnlyZipFileSystemProvider extends FileSystemProvider {
     /**
      * Opens a {@link SeekableByteChannel} to read the contents of the specified
      * entry.
+     * <p>
+     * The entry is read on demand rather than materialized. STORED entries
+     * are read directly from the archive at the current position, so
+     * random access (for example reading a nested archive's central
+     * directory from its tail) only touches the bytes requested. DEFLATED
+     * entries are inflated forward as far as needed; seeking backwards
+     * beyond the most recently inflated window restarts inflation.
      *
      * @param path the entry path
      * @param options open options (only {@link StandardOpenOption#READ} is accepted)
@@ -138,8 +145,7 @@ class ReadOnlyZipFileSystemProvider extends FileSystemProvider {
         validateReadOptions(options);
         ReadOnlyZipFileSystem fs = toFs(path);
         String entryName = toEntryName(path);
-        byte[] data = fs.readEntryData(entryName);
-        return new ByteArrayChannel(data);
+        return fs.newEntryChannel(entryName);
     }
 
     /**
@@ -342,7 +348,7 @@ class ReadOnlyZipFileSystemProvider extends FileSystemProvider {
      * @return the entry name (e.g. {@code "com/example/Foo.class"} or {@code ""}
      *         for root)
      */
-    private static String toEntryName(Path path) {
+    static String toEntryName(Path path) {
         return ReadOnlyZipFileSystem.normalizeEntryName(path.toAbsolutePath().normalize().toString());
     }
 
@@ -527,7 +533,8 @@ class ReadOnlyZipFileSystemProvider extends FileSystemProvider {
     }
 
     /**
-     * A read-only {@link SeekableByteChannel} backed by a byte array.
+     * A read-only {@link SeekableByteChannel} backed by a byte array, used for
+     * cached entries and entries whose size is not known up front.
      * <p>
      * This class is not thread-safe. Each call to
      * {@link #newByteChannel(Path, Set, FileAttribute[])} creates a fresh
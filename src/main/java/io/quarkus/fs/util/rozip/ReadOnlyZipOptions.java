@@ -0,0 +1,438 @@
+package io.quarkus.fs.util.rozip;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Options controlling how a {@link ReadOnlyZipFileSystem} reads its archive,
+ * passed to {@link ReadOnlyZipFileSystem#open(java.nio.file.Path, ReadOnlyZipOptions)}.
+ * <p>
+ * Instances are immutable; each {@code with*} method returns a modified copy.
+ * {@link #defaults()} reflects the {@code rozip.*} system properties
+ * ({@code rozip.readHandles}, {@code rozip.indexCache}, {@code rozip.hashIndex},
+ * {@code rozip.lazyMetadata}, {@code rozip.compactNames},
+ * {@code rozip.directoryIndex}, {@code rozip.cache}, {@code rozip.cacheSize},
+ * {@code rozip.sharedCache}, {@code rozip.cacheTier}, {@code rozip.cacheOffHeap}),
+ * so
+ * {@code open(path, ReadOnlyZipOptions.defaults())} is equivalent to
+ * {@code open(path)}.
+ */
+public final class ReadOnlyZipOptions {
+
+    /**
+     * How entry data is read from the archive.
+     */
+    public enum ReadMode {
+        /**
+         * Readers borrow a handle from an elastic pool, opening additional
+         * handles on demand up to {@link #readHandles()}. This is the default.
+         */
+        POOLED,
+        /**
+         * Exactly {@link #readHandles()} handles are opened up front and each
+         * thread is bound to one of them by its thread id. Keeps a constant
+         * number of file descriptors and never reopens the archive.
+         */
+        STRIPED,
+        /**
+         * The archive is memory-mapped once when it is opened and the file is
+         * closed again. Reads copy from the mapping without system calls and
+         * compressed data is inflated straight from it. {@link #readHandles()}
+         * is ignored.
+         */
+        MAPPED
+    }
+
+    /**
+     * The form in which the entry cache keeps DEFLATED entries. STORED
+     * entries are always cached as they are stored.
+     */
+    public enum CacheTier {
+        /**
+         * Entries are cached inflated, so a hit returns the cached bytes.
+         * This is the default.
+         */
+        UNCOMPRESSED,
+        /**
+         * Entries are cached as their compressed bytes, so a hit skips
+         * reading the archive but inflates the entry, and verifies its
+         * CRC-32, again. Takes a fraction of the memory of the uncompressed
+         * tier for typical class files and resources, so the same budget
+         * holds several times as many entries.
+         */
+        COMPRESSED
+    }
+
+    private final ReadMode readMode;
+    private final int readHandles;
+    private final Path indexCacheDirectory;
+    private final boolean hashIndex;
+    private final boolean lazyMetadata;
+    private final boolean compactNames;
+    private final boolean directoryIndex;
+    private final long entryCacheSize;
+    private final boolean sharedEntryCache;
+    private final CacheTier entryCacheTier;
+    private final boolean entryCacheOffHeap;
+
+    private ReadOnlyZipOptions(ReadMode readMode, int readHandles, Path indexCacheDirectory, boolean hashIndex,
+            boolean lazyMetadata, boolean compactNames, boolean directoryIndex, long entryCacheSize,
+            boolean sharedEntryCache, CacheTier entryCacheTier, boolean entryCacheOffHeap) {
+        this.readMode = readMode;
+        this.readHandles = readHandles;
+        this.indexCacheDirectory = indexCacheDirectory;
+        this.hashIndex = hashIndex;
+        this.lazyMetadata = lazyMetadata;
+        this.compactNames = compactNames;
+        this.directoryIndex = directoryIndex;
+        this.entryCacheSize = entryCacheSize;
+        this.sharedEntryCache = sharedEntryCache;
+        this.entryCacheTier = entryCacheTier;
+        this.entryCacheOffHeap = entryCacheOffHeap;
+    }
+
+    /**
+     * @return the options used by {@link ReadOnlyZipFileSystem#open(java.nio.file.Path)}
+     */
+    public static ReadOnlyZipOptions defaults() {
+        String indexCache = ReadOnlyZipFileSystem.INDEX_CACHE_DIR;
+        return new ReadOnlyZipOptions(ReadMode.POOLED, ReadOnlyZipFileSystem.MAX_READ_HANDLES,
+                indexCache == null || indexCache.isEmpty() ? null : Path.of(indexCache),
+                ReadOnlyZipFileSystem.HASH_INDEX, ReadOnlyZipFileSystem.LAZY_METADATA,
+                ReadOnlyZipFileSystem.COMPACT_NAMES, ReadOnlyZipFileSystem.DIRECTORY_INDEX,
+                ReadOnlyZipFileSystem.CACHE_SIZE > 0 ? ReadOnlyZipFileSystem.CACHE_SIZE
+                        : ReadOnlyZipFileSystem.CACHE_ENABLED ? ReadOnlyZipFileSystem.DEFAULT_CACHE_SIZE : 0,
+                ReadOnlyZipFileSystem.SHARED_CACHE,
+                ReadOnlyZipFileSystem.CACHE_TIER, ReadOnlyZipFileSystem.CACHE_OFF_HEAP);
+    }
+
+    /**
+     * Parses the value of {@code -Drozip.cacheTier}, ignoring case. Like the
+     * numeric {@code rozip.*} properties, an unset or unrecognized value
+     * falls back to the default, so that a typo cannot break opening
+     * archives.
+     *
+     * @param value the property value, or {@code null}
+     * @return the cache tier, {@link CacheTier#UNCOMPRESSED} unless
+     *         {@code value} names another one
+     */
+    static CacheTier parseCacheTier(String value) {
+        if (value != null) {
+            for (CacheTier tier : CacheTier.values()) {
+                if (tier.name().equalsIgnoreCase(value.trim())) {
+                    return tier;
+                }
+            }
+        }
+        return CacheTier.UNCOMPRESSED;
+    }
+
+    /**
+     * @return the read mode
+     */
+    public ReadMode readMode() {
+        return readMode;
+    }
+
+    /**
+     * @return the maximum ({@link ReadMode#POOLED}) or exact
+     *         ({@link ReadMode#STRIPED}) number of file handles
+     */
+    public int readHandles() {
+        return readHandles;
+    }
+
+    /**
+     * @return the directory holding central directory index snapshots, or
+     *         {@code null} if snapshots are disabled
+     */
+    public Path indexCacheDirectory() {
+        return indexCacheDirectory;
+    }
+
+    /**
+     * @return {@code true} if entry names are looked up through a hash index
+     */
+    public boolean hashIndex() {
+        return hashIndex;
+    }
+
+    /**
+     * @return {@code true} if entry metadata is decoded on access rather than
+     *         when the archive is opened
+     */
+    public boolean lazyMetadata() {
+        return lazyMetadata;
+    }
+
+    /**
+     * @return {@code true} if entry names are stored front-coded
+     */
+    public boolean compactNames() {
+        return compactNames;
+    }
+
+    /**
+     * @return {@code true} if directories are listed through a directory index
+     */
+    public boolean directoryIndex() {
+        return directoryIndex;
+    }
+
+    /**
+     * @return the budget of the entry cache in bytes, 0 if entries are not cached
+     */
+    public long entryCacheSize() {
+        return entryCacheSize;
+    }
+
+    /**
+     * @return {@code true} if entries are cached in the process-wide cache
+     */
+    public boolean sharedEntryCache() {
+        return sharedEntryCache;
+    }
+
+    /**
+     * @return the form in which the entry cache keeps DEFLATED entries
+     */
+    public CacheTier entryCacheTier() {
+        return entryCacheTier;
+    }
+
+    /**
+     * @return {@code true} if the entry cache keeps its data in direct memory
+     */
+    public boolean entryCacheOffHeap() {
+        return entryCacheOffHeap;
+    }
+
+    /**
+     * @param readMode the read mode
+     * @return a copy of these options using the given read mode
+     */
+    public ReadOnlyZipOptions withReadMode(ReadMode readMode) {
+        return new ReadOnlyZipOptions(Objects.requireNonNull(readMode, "readMode"), readHandles, indexCacheDirectory,
+                hashIndex, lazyMetadata, compactNames, directoryIndex, entryCacheSize, sharedEntryCache,
+                entryCacheTier, entryCacheOffHeap);
+    }
+
+    /**
+     * @param readHandles the number of file handles, at least 1
+     * @return a copy of these options using the given number of handles
+     * @throws IllegalArgumentException if {@code readHandles} is less than 1
+     */
+    public ReadOnlyZipOptions withReadHandles(int readHandles) {
+        if (readHandles < 1) {
+            throw new IllegalArgumentException("readHandles must be at least 1: " + readHandles);
+        }
+        return new ReadOnlyZipOptions(readMode, readHandles, indexCacheDirectory, hashIndex, lazyMetadata, compactNames,
+                directoryIndex, entryCacheSize, sharedEntryCache, entryCacheTier, entryCacheOffHeap);
+    }
+
+    /**
+     * Shorthand for {@code withReadMode(STRIPED).withReadHandles(stripes)}.
+     *
+     * @param stripes the number of handles to open
+     * @return a copy of these options using striped reads
+     */
+    public ReadOnlyZipOptions withStripedReads(int stripes) {
+        return withReadMode(ReadMode.STRIPED).withReadHandles(stripes);
+    }
+
+    /**
+     * Shorthand for {@code withReadMode(MAPPED)}.
+     *
+     * @return a copy of these options using memory-mapped reads
+     */
+    public ReadOnlyZipOptions withMappedReads() {
+        return withReadMode(ReadMode.MAPPED);
+    }
+
+    /**
+     * Enables persisted snapshots of the parsed central directory. When an
+     * archive is opened, a snapshot in this directory matching the archive's
+     * path, size, modification time and End of Central Directory record
+     * replaces parsing the central directory; otherwise the archive is parsed
+     * and a snapshot is written. Snapshots that cannot be read or written are
+     * ignored. The directory may be shared between processes.
+     *
+     * @param indexCacheDirectory the snapshot directory, or {@code null} to
+     *        disable snapshots
+     * @return a copy of these options using the given snapshot directory
+     */
+    public ReadOnlyZipOptions withIndexCacheDirectory(Path indexCacheDirectory) {
+        return new ReadOnlyZipOptions(readMode, readHandles, indexCacheDirectory, hashIndex, lazyMetadata, compactNames,
+                directoryIndex, entryCacheSize, sharedEntryCache, entryCacheTier, entryCacheOffHeap);
+    }
+
+    /**
+     * Controls whether a hash index over the entry names is built when the
+     * archive is opened. With the index, looking up an entry by its exact
+     * name takes constant time instead of a binary search over the sorted
+     * names, at a cost of 8 to 16 bytes per entry. Enabled by default; the
+     * default can be changed with {@code -Drozip.hashIndex=false}.
+     *
+     * @param hashIndex whether to build the hash index
+     * @return a copy of these options with the hash index enabled or disabled
+     */
+    public ReadOnlyZipOptions withHashIndex(boolean hashIndex) {
+        return new ReadOnlyZipOptions(readMode, readHandles, indexCacheDirectory, hashIndex, lazyMetadata, compactNames,
+                directoryIndex, entryCacheSize, sharedEntryCache, entryCacheTier, entryCacheOffHeap);
+    }
+
+    /**
+     * Controls whether entry metadata is decoded when the archive is opened
+     * or when it is accessed. Lazily, opening an archive only indexes the
+     * entry names and keeps the raw central directory in memory; sizes,
+     * CRC-32 and timestamps are decoded from it each time an entry's
+     * metadata is read. This makes opening cheaper for archives that are
+     * only probed for a few entries, but makes metadata access slower.
+     * Disabled by default; the default can be changed with
+     * {@code -Drozip.lazyMetadata=true}. Has no effect when the entry table
+     * is restored from an index snapshot.
+     *
+     * @param lazyMetadata whether to decode entry metadata on access
+     * @return a copy of these options with lazy metadata enabled or disabled
+     */
+    public ReadOnlyZipOptions withLazyMetadata(boolean lazyMetadata) {
+        return new ReadOnlyZipOptions(readMode, readHandles, indexCacheDirectory, hashIndex, lazyMetadata, compactNames,
+                directoryIndex, entryCacheSize, sharedEntryCache, entryCacheTier, entryCacheOffHeap);
+    }
+
+    /**
+     * Controls whether entry names are stored front-coded: each name is kept
+     * as the length of the prefix it shares with the previous name in sorted
+     * order and the remaining suffix, which shrinks the names of typical
+     * archives, whose entries share long package paths, to a fraction of
+     * their size. Lookups decode names from the nearest of the stored full
+     * names, one in every 16, so they are slower, and no hash index is built
+     * regardless of {@link #withHashIndex(boolean)}. Disabled by default; the
+     * default can be changed with {@code -Drozip.compactNames=true}.
+     *
+     * @param compactNames whether to store entry names front-coded
+     * @return a copy of these options with compact names enabled or disabled
+     */
+    public ReadOnlyZipOptions withCompactNames(boolean compactNames) {
+        return new ReadOnlyZipOptions(readMode, readHandles, indexCacheDirectory, hashIndex, lazyMetadata, compactNames,
+                directoryIndex, entryCacheSize, sharedEntryCache, entryCacheTier, entryCacheOffHeap);
+    }
+
+    /**
+     * Controls whether a directory index is built when the archive is
+     * opened. The index links every entry and every implicit directory to
+     * its parent and its siblings, so that listing a directory visits only
+     * its immediate children; without it, a listing scans all entries under
+     * the directory, so walking the tree of a large archive visits each
+     * entry once per directory above it. The index costs about 12 bytes per
+     * entry. Disabled by default; the default can be changed with
+     * {@code -Drozip.directoryIndex=true}.
+     *
+     * @param directoryIndex whether to build the directory index
+     * @return a copy of these options with the directory index enabled or disabled
+     */
+    public ReadOnlyZipOptions withDirectoryIndex(boolean directoryIndex) {
+        return new ReadOnlyZipOptions(readMode, readHandles, indexCacheDirectory, hashIndex, lazyMetadata, compactNames,
+                directoryIndex, entryCacheSize, sharedEntryCache, entryCacheTier, entryCacheOffHeap);
+    }
+
+    /**
+     * Enables the cache of uncompressed entry data within the given budget.
+     * Entries read through {@link ReadOnlyZipFileSystem#read(int)},
+     * {@link ReadOnlyZipFileSystem#readEntryBuffer(String)}, a stream or a
+     * channel are kept in a segmented LRU cache: entries read again are
+     * protected from being displaced by entries read only once, and the
+     * least recently used entries are evicted once the cached data exceeds
+     * the budget. A stream or channel over an entry small enough to be
+     * cached reads it in full up front; larger entries are read lazily.
+     * Caches of 32 MB or more are split into segments of at least 16 MB,
+     * each with an equal share of the budget, and entries larger than a
+     * fifth of that share are not cached: a fifth of the budget below
+     * 32 MB, and at least 3.2 MB above it. Each filesystem has its own
+     * cache, unless {@link #withSharedEntryCache(boolean)} is enabled; see
+     * {@link ReadOnlyZipFileSystem#cacheStats()} and
+     * {@link ReadOnlyZipFileSystem#clearCache()}. Disabled by default; the
+     * default can be changed with {@code -Drozip.cacheSize=<bytes>}, or
+     * with {@code -Drozip.cache=true} for a budget of 64 MB.
+     *
+     * @param entryCacheSize the budget in bytes, or 0 to disable the cache
+     * @return a copy of these options using the given cache budget
+     * @throws IllegalArgumentException if {@code entryCacheSize} is negative
+     */
+    public ReadOnlyZipOptions withEntryCacheSize(long entryCacheSize) {
+        if (entryCacheSize < 0) {
+            throw new IllegalArgumentException("entryCacheSize must not be negative: " + entryCacheSize);
+        }
+        return new ReadOnlyZipOptions(readMode, readHandles, indexCacheDirectory, hashIndex, lazyMetadata, compactNames,
+                directoryIndex, entryCacheSize, sharedEntryCache, entryCacheTier, entryCacheOffHeap);
+    }
+
+    /**
+     * Controls whether entries are cached in the process-wide cache shared
+     * by all filesystems opened with this option, instead of a cache of
+     * their own. The shared cache has a single budget, so the memory used
+     * for caching stays bounded however many archives are open. Its entries
+     * are evicted by recency regardless of their archive, and those of a
+     * filesystem are removed when it is closed. The budget is
+     * {@code -Drozip.sharedCacheSize=<bytes>}, 64 MB by default, and can be
+     * changed with {@link ReadOnlyZipFileSystem#setSharedCacheSize(long)}.
+     * When enabled, {@link #entryCacheSize()} is ignored. Disabled by
+     * default; the default can be changed with
+     * {@code -Drozip.sharedCache=true}.
+     *
+     * @param sharedEntryCache whether to use the process-wide entry cache
+     * @return a copy of these options with the shared cache enabled or disabled
+     */
+    public ReadOnlyZipOptions withSharedEntryCache(boolean sharedEntryCache) {
+        return new ReadOnlyZipOptions(readMode, readHandles, indexCacheDirectory, hashIndex, lazyMetadata, compactNames,
+                directoryIndex, entryCacheSize, sharedEntryCache, entryCacheTier, entryCacheOffHeap);
+    }
+
+    /**
+     * Selects the form in which the entry cache, private or shared, keeps
+     * DEFLATED entries. Has no effect unless the cache is enabled; how many
+     * hits were served from compressed bytes is reported by
+     * {@link ReadOnlyZipCacheStats#compressedHits()}. The default,
+     * {@link CacheTier#UNCOMPRESSED}, can be changed with
+     * {@code -Drozip.cacheTier=compressed}.
+     *
+     * @param entryCacheTier the cache tier
+     * @return a copy of these options using the given cache tier
+     */
+    public ReadOnlyZipOptions withEntryCacheTier(CacheTier entryCacheTier) {
+        return new ReadOnlyZipOptions(readMode, readHandles, indexCacheDirectory, hashIndex, lazyMetadata, compactNames,
+                directoryIndex, entryCacheSize, sharedEntryCache,
+                Objects.requireNonNull(entryCacheTier, "entryCacheTier"), entryCacheOffHeap);
+    }
+
+    /**
+     * Controls whether the entry cache keeps its data off heap, in slabs of
+     * direct memory, rather than in byte arrays on the heap. Long-lived
+     * cached data then adds nothing to the heap the garbage collector has
+     * to trace and copy, at the cost of copying the data of each hit back to
+     * the heap: {@link ReadOnlyZipFileSystem#read(int)} returns a fresh
+     * array and {@link ReadOnlyZipFileSystem#readEntryBuffer(String)} a
+     * read-only buffer over one. Each entry is charged the size of the slab
+     * chunk holding it, at most a third more than its length. The memory of
+     * a slab is returned once the slab is garbage collected. Only affects a
+     * cache of the filesystem's own; the shared cache is off heap if
+     * {@code -Drozip.cacheOffHeap=true}. Disabled by default; the default
+     * can be changed with {@code -Drozip.cacheOffHeap=true}.
+     *
+     * @param entryCacheOffHeap whether to keep cached data in direct memory
+     * @return a copy of these options with off-heap caching enabled or disabled
+     */
+    public ReadOnlyZipOptions withEntryCacheOffHeap(boolean entryCacheOffHeap) {
+        return new ReadOnlyZipOptions(readMode, readHandles, indexCacheDirectory, hashIndex, lazyMetadata, compactNames,
+                directoryIndex, entryCacheSize, sharedEntryCache, entryCacheTier, entryCacheOffHeap);
+    }
+
+    @Override
+    public String toString() {
+        return "ReadOnlyZipOptions[readMode=" + readMode + ", readHandles=" + readHandles
+                + ", indexCacheDirectory=" + indexCacheDirectory + ", hashIndex=" + hashIndex + ", lazyMetadata=" + lazyMetadata
+                + ", compactNames=" + compactNames + ", directoryIndex=" + directoryIndex
+                + ", entryCacheSize=" + entryCacheSize + ", sharedEntryCache=" + sharedEntryCache
+                + ", entryCacheTier=" + entryCacheTier + ", entryCacheOffHeap=" + entryCacheOffHeap + "]";
+    }
+}
@@ -0,0 +1,174 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An archive reader and parsed central directory shared by all
+ * {@link ReadOnlyZipFileSystem} instances obtained through
+ * {@link ReadOnlyZipFileSystem#openShared(Path)} for the same file.
+ * <p>
+ * Shared archives are held in a process-wide registry keyed by the
+ * archive's real path, file key, size and modification time, so different
+ * paths resolving to the same file share one instance, while a file that
+ * has been replaced on disk gets a new one. Each filesystem holds one
+ * reference; the reader is closed, the archive's entries are removed from
+ * the entry cache and the archive removed from the registry, making its
+ * entry table unreachable, when the last reference is released.
+ * <p>
+ * The filesystems also share the archive's entries in the entry cache,
+ * each keeping its own hit and miss counters.
+ */
+final class SharedArchive {
+
+    private static final Map<Key, SharedArchive> REGISTRY = new HashMap<>();
+
+    /**
+     * Identifies an archive file on disk.
+     *
+     * @param realPath the archive's real path
+     * @param fileKey the file key reported by the filesystem, or {@code null}
+     *        if not supported
+     * @param size the size of the archive
+     * @param lastModified the modification time in epoch milliseconds
+     */
+    record Key(Path realPath, Object fileKey, long size, long lastModified) {
+
+        static Key of(Path archive) throws IOException {
+            Path realPath = archive.toRealPath();
+            BasicFileAttributes attrs = Files.readAttributes(realPath, BasicFileAttributes.class);
+            return new Key(realPath, attrs.fileKey(), attrs.size(), attrs.lastModifiedTime().toMillis());
+        }
+    }
+
+    private final Key key;
+    private final ArchiveReader reader;
+    private final ZipCentralDirectory centralDirectory;
+    private final EntryCache entryCache;
+    private final EntryCache.Archive cacheArchive;
+    // guarded by REGISTRY
+    private int references = 1;
+
+    /**
+     * Creates a shared archive holding one reference. It must be passed to
+     * {@link #register} before it is used.
+     *
+     * @param entryCache the entry cache for the archive's entries, or
+     *        {@code null} to disable caching
+     */
+    SharedArchive(Key key, ArchiveReader reader, ZipCentralDirectory centralDirectory, EntryCache entryCache) {
+        this.key = key;
+        this.reader = reader;
+        this.centralDirectory = centralDirectory;
+        this.entryCache = entryCache;
+        this.cacheArchive = entryCache == null ? null : entryCache.newArchive();
+    }
+
+    /**
+     * Returns the registered archive for the given key with an additional
+     * reference, if there is one.
+     *
+     * @return the shared archive, or {@code null} if none is registered
+     */
+    static SharedArchive retain(Key key) {
+        synchronized (REGISTRY) {
+            SharedArchive shared = REGISTRY.get(key);
+            if (shared != null) {
+                shared.references++;
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Registers a newly opened archive. If another thread registered the
+     * same archive in the meantime, that one is retained and returned
+     * instead, and {@code candidate} is closed; a failure to close it is
+     * ignored, since the caller holds a reference to the registered archive
+     * either way.
+     *
+     * @param candidate a newly opened archive holding one reference
+     * @return the registered archive, holding a reference for the caller
+     */
+    static SharedArchive register(SharedArchive candidate) {
+        SharedArchive existing;
+        synchronized (REGISTRY) {
+            existing = REGISTRY.putIfAbsent(candidate.key, candidate);
+            if (existing == null) {
+                return candidate;
+            }
+            existing.references++;
+        }
+        try {
+            candidate.reader.close();
+        } catch (IOException ignored) {
+            // the candidate was never used; the archive returned instead is unaffected
+        }
+        return existing;
+    }
+
+    /**
+     * @return the number of archives currently registered
+     */
+    static int registered() {
+        synchronized (REGISTRY) {
+            return REGISTRY.size();
+        }
+    }
+
+    ArchiveReader reader() {
+        return reader;
+    }
+
+    ZipCentralDirectory centralDirectory() {
+        return centralDirectory;
+    }
+
+    /**
+     * @return the entry cache, or {@code null} if caching is disabled
+     */
+    EntryCache entryCache() {
+        return entryCache;
+    }
+
+    /**
+     * @return the identity of this archive in the entry cache, or
+     *         {@code null} if caching is disabled
+     */
+    EntryCache.Archive cacheArchive() {
+        return cacheArchive;
+    }
+
+    /**
+     * @return the number of filesystems currently holding this archive
+     */
+    int references() {
+        synchronized (REGISTRY) {
+            return references;
+        }
+    }
+
+    /**
+     * Releases one reference, closing the reader, removing the cached
+     * entries and unregistering this archive when it was the last one.
+     */
+    void release() throws IOException {
+        synchronized (REGISTRY) {
+            if (--references > 0) {
+                return;
+            }
+            REGISTRY.remove(key, this);
+        }
+        try {
+            reader.close();
+        } finally {
+            if (entryCache != null) {
+                entryCache.close(cacheArchive);
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package io.quarkus.fs.util.rozip;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Allocates the off-heap memory of an {@link EntryCache} in direct
+ * {@link ByteBuffer} slabs, so that cached entry data does not live on the
+ * Java heap.
+ * <p>
+ * Requests are rounded up to a size class, a power of two or one and a half
+ * times a power of two from {@value #MIN_CHUNK_SIZE} bytes up to the slab
+ * size, which wastes at most a third of a chunk. Each slab is divided into
+ * chunks of one size class; freed chunks are reused for the same class, and
+ * a slab whose chunks are all free is released unless it is the only slab
+ * with free chunks of its class, in which case it is kept until
+ * {@link #releaseEmptySlabs()} is called. Requests larger than the slab size get a
+ * direct buffer of their own, released when it is freed. Released buffers
+ * return their memory when they are garbage collected.
+ * <p>
+ * A chunk can be pinned while its data is read without holding the lock of
+ * the cache; freeing a pinned chunk is deferred until it is unpinned.
+ * <p>
+ * This class is not thread-safe; the cache calls it under the lock of the
+ * segment it belongs to. Only {@link Chunk#write} and
+ * {@link Chunk#toByteArray} may be called without it.
+ */
+final class SlabAllocator {
+
+    static final int MIN_CHUNK_SIZE = 256;
+    static final int MIN_SLAB_SIZE = 64 * 1024;
+    static final int MAX_SLAB_SIZE = 1024 * 1024;
+
+    private final int slabSize;
+    private final int[] classSizes;
+    private final List<ArrayDeque<Slab>> partialSlabs;
+    private long allocatedBytes;
+
+    /**
+     * @param budget the budget of the cache, which sizes the slabs to a
+     *        sixty-fourth of it between {@value #MIN_SLAB_SIZE} and
+     *        {@value #MAX_SLAB_SIZE} bytes, so that a partly used slab per
+     *        size class takes a fraction of the budget
+     */
+    SlabAllocator(long budget) {
+        this.slabSize = Integer.highestOneBit((int) Math.max(MIN_SLAB_SIZE, Math.min(MAX_SLAB_SIZE, budget / 64)));
+        int[] sizes = new int[64];
+        int count = 0;
+        for (int size = MIN_CHUNK_SIZE; size <= slabSize; size <<= 1) {
+            sizes[count++] = size;
+            if (size + (size >> 1) <= slabSize) {
+                sizes[count++] = size + (size >> 1);
+            }
+        }
+        this.classSizes = Arrays.copyOf(sizes, count);
+        this.partialSlabs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            partialSlabs.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * A block of off-heap memory holding the data of one cache entry.
+     */
+    static final class Chunk {
+
+        private final Slab slab;
+        private final int index;
+        private final int length;
+        private int pins;
+        private boolean freed;
+
+        private Chunk(Slab slab, int index, int length) {
+            this.slab = slab;
+            this.index = index;
+            this.length = length;
+        }
+
+        /**
+         * @return the number of bytes the chunk occupies, at least its length
+         */
+        int capacity() {
+            return slab.chunkSize;
+        }
+
+        /**
+         * Copies data of the length the chunk was allocated for into it,
+         * before it is published to other threads.
+         */
+        void write(byte[] data) {
+            slab.memory.put(index * slab.chunkSize, data);
+        }
+
+        /**
+         * @return a copy of the data held by the chunk, which must be
+         *         pinned unless the lock of the cache is held
+         */
+        byte[] toByteArray() {
+            byte[] data = new byte[length];
+            slab.memory.get(index * slab.chunkSize, data);
+            return data;
+        }
+    }
+
+    /**
+     * A direct buffer divided into chunks of one size, with a stack of the
+     * free ones.
+     */
+    private static final class Slab {
+
+        private final ByteBuffer memory;
+        private final int chunkSize;
+        private final int sizeClass;
+        private final int[] freeChunks;
+        private int freeCount;
+
+        Slab(int chunkSize, int chunkCount, int sizeClass) {
+            this.memory = ByteBuffer.allocateDirect(chunkSize * chunkCount);
+            this.chunkSize = chunkSize;
+            this.sizeClass = sizeClass;
+            this.freeChunks = new int[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                // chunks are taken from the top, so lower chunks are used first
+                freeChunks[i] = chunkCount - 1 - i;
+            }
+            this.freeCount = chunkCount;
+        }
+    }
+
+    /**
+     * Allocates a chunk for data of the given length, to be filled with
+     * {@link Chunk#write}.
+     *
+     * @return the chunk, to be passed to {@link #free} once it is evicted
+     */
+    Chunk allocate(int length) {
+        int sizeClass = sizeClass(length);
+        Slab slab;
+        if (sizeClass < 0) {
+            slab = new Slab(Math.max(length, 1), 1, -1);
+            allocatedBytes += slab.chunkSize;
+        } else {
+            ArrayDeque<Slab> partial = partialSlabs.get(sizeClass);
+            slab = partial.peekFirst();
+            if (slab == null) {
+                int chunkSize = classSizes[sizeClass];
+                slab = new Slab(chunkSize, slabSize / chunkSize, sizeClass);
+                allocatedBytes += (long) chunkSize * slab.freeChunks.length;
+                partial.addFirst(slab);
+            }
+        }
+        int index = slab.freeChunks[--slab.freeCount];
+        if (slab.freeCount == 0 && sizeClass >= 0) {
+            partialSlabs.get(sizeClass).removeFirst();
+        }
+        return new Chunk(slab, index, length);
+    }
+
+    /**
+     * Keeps a chunk from being reused until it is {@linkplain #unpin unpinned}.
+     */
+    void pin(Chunk chunk) {
+        chunk.pins++;
+    }
+
+    /**
+     * Releases a pin, freeing the chunk if it was freed while pinned.
+     */
+    void unpin(Chunk chunk) {
+        if (--chunk.pins == 0 && chunk.freed) {
+            release(chunk);
+        }
+    }
+
+    /**
+     * Returns a chunk to its slab, releasing the slab if it is empty and
+     * another slab of its class has free chunks. A pinned chunk is returned
+     * once it is unpinned.
+     */
+    void free(Chunk chunk) {
+        chunk.freed = true;
+        if (chunk.pins == 0) {
+            release(chunk);
+        }
+    }
+
+    private void release(Chunk chunk) {
+        Slab slab = chunk.slab;
+        slab.freeChunks[slab.freeCount++] = chunk.index;
+        if (slab.sizeClass < 0) {
+            allocatedBytes -= slab.chunkSize;
+            return;
+        }
+        ArrayDeque<Slab> partial = partialSlabs.get(slab.sizeClass);
+        if (slab.freeCount == 1) {
+            partial.addLast(slab);
+        }
+        if (slab.freeCount == slab.freeChunks.length && partial.size() > 1) {
+            partial.remove(slab);
+            allocatedBytes -= (long) slab.chunkSize * slab.freeChunks.length;
+        }
+    }
+
+    /**
+     * Releases the slabs whose chunks are all free, which are otherwise kept
+     * for the next allocation of their class.
+     */
+    void releaseEmptySlabs() {
+        for (ArrayDeque<Slab> partial : partialSlabs) {
+            Iterator<Slab> it = partial.iterator();
+            while (it.hasNext()) {
+                Slab slab = it.next();
+                if (slab.freeCount == slab.freeChunks.length) {
+                    it.remove();
+                    allocatedBytes -= (long) slab.chunkSize * slab.freeChunks.length;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes of direct memory held by the slabs,
+     *         including those of chunks that are allocated but not yet
+     *         cached and those whose release is deferred by a pin
+     */
+    long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return the number of bytes a chunk for data of the given length
+     *         occupies
+     */
+    int chunkSize(int length) {
+        int sizeClass = sizeClass(length);
+        return sizeClass < 0 ? Math.max(length, 1) : classSizes[sizeClass];
+    }
+
+    /**
+     * @return the smallest size class that holds the given length, or
+     *         {@code -1} if it is larger than a slab
+     */
+    private int sizeClass(int length) {
+        int i = Arrays.binarySearch(classSizes, length);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return i < classSizes.length ? i : -1;
+    }
+}
@@ -0,0 +1,124 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.Path;
+
+/**
+ * An {@link ArchiveReader} backed by a fixed number of {@link RandomAccessFile}
+ * handles, all opened up front, with each thread bound to one of them.
+ * <p>
+ * A thread always reads through the handle selected by its thread id, so
+ * reads from different threads are spread across independent handles and
+ * only threads that map to the same stripe contend. Each stripe is guarded
+ * by its own monitor: the open check, seek and read are performed while
+ * holding it, and {@link #close()} closes each handle while holding the same
+ * monitor, so a handle can never be closed between a reader's check and its
+ * read.
+ * <p>
+ * Compared to {@link PooledArchiveReader}, this keeps a constant number of
+ * file descriptors regardless of load and never opens the archive again
+ * after construction, at the cost of occasional contention between threads
+ * that share a stripe.
+ */
+final class StripedArchiveReader implements ArchiveReader {
+
+    private final RandomAccessFile[] handles;
+    private final long length;
+    private volatile boolean closed;
+
+    /**
+     * Opens {@code stripes} handles on the given archive.
+     *
+     * @param path the archive on the default filesystem
+     * @param stripes number of handles to open
+     * @throws IOException if the archive cannot be opened
+     */
+    StripedArchiveReader(Path path, int stripes) throws IOException {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be at least 1: " + stripes);
+        }
+        handles = new RandomAccessFile[stripes];
+        try {
+            for (int i = 0; i < stripes; i++) {
+                handles[i] = new RandomAccessFile(path.toFile(), "r");
+            }
+            length = handles[0].length();
+            for (int i = 1; i < stripes; i++) {
+                if (handles[i].length() != length) {
+                    throw new IOException("Archive changed while being opened: " + path);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            closeAll(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void readFully(long position, byte[] buf, int off, int len) throws IOException {
+        RandomAccessFile raf = handles[stripe()];
+        synchronized (raf) {
+            if (closed) {
+                throw new ClosedFileSystemException();
+            }
+            raf.seek(position);
+            raf.readFully(buf, off, len);
+        }
+    }
+
+    /**
+     * @return the number of handles held by this reader
+     */
+    int stripes() {
+        return handles.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        IOException failure = null;
+        for (RandomAccessFile raf : handles) {
+            synchronized (raf) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Selects the stripe for the calling thread. Thread ids are assigned
+     * sequentially, so the threads of a pool are spread evenly.
+     */
+    private int stripe() {
+        return (int) Math.floorMod(Thread.currentThread().getId(), (long) handles.length);
+    }
+
+    private void closeAll(Exception primary) {
+        for (RandomAccessFile raf : handles) {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException closeEx) {
+                    primary.addSuppressed(closeEx);
+                }
+            }
+        }
+    }
+}
@@ -1,21 +1,31 @@
 package io.quarkus.fs.util.rozip;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.zip.CRC32;
 
 /**
- * Parses the ZIP central directory from a {@link RandomAccessFile} and produces
+ * Parses the ZIP central directory from an {@link ArchiveReader} and produces
  * an entry index and directory tree.
  * <p>
  * The parser handles both standard ZIP and ZIP64 formats. All I/O is performed
- * through the provided {@link RandomAccessFile}, which is <em>not</em> an
- * {@link java.nio.channels.InterruptibleChannel} and therefore immune to
- * thread-interrupt-induced channel closures.
+ * through positional reads on the provided {@link ArchiveReader}, whose
+ * implementations are immune to thread-interrupt-induced channel closures.
  * <p>
- * After construction, the {@link RandomAccessFile} is not accessed by this
- * class; callers retain ownership of the file handle.
+ * After construction, the {@link ArchiveReader} is not accessed by this
+ * class; callers retain ownership of the reader.
+ * <p>
+ * When an {@link EntryTableSnapshot} is supplied, only the End of Central
+ * Directory record is read; if the snapshot matches it, the entry table is
+ * restored from the snapshot and the central directory itself is neither
+ * read nor sorted. Otherwise the table is built as usual and the snapshot
+ * is refreshed.
+ * <p>
+ * With lazy metadata, the central directory bytes are retained by the entry
+ * table and per-entry metadata is decoded from them on access, see
+ * {@link CentralDirectoryRecords}. A table restored from a snapshot is
+ * already decoded and is used as is.
  * <p>
  * Entry names are decoded as UTF-8. Archives that use the legacy CP437
  * encoding (general-purpose bit 11 unset) may produce incorrect names.
@@ -50,35 +60,70 @@ final class ZipCentralDirectory {
 
     /**
      * Parses the central directory of the ZIP file accessible through the given
-     * {@link RandomAccessFile}.
+     * {@link ArchiveReader}.
+     *
+     * @param reader an open reader on the archive
+     * @param options the options selecting the layout of the entry table
+     * @return a parsed central directory containing entry metadata and directory tree
+     * @throws IOException if the file cannot be read or is not a valid ZIP archive
+     */
+    static ZipCentralDirectory parse(ArchiveReader reader, ReadOnlyZipOptions options) throws IOException {
+        return parse(reader, null, options);
+    }
+
+    /**
+     * Parses the central directory of the ZIP file accessible through the given
+     * {@link ArchiveReader}, using and refreshing an index snapshot.
      *
-     * @param raf an open {@link RandomAccessFile} positioned anywhere; the method
-     *        seeks as needed
+     * @param reader an open reader on the archive
+     * @param snapshot the snapshot for this archive, or {@code null} to always parse
+     * @param options the options selecting the layout of the entry table:
+     *        {@link ReadOnlyZipOptions#hashIndex()},
+     *        {@link ReadOnlyZipOptions#lazyMetadata()},
+     *        {@link ReadOnlyZipOptions#compactNames()} and
+     *        {@link ReadOnlyZipOptions#directoryIndex()}
      * @return a parsed central directory containing entry metadata and directory tree
      * @throws IOException if the file cannot be read or is not a valid ZIP archive
      */
-    static ZipCentralDirectory parse(RandomAccessFile raf) throws IOException {
-        long fileLength = raf.length();
+    static ZipCentralDirectory parse(ArchiveReader reader, EntryTableSnapshot snapshot, ReadOnlyZipOptions options)
+            throws IOException {
+        long fileLength = reader.length();
         if (fileLength < EOCD_MIN_SIZE) {
             throw new IOException("File is too small to be a valid ZIP archive");
         }
 
-        long[] eocdInfo = findEocd(raf, fileLength);
+        long[] eocdInfo = findEocd(reader, fileLength);
         long cdOffset = eocdInfo[0];
         long cdSize = eocdInfo[1];
         long totalEntries = eocdInfo[2];
+        long eocdCrc = eocdInfo[3];
+
+        if (snapshot != null) {
+            CompactEntryTable table = snapshot.load(eocdCrc);
+            if (table != null) {
+                return new ZipCentralDirectory(table.withDirectoryIndex(options.directoryIndex())
+                        .withCompactNames(options.compactNames())
+                        .withHashIndex(options.hashIndex()));
+            }
+        }
 
         if (cdSize > MAX_CENTRAL_DIR_SIZE) {
             throw new IOException("Central directory too large (" + cdSize
                     + " bytes, limit " + MAX_CENTRAL_DIR_SIZE + ")");
         }
         byte[] cdBytes = new byte[(int) cdSize];
-        raf.seek(cdOffset);
-        raf.readFully(cdBytes);
-
-        CompactEntryTable table = CompactEntryTable.buildFromCentralDirectory(
-                cdBytes, (int) cdSize, totalEntries, cdOffset);
-        return new ZipCentralDirectory(table);
+        reader.readFully(cdOffset, cdBytes);
+
+        // snapshots hold neither the directory index nor front-coded names,
+        // which are added after the snapshot is stored
+        boolean compactNames = options.compactNames();
+        CompactEntryTable table = CompactEntryTable.buildFromCentralDirectory(cdBytes, (int) cdSize, totalEntries,
+                cdOffset, options.hashIndex() && !compactNames, options.lazyMetadata());
+        if (snapshot != null) {
+            snapshot.store(eocdCrc, table);
+        }
+        return new ZipCentralDirectory(
+                table.withDirectoryIndex(options.directoryIndex()).withCompactNames(compactNames));
     }
 
     CompactEntryTable entryTable() {
@@ -88,16 +133,18 @@ final class ZipCentralDirectory {
     /**
      * Locates the End of Central Directory record and extracts the central
      * directory offset, size, and total entry count. Handles ZIP64 if needed.
+     * Also computes a CRC-32 over the EOCD record, including its comment, and
+     * the ZIP64 records if present, which identifies the central directory
+     * for {@link EntryTableSnapshot}.
      *
-     * @return array of {@code [cdOffset, cdSize, totalEntries]}
+     * @return array of {@code [cdOffset, cdSize, totalEntries, eocdCrc]}
      */
-    private static long[] findEocd(RandomAccessFile raf, long fileLength) throws IOException {
+    private static long[] findEocd(ArchiveReader reader, long fileLength) throws IOException {
         int searchLen = (int) Math.min(fileLength, EOCD_MIN_SIZE + EOCD_MAX_COMMENT);
         long searchStart = fileLength - searchLen;
         byte[] buf = new byte[searchLen];
 
-        raf.seek(searchStart);
-        raf.readFully(buf);
+        reader.readFully(searchStart, buf);
 
         int eocdPos = findEocdSignature(buf);
         if (eocdPos < 0) {
@@ -107,12 +154,14 @@ final class ZipCentralDirectory {
         long totalEntries = LittleEndian.readUint16(buf, eocdPos + 10);
         long cdSize = LittleEndian.readUint32(buf, eocdPos + 12);
         long cdOffset = LittleEndian.readUint32(buf, eocdPos + 16);
+        CRC32 crc = new CRC32();
+        crc.update(buf, eocdPos, buf.length - eocdPos);
 
         if (needsZip64(totalEntries, cdSize, cdOffset)) {
-            return readZip64Eocd(raf, searchStart + eocdPos);
+            return readZip64Eocd(reader, searchStart + eocdPos, crc);
         }
 
-        return new long[] { cdOffset, cdSize, totalEntries };
+        return new long[] { cdOffset, cdSize, totalEntries, crc.getValue() };
     }
 
     /**
@@ -140,19 +189,19 @@ final class ZipCentralDirectory {
      * Reads the ZIP64 End of Central Directory record and returns the 64-bit
      * central directory offset, size, and total entry count.
      *
-     * @param raf the archive file
+     * @param reader the archive reader
      * @param eocdOffset absolute file offset of the standard EOCD record
-     * @return array of {@code [cdOffset, cdSize, totalEntries]}
+     * @param crc the CRC-32 of the standard EOCD record, updated with the ZIP64 records
+     * @return array of {@code [cdOffset, cdSize, totalEntries, eocdCrc]}
      */
-    private static long[] readZip64Eocd(RandomAccessFile raf, long eocdOffset) throws IOException {
+    private static long[] readZip64Eocd(ArchiveReader reader, long eocdOffset, CRC32 crc) throws IOException {
         long locatorOffset = eocdOffset - 20;
         if (locatorOffset < 0) {
             throw new IOException("ZIP64 EOCD locator not found");
         }
 
         byte[] locator = new byte[20];
-        raf.seek(locatorOffset);
-        raf.readFully(locator);
+        reader.readFully(locatorOffset, locator);
 
         if (LittleEndian.readInt32(locator, 0) != ZIP64_EOCD_LOCATOR_SIG) {
             throw new IOException("ZIP64 EOCD locator signature mismatch");
@@ -161,8 +210,7 @@ final class ZipCentralDirectory {
         long zip64EocdOffset = LittleEndian.readUint64(locator, 8);
 
         byte[] eocd64 = new byte[56];
-        raf.seek(zip64EocdOffset);
-        raf.readFully(eocd64);
+        reader.readFully(zip64EocdOffset, eocd64);
 
         if (LittleEndian.readInt32(eocd64, 0) != ZIP64_EOCD_SIG) {
             throw new IOException("ZIP64 EOCD signature mismatch");
@@ -171,8 +219,10 @@ final class ZipCentralDirectory {
         long totalEntries = LittleEndian.readUint64(eocd64, 32);
         long cdSize = LittleEndian.readUint64(eocd64, 40);
         long cdOffset = LittleEndian.readUint64(eocd64, 48);
+        crc.update(locator);
+        crc.update(eocd64);
 
-        return new long[] { cdOffset, cdSize, totalEntries };
+        return new long[] { cdOffset, cdSize, totalEntries, crc.getValue() };
     }
 
     /**
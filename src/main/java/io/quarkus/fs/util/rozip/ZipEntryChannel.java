@@ -0,0 +1,229 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.zip.CRC32;
+
+/**
+ * A read-only {@link SeekableByteChannel} over a single entry of a
+ * {@link ReadOnlyZipFileSystem} that reads the entry data from the archive
+ * on demand instead of materializing it.
+ * <p>
+ * For STORED entries, every {@link #read(ByteBuffer)} is a positional read
+ * at the corresponding offset within the archive, so seeking is free and
+ * only the bytes actually requested are read. The CRC-32 is accumulated
+ * over the contiguous prefix read from position 0 and verified once that
+ * prefix covers the whole entry, so a plain sequential read is verified
+ * just like a stream.
+ * <p>
+ * DEFLATE streams cannot be entered at an arbitrary offset, and an
+ * {@link java.util.zip.Inflater}'s state cannot be saved and restored, so
+ * DEFLATED entries are inflated forward through a {@link ZipEntryInputStream}
+ * into a window of at most {@value #WINDOW_SIZE} bytes. Reads and seeks
+ * within the current window are served from memory, forward seeks inflate
+ * and discard the bytes in between, and seeks before the window restart
+ * inflation from the beginning of the entry. The CRC-32 is verified by the
+ * stream when inflation reaches the end of the entry.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class ZipEntryChannel implements SeekableByteChannel {
+
+    static final int WINDOW_SIZE = 64 * 1024;
+
+    private final ReadOnlyZipFileSystem fs;
+    private final ZipEntryInfo info;
+    private final long dataOffset;
+    private final long size;
+    private final boolean deflated;
+    private long position;
+    private boolean open = true;
+
+    // STORED: CRC-32 of the bytes in [0, crcPosition)
+    private CRC32 crc;
+    private long crcPosition;
+    private byte[] chunk;
+
+    // DEFLATED: inflated bytes in [windowStart, windowStart + windowLength)
+    private ZipEntryInputStream stream;
+    private byte[] window;
+    private long windowStart;
+    private int windowLength;
+
+    /**
+     * @param fs the filesystem owning the entry
+     * @param info the entry metadata from the central directory
+     * @param dataOffset absolute offset of the entry data within the archive
+     * @param size the uncompressed size of the entry
+     */
+    ZipEntryChannel(ReadOnlyZipFileSystem fs, ZipEntryInfo info, long dataOffset, long size) {
+        this.fs = fs;
+        this.info = info;
+        this.dataOffset = dataOffset;
+        this.size = size;
+        this.deflated = info.compressionMethod() == ReadOnlyZipFileSystem.METHOD_DEFLATED;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        int len = (int) Math.min(dst.remaining(), size - position);
+        if (len == 0) {
+            return 0;
+        }
+        int n = deflated ? readInflated(dst, len) : readStored(dst, len);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Invalid position: " + newPosition);
+        }
+        this.position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        closeStream();
+    }
+
+    private int readStored(ByteBuffer dst, int len) throws IOException {
+        long filePosition = dataOffset + position;
+        if (dst.hasArray()) {
+            int off = dst.arrayOffset() + dst.position();
+            fs.readFully(filePosition, dst.array(), off, len);
+            updateCrc(dst.array(), off, len);
+            dst.position(dst.position() + len);
+            return len;
+        }
+        ByteBuffer view = fs.slice(filePosition, len);
+        if (view != null) {
+            if (position == crcPosition) {
+                updateCrc(view.duplicate(), len);
+            }
+            dst.put(view);
+            return len;
+        }
+        if (chunk == null) {
+            chunk = new byte[(int) Math.min(size, ZipEntryInputStream.BUFFER_SIZE)];
+        }
+        int n = Math.min(len, chunk.length);
+        fs.readFully(filePosition, chunk, 0, n);
+        updateCrc(chunk, 0, n);
+        dst.put(chunk, 0, n);
+        return n;
+    }
+
+    private void updateCrc(byte[] b, int off, int len) throws IOException {
+        if (position == crcPosition) {
+            updateCrc(ByteBuffer.wrap(b, off, len), len);
+        }
+    }
+
+    /**
+     * Extends the verified prefix by the bytes just read at
+     * {@link #position}, verifying the CRC-32 once the prefix covers the
+     * whole entry.
+     */
+    private void updateCrc(ByteBuffer data, int len) throws IOException {
+        if (crc == null) {
+            crc = new CRC32();
+        }
+        crc.update(data);
+        crcPosition += len;
+        if (crcPosition == size) {
+            ReadOnlyZipFileSystem.verifyCrc32(crc.getValue(), info);
+        }
+    }
+
+    private int readInflated(ByteBuffer dst, int len) throws IOException {
+        if (stream == null || position < windowStart || position >= windowStart + windowLength) {
+            moveWindow();
+        }
+        int off = (int) (position - windowStart);
+        int n = Math.min(len, windowLength - off);
+        dst.put(window, off, n);
+        return n;
+    }
+
+    /**
+     * Positions the window so that it contains {@link #position}, restarting
+     * inflation if the position lies before the current window.
+     */
+    private void moveWindow() throws IOException {
+        if (stream == null || position < windowStart) {
+            closeStream();
+            stream = new ZipEntryInputStream(fs, info, dataOffset, size);
+            if (window == null) {
+                window = new byte[(int) Math.min(size, WINDOW_SIZE)];
+            }
+            windowStart = 0;
+            windowLength = 0;
+        }
+        while (position >= windowStart + windowLength) {
+            windowStart += windowLength;
+            windowLength = stream.readNBytes(window, 0, window.length);
+            if (windowLength == 0) {
+                throw new EOFException("Unexpected end of entry data: " + info.name());
+            }
+            if (windowStart + windowLength == size) {
+                // consume the end of the stream so that its size and CRC-32 are verified
+                if (stream.read() != -1) {
+                    throw new IOException("Decompressed data exceeds declared size (" + size + ")");
+                }
+            }
+        }
+    }
+
+    private void closeStream() throws IOException {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
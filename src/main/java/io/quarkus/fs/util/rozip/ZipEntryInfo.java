@@ -13,7 +13,9 @@ package io.quarkus.fs.util.rozip;
  * @param crc32 CRC-32 checksum of the uncompressed data
  * @param localHeaderOffset byte offset of this entry's local file header in the ZIP file
  * @param directory whether this entry represents a directory
- * @param lastModifiedTime last-modified timestamp in epoch milliseconds
+ * @param storedLastModifiedTime last-modified timestamp in epoch milliseconds,
+ *        or a DOS date and time that is converted by {@link #lastModifiedTime()}
+ *        (see {@link DosTime})
  */
 record ZipEntryInfo(
         String name,
@@ -23,7 +25,14 @@ record ZipEntryInfo(
         long crc32,
         long localHeaderOffset,
         boolean directory,
-        long lastModifiedTime) {
+        long storedLastModifiedTime) {
 
     static final String ROOT_ENTRY_NAME = "";
+
+    /**
+     * @return last-modified timestamp in epoch milliseconds
+     */
+    long lastModifiedTime() {
+        return DosTime.toEpochMillis(storedLastModifiedTime);
+    }
 }
@@ -0,0 +1,207 @@
+package io.quarkus.fs.util.rozip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * An {@link InputStream} over a single entry of a {@link ReadOnlyZipFileSystem}
+ * that reads the entry data directly from the archive instead of
+ * materializing it.
+ * <p>
+ * Compressed bytes are read in chunks of at most {@link #BUFFER_SIZE} bytes
+ * through {@link ReadOnlyZipFileSystem#readFully(long, byte[], int, int)}, so
+ * the heap footprint of a stream is bounded regardless of the entry size and
+ * the archive lock is only held for one chunk at a time. STORED data is read
+ * straight into the caller's buffer. DEFLATED data is inflated incrementally
+ * with an {@link Inflater} borrowed from the filesystem's pool, which is
+ * returned as soon as the end of the entry is reached or the stream is
+ * closed. When the archive is memory-mapped, the inflater is fed a view of
+ * the mapping covering the whole compressed data instead of chunks copied
+ * into a buffer.
+ * <p>
+ * The CRC-32 and the uncompressed size are accumulated as data is consumed
+ * and verified when the end of the entry is reached; a mismatch is reported
+ * as an {@link IOException} from the {@code read} call that hits the end.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class ZipEntryInputStream extends InputStream {
+
+    static final int BUFFER_SIZE = 8192;
+
+    private final ReadOnlyZipFileSystem fs;
+    private final ZipEntryInfo info;
+    private final long expectedSize;
+    private final boolean deflated;
+    private final CRC32 crc = new CRC32();
+    private Inflater inflater;
+    private byte[] buf;
+    private byte[] single;
+    private long position;
+    private long remaining;
+    private long produced;
+    private boolean eof;
+    private boolean closed;
+
+    /**
+     * @param fs the filesystem owning the entry
+     * @param info the entry metadata from the central directory
+     * @param dataOffset absolute offset of the entry data within the archive
+     * @param expectedSize the declared uncompressed size, or 0 if unknown
+     */
+    ZipEntryInputStream(ReadOnlyZipFileSystem fs, ZipEntryInfo info, long dataOffset, long expectedSize) {
+        this.fs = fs;
+        this.info = info;
+        this.expectedSize = expectedSize;
+        this.deflated = info.compressionMethod() == ReadOnlyZipFileSystem.METHOD_DEFLATED;
+        this.position = dataOffset;
+        this.remaining = info.compressedSize();
+        if (deflated) {
+            this.inflater = fs.borrowInflater();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (single == null) {
+            single = new byte[1];
+        }
+        return read(single, 0, 1) == 1 ? single[0] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        ensureOpen();
+        if (eof) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        int n = deflated ? readInflated(b, off, len) : readStored(b, off, len);
+        if (n < 0) {
+            finish();
+            return -1;
+        }
+        crc.update(b, off, n);
+        produced += n;
+        if (expectedSize > 0 && produced > expectedSize) {
+            throw new IOException("Decompressed data exceeds declared size (" + expectedSize + ")");
+        }
+        if (produced > ReadOnlyZipFileSystem.MAX_ENTRY_SIZE) {
+            throw new IOException("Decompressed data exceeds maximum entry size ("
+                    + ReadOnlyZipFileSystem.MAX_ENTRY_SIZE + ")");
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of uncompressed bytes left in the entry when the
+     * size is known, mirroring {@link java.util.zip.ZipFile}'s entry streams.
+     */
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        if (eof) {
+            return 0;
+        }
+        long left = deflated ? expectedSize - produced : remaining;
+        return (int) Math.max(0, Math.min(left, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        releaseInflater();
+    }
+
+    private int readStored(byte[] b, int off, int len) throws IOException {
+        if (remaining == 0) {
+            return -1;
+        }
+        int n = (int) Math.min(len, remaining);
+        fs.readFully(position, b, off, n);
+        position += n;
+        remaining -= n;
+        return n;
+    }
+
+    private int readInflated(byte[] b, int off, int len) throws IOException {
+        try {
+            while (true) {
+                int n = inflater.inflate(b, off, len);
+                if (n > 0) {
+                    return n;
+                }
+                if (inflater.finished()) {
+                    return -1;
+                }
+                if (!inflater.needsInput() || inflater.needsDictionary()) {
+                    throw new IOException("Inflater stalled; compressed data may be corrupt");
+                }
+                fill();
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Failed to decompress entry data", e);
+        }
+    }
+
+    /**
+     * Reads the next chunk of compressed bytes from the archive and hands it
+     * to the inflater.
+     */
+    private void fill() throws IOException {
+        if (remaining == 0) {
+            throw new EOFException("Unexpected end of compressed data for entry: " + info.name());
+        }
+        if (buf == null) {
+            ByteBuffer mapped = remaining <= Integer.MAX_VALUE ? fs.slice(position, (int) remaining) : null;
+            if (mapped != null) {
+                position += remaining;
+                remaining = 0;
+                inflater.setInput(mapped);
+                return;
+            }
+            buf = new byte[(int) Math.min(remaining, BUFFER_SIZE)];
+        }
+        int n = (int) Math.min(buf.length, remaining);
+        fs.readFully(position, buf, 0, n);
+        position += n;
+        remaining -= n;
+        inflater.setInput(buf, 0, n);
+    }
+
+    /**
+     * Called once the end of the entry data is reached. Releases the
+     * inflater and verifies the uncompressed size and CRC-32.
+     */
+    private void finish() throws IOException {
+        eof = true;
+        releaseInflater();
+        if (expectedSize > 0 && produced < expectedSize) {
+            throw new IOException("Decompressed size (" + produced
+                    + ") is less than declared (" + expectedSize + ")");
+        }
+        ReadOnlyZipFileSystem.verifyCrc32(crc.getValue(), info);
+    }
+
+    private void releaseInflater() {
+        if (inflater != null) {
+            fs.returnInflater(inflater);
+            inflater = null;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
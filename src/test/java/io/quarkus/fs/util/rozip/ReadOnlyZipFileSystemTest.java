@@ -3,15 +3,20 @@ package io.quarkus.fs.util.rozip;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import io.quarkus.fs.util.ZipUtils;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.NonWritableChannelException;
@@ -25,20 +30,26 @@ import java.nio.file.FileSystemException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
 import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
@@ -120,6 +131,94 @@ class ReadOnlyZipFileSystemTest {
         }
     }
 
+    // -- Streaming --
+
+    @Test
+    void streamLargeDeflatedEntryInChunks() throws IOException {
+        byte[] content = patternedBytes(5 * ZipEntryInputStream.BUFFER_SIZE + 123);
+        Path zip = createZip("large.zip", entry("large.bin", content));
+
+        try (FileSystem fs = ReadOnlyZipFileSystem.open(zip);
+                InputStream is = Files.newInputStream(fs.getPath("/large.bin"))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[1000];
+            int n;
+            while ((n = is.read(chunk)) != -1) {
+                out.write(chunk, 0, n);
+            }
+            assertArrayEquals(content, out.toByteArray());
+            assertEquals(-1, is.read());
+        }
+    }
+
+    @Test
+    void streamLargeStoredEntry() throws IOException {
+        byte[] content = patternedBytes(3 * ZipEntryInputStream.BUFFER_SIZE + 7);
+        Path zip = createZipWithMethod("stored-large.zip", ZipEntry.STORED, entry("large.bin", content));
+
+        try (FileSystem fs = ReadOnlyZipFileSystem.open(zip);
+                InputStream is = Files.newInputStream(fs.getPath("/large.bin"))) {
+            assertEquals(content.length, is.available());
+            assertEquals(content[0] & 0xFF, is.read());
+            byte[] rest = is.readAllBytes();
+            assertArrayEquals(Arrays.copyOfRange(content, 1, content.length), rest);
+        }
+    }
+
+    @Test
+    void streamDetectsCrcMismatchAtEnd() throws IOException {
+        Path zip = createZip("test.zip", entry("f.txt", "hello streaming world"));
+        byte[] raw = Files.readAllBytes(zip);
+        int cdOff = findCentralDirectoryOffset(raw);
+        writeLeUint32(raw, cdOff + 16, readLeUint32(raw, cdOff + 16) ^ 0x1);
+        Path patched = tempDir.resolve("bad-crc.zip");
+        Files.write(patched, raw);
+
+        try (FileSystem fs = ReadOnlyZipFileSystem.open(patched);
+                InputStream is = Files.newInputStream(fs.getPath("/f.txt"))) {
+            IOException ex = assertThrows(IOException.class, is::readAllBytes);
+            assertTrue(ex.getMessage().contains("CRC-32 mismatch"), ex.getMessage());
+        }
+    }
+
+    @Test
+    void streamRejectsOversizedEntryBeforeReading() throws IOException {
+        Path zip = createZip("test.zip", entry("small.txt", "ok"));
+        byte[] raw = Files.readAllBytes(zip);
+        patchCentralDirectoryUncompressedSize(raw, ReadOnlyZipFileSystem.MAX_ENTRY_SIZE + 1);
+        Path patched = tempDir.resolve("oversized.zip");
+        Files.write(patched, raw);
+
+        try (FileSystem fs = ReadOnlyZipFileSystem.open(patched)) {
+            IOException ex = assertThrows(IOException.class,
+                    () -> Files.newInputStream(fs.getPath("/small.txt")));
+            assertTrue(ex.getMessage().contains("Entry too large"), ex.getMessage());
+        }
+    }
+
+    @Test
+    void streamFailsAfterFileSystemClosed() throws IOException {
+        byte[] content = patternedBytes(4 * ZipEntryInputStream.BUFFER_SIZE);
+        Path zip = createZip("test.zip", entry("data.bin", content));
+
+        FileSystem fs = ReadOnlyZipFileSystem.open(zip);
+        try (InputStream is = Files.newInputStream(fs.getPath("/data.bin"))) {
+            assertEquals(content[0] & 0xFF, is.read());
+            fs.close();
+            assertThrows(ClosedFileSystemException.class, is::readAllBytes);
+        }
+    }
+
+    @Test
+    void streamOfDeflatedEmptyEntry() throws IOException {
+        Path zip = createZip("test.zip", entry("empty.txt", ""));
+
+        try (FileSystem fs = ReadOnlyZipFileSystem.open(zip);
+                InputStream is = Files.newInputStream(fs.getPath("/empty.txt"))) {
+            assertEquals(-1, is.read());
+        }
+    }
+
     // -- Directory traversal --
 
     @Test
@@ -444,6 +543,307 @@ class ReadOnlyZipFileSystemTest {
         assertEquals(0, errors.get(), "No errors expected in concurrent reads");
     }
 
+    // -- Read handle pool --
+
+    @Test
+    void concurrentReadsStayWithinReadHandleLimit() throws Exception {
+        TestEntry[] entries = new TestEntry[64];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = entry("e" + i + ".bin", patternedBytes(1000 + i * 97));
+        }
+        Path zip = createZip("pool.zip", entries);
+
+        int threadCount = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        try (PooledArchiveReader reader = new PooledArchiveReader(zip, 4)) {
+            byte[] expected = Files.readAllBytes(zip);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                final int seed = t;
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    for (int j = 0; j < 200; j++) {
+                        int pos = (seed * 7919 + j * 104_729) % (expected.length - 64);
+                        byte[] buf = new byte[64];
+                        reader.readFully(pos, buf);
+                        assertArrayEquals(Arrays.copyOfRange(expected, pos, pos + 64), buf);
+                        assertTrue(reader.openHandles() <= 4, "open handles: " + reader.openHandles());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            assertTrue(reader.openHandles() >= 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void replacedArchiveIsNeverReopened() throws Exception {
+        Path zip = createZip("replaced.zip", entry("a.txt", "original"));
+        byte[] original = Files.readAllBytes(zip);
+
+        try (PooledArchiveReader reader = new PooledArchiveReader(zip, 2)) {
+            RandomAccessFile held = reader.borrow();
+            Path replacement = createZip("replacement.zip", entry("a.txt", "replaced with other content"));
+            Files.move(replacement, zip, StandardCopyOption.REPLACE_EXISTING);
+
+            byte[] buf = new byte[original.length];
+            Thread blocked = new Thread(() -> {
+                try {
+                    reader.readFully(0, buf);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            blocked.start();
+            blocked.join(200);
+            assertTrue(blocked.isAlive(), "read must wait for the original handle");
+            assertEquals(1, reader.openHandles());
+
+            reader.giveBack(held);
+            blocked.join();
+            assertArrayEquals(original, buf);
+        }
+    }
+
+    @Test
+    void pooledReaderRejectsReadsAfterClose() throws IOException {
+        Path zip = createZip("test.zip", entry("a.txt", "alpha"));
+        PooledArchiveReader reader = new PooledArchiveReader(zip, 2);
+        RandomAccessFile held = reader.borrow();
+        reader.close();
+        assertThrows(ClosedFileSystemException.class, () -> reader.readFully(0, new byte[4]));
+        reader.giveBack(held);
+        assertEquals(0, reader.openHandles());
+    }
+
+    @Test
+    void stripedReadsAreConsistentAcrossThreads() throws Exception {
+        TestEntry[] entries = new TestEntry[32];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = entry("e" + i + ".bin", patternedBytes(500 + i * 131));
+        }
+        Path zip = createZip("striped.zip", entries);
+
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip,
+                ReadOnlyZipOptions.defaults().withStripedReads(3))) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                final int seed = t;
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    for (int j = 0; j < 100; j++) {
+                        int i = (seed + j) % entries.length;
+                        assertArrayEquals(patternedBytes(500 + i * 131),
+                                Files.readAllBytes(fs.getPath("/e" + i + ".bin")));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void stripedReaderRejectsReadsAfterClose() throws Exception {
+        Path zip = createZip("test.zip", entry("a.txt", "alpha"));
+        StripedArchiveReader reader = new StripedArchiveReader(zip, 2);
+        assertEquals(2, reader.stripes());
+        byte[] buf = new byte[4];
+        reader.readFully(0, buf);
+        reader.close();
+        assertThrows(ClosedFileSystemException.class, () -> reader.readFully(0, buf));
+
+        Thread other = new Thread(() -> assertThrows(ClosedFileSystemException.class,
+                () -> reader.readFully(0, buf)));
+        other.start();
+        other.join();
+    }
+
+    @Test
+    void closeIsSafeWithConcurrentStripedReaders() throws Exception {
+        Path zip = createZip("striped.zip", entry("big.bin", patternedBytes(64 * 1024)));
+        ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip,
+                ReadOnlyZipOptions.defaults().withStripedReads(2));
+        int threadCount = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CyclicBarrier barrier = new CyclicBarrier(threadCount + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    try {
+                        while (true) {
+                            assertArrayEquals(patternedBytes(64 * 1024), fs.readEntryData("big.bin"));
+                        }
+                    } catch (ClosedFileSystemException expected) {
+                        return null;
+                    }
+                }));
+            }
+            barrier.await();
+            fs.close();
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void optionsValidateReadHandles() {
+        ReadOnlyZipOptions defaults = ReadOnlyZipOptions.defaults();
+        assertEquals(ReadOnlyZipOptions.ReadMode.POOLED, defaults.readMode());
+        assertEquals(ReadOnlyZipFileSystem.MAX_READ_HANDLES, defaults.readHandles());
+        assertThrows(IllegalArgumentException.class, () -> defaults.withReadHandles(0));
+        assertThrows(NullPointerException.class, () -> defaults.withReadMode(null));
+        ReadOnlyZipOptions striped = defaults.withStripedReads(4);
+        assertEquals(ReadOnlyZipOptions.ReadMode.STRIPED, striped.readMode());
+        assertEquals(4, striped.readHandles());
+        assertEquals(ReadOnlyZipOptions.ReadMode.POOLED, defaults.readMode());
+    }
+
+    // -- Memory-mapped reads --
+
+    @Test
+    void mappedReadsMatchContent() throws IOException {
+        byte[] big = patternedBytes(100_000);
+        Path zip = createZipMixedMethods("mapped.zip",
+                storedEntry("stored.txt", "stored content"),
+                deflatedEntry("deflated.txt", "deflated content"),
+                new MethodEntry("big.bin", big, ZipEntry.DEFLATED));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip,
+                ReadOnlyZipOptions.defaults().withMappedReads())) {
+            assertEquals("stored content", Files.readString(fs.getPath("/stored.txt")));
+            assertEquals("deflated content", Files.readString(fs.getPath("/deflated.txt")));
+            assertArrayEquals(big, fs.readEntryData("big.bin"));
+            try (InputStream in = Files.newInputStream(fs.getPath("/big.bin"))) {
+                assertArrayEquals(big, in.readAllBytes());
+            }
+            try (InputStream in = Files.newInputStream(fs.getPath("/stored.txt"))) {
+                assertEquals("stored content", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void mappedReadsHandleDataDescriptors() throws IOException {
+        byte[] content = "data descriptor entry".getBytes(StandardCharsets.UTF_8);
+        Path zip = tempDir.resolve("data-descriptor.zip");
+        Files.write(zip, buildZipWithDataDescriptor("dd.txt", content));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip,
+                ReadOnlyZipOptions.defaults().withMappedReads())) {
+            assertEquals("data descriptor entry", Files.readString(fs.getPath("/dd.txt")));
+        }
+    }
+
+    @Test
+    void mappedReadsAreImmuneToInterrupts() throws IOException {
+        Path zip = createZip("test.zip", entry("data.txt", "important data"));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip,
+                ReadOnlyZipOptions.defaults().withMappedReads())) {
+            Thread.currentThread().interrupt();
+            try {
+                assertEquals("important data", Files.readString(fs.getPath("/data.txt")));
+            } finally {
+                assertTrue(Thread.interrupted(), "Interrupt flag should be preserved");
+            }
+            assertEquals("important data", Files.readString(fs.getPath("/data.txt")));
+        }
+    }
+
+    @Test
+    void mappedReaderSlicesAreReadOnlyViews() throws IOException {
+        Path zip = createZip("test.zip", entry("a.txt", "alpha"));
+        byte[] raw = Files.readAllBytes(zip);
+        MappedArchiveReader reader = new MappedArchiveReader(zip);
+        assertEquals(raw.length, reader.length());
+
+        ByteBuffer slice = reader.slice(4, 8);
+        assertTrue(slice.isReadOnly());
+        assertEquals(0, slice.position());
+        assertEquals(8, slice.remaining());
+        byte[] sliced = new byte[8];
+        slice.get(sliced);
+        assertArrayEquals(Arrays.copyOfRange(raw, 4, 12), sliced);
+        assertThrows(EOFException.class, () -> reader.readFully(raw.length - 2, new byte[4]));
+
+        reader.close();
+        assertThrows(ClosedFileSystemException.class, () -> reader.readFully(0, new byte[4]));
+        assertThrows(ClosedFileSystemException.class, () -> reader.slice(0, 4));
+    }
+
+    // -- ByteBuffer access --
+
+    @Test
+    void readEntryBufferReturnsReadOnlyData() throws IOException {
+        Path zip = createZipMixedMethods("buffers.zip",
+                storedEntry("stored.txt", "stored content"),
+                deflatedEntry("deflated.txt", "deflated content"));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip)) {
+            ByteBuffer stored = fs.readEntryBuffer("/stored.txt");
+            assertTrue(stored.isReadOnly());
+            assertEquals("stored content", StandardCharsets.UTF_8.decode(stored).toString());
+            ByteBuffer deflated = fs.readEntryBuffer("deflated.txt");
+            assertTrue(deflated.isReadOnly());
+            assertEquals("deflated content", StandardCharsets.UTF_8.decode(deflated).toString());
+            assertThrows(NoSuchFileException.class, () -> fs.readEntryBuffer("missing.txt"));
+        }
+    }
+
+    @Test
+    void mappedStoredEntryBufferIsAViewOfTheArchive() throws IOException {
+        byte[] content = patternedBytes(10_000);
+        Path zip = createZipWithMethod("mapped.zip", ZipEntry.STORED, entry("data.bin", content));
+
+        ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip, ReadOnlyZipOptions.defaults().withMappedReads());
+        ByteBuffer buffer;
+        try (fs) {
+            buffer = fs.readEntryBuffer("data.bin");
+            assertTrue(buffer.isDirect());
+            assertTrue(buffer.isReadOnly());
+        }
+        // the view stays valid after the filesystem is closed
+        byte[] read = new byte[buffer.remaining()];
+        buffer.get(read);
+        assertArrayEquals(content, read);
+    }
+
+    @Test
+    void readEntryBufferVerifiesCrcOnlyWhenRequested() throws IOException {
+        Path zip = createZipWithMethod("stored.zip", ZipEntry.STORED, entry("a.txt", "alpha"));
+        byte[] raw = Files.readAllBytes(zip);
+        int cdOff = findCentralDirectoryOffset(raw);
+        writeLeUint32(raw, cdOff + 16, readLeUint32(raw, cdOff + 16) ^ 0x1);
+        Path patched = tempDir.resolve("bad-crc.zip");
+        Files.write(patched, raw);
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(patched,
+                ReadOnlyZipOptions.defaults().withMappedReads())) {
+            IOException ex = assertThrows(IOException.class, () -> fs.readEntryBuffer("a.txt"));
+            assertTrue(ex.getMessage().contains("CRC-32 mismatch"), ex.getMessage());
+            assertEquals("alpha", StandardCharsets.UTF_8.decode(fs.readEntryBuffer("a.txt", false)).toString());
+        }
+    }
+
     // -- Interrupt resilience --
 
     @Test
@@ -679,6 +1079,85 @@ class ReadOnlyZipFileSystemTest {
         }
     }
 
+    @Test
+    void byteChannelRandomAccessOnStoredEntry() throws IOException {
+        byte[] content = patternedBytes(50_000);
+        Path zip = createZipWithMethod("stored.zip", ZipEntry.STORED, entry("data.bin", content));
+        for (ReadOnlyZipOptions options : List.of(ReadOnlyZipOptions.defaults(),
+                ReadOnlyZipOptions.defaults().withMappedReads())) {
+            try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip, options);
+                    SeekableByteChannel ch = Files.newByteChannel(fs.getPath("/data.bin"))) {
+                assertEquals(content.length, ch.size());
+                ch.position(content.length - 22);
+                ByteBuffer tail = ByteBuffer.allocate(22);
+                assertEquals(22, ch.read(tail));
+                assertArrayEquals(Arrays.copyOfRange(content, content.length - 22, content.length), tail.array());
+                assertEquals(-1, ch.read(ByteBuffer.allocate(1)));
+
+                ch.position(1000);
+                ByteBuffer direct = ByteBuffer.allocateDirect(100);
+                assertEquals(100, ch.read(direct));
+                direct.flip();
+                byte[] read = new byte[100];
+                direct.get(read);
+                assertArrayEquals(Arrays.copyOfRange(content, 1000, 1100), read);
+            }
+        }
+    }
+
+    @Test
+    void byteChannelSeeksWithinDeflatedEntry() throws IOException {
+        byte[] content = patternedBytes(3 * ZipEntryChannel.WINDOW_SIZE + 123);
+        Path zip = createZip("deflated.zip", entry("data.bin", content));
+
+        try (FileSystem fs = ReadOnlyZipFileSystem.open(zip);
+                SeekableByteChannel ch = Files.newByteChannel(fs.getPath("/data.bin"))) {
+            assertEquals(content.length, ch.size());
+            long[] positions = { content.length - 10, 5, ZipEntryChannel.WINDOW_SIZE - 3, 2 * ZipEntryChannel.WINDOW_SIZE,
+                    ZipEntryChannel.WINDOW_SIZE + 17 };
+            for (long pos : positions) {
+                ch.position(pos);
+                ByteBuffer buf = ByteBuffer.allocate(10);
+                while (buf.hasRemaining() && ch.read(buf) > 0) {
+                    // window boundaries may split a read
+                }
+                assertArrayEquals(Arrays.copyOfRange(content, (int) pos, (int) pos + 10), buf.array(), "at " + pos);
+            }
+        }
+    }
+
+    @Test
+    void byteChannelSequentialReadVerifiesCrc() throws IOException {
+        for (int method : new int[] { ZipEntry.STORED, ZipEntry.DEFLATED }) {
+            Path zip = createZipWithMethod("test-" + method + ".zip", method, entry("f.txt", "hello channel world"));
+            byte[] raw = Files.readAllBytes(zip);
+            int cdOff = findCentralDirectoryOffset(raw);
+            writeLeUint32(raw, cdOff + 16, readLeUint32(raw, cdOff + 16) ^ 0x1);
+            Path patched = tempDir.resolve("bad-crc-" + method + ".zip");
+            Files.write(patched, raw);
+
+            try (FileSystem fs = ReadOnlyZipFileSystem.open(patched);
+                    SeekableByteChannel ch = Files.newByteChannel(fs.getPath("/f.txt"))) {
+                IOException ex = assertThrows(IOException.class, () -> ch.read(ByteBuffer.allocate(64)));
+                assertTrue(ex.getMessage().contains("CRC-32 mismatch"), ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    void byteChannelOnEntryWithDataDescriptor() throws IOException {
+        byte[] content = "data descriptor entry".getBytes(StandardCharsets.UTF_8);
+        Path zip = tempDir.resolve("data-descriptor.zip");
+        Files.write(zip, buildZipWithDataDescriptor("dd.txt", content));
+
+        try (FileSystem fs = ReadOnlyZipFileSystem.open(zip);
+                SeekableByteChannel ch = Files.newByteChannel(fs.getPath("/dd.txt"))) {
+            ByteBuffer buf = ByteBuffer.allocate(content.length);
+            ch.read(buf);
+            assertArrayEquals(content, buf.array());
+        }
+    }
+
     // -- PathMatcher / glob --
 
     @Test
@@ -1316,6 +1795,48 @@ class ReadOnlyZipFileSystemTest {
         }
     }
 
+    @Test
+    void deferredDosTimeMatchesFullConversion() {
+        TimeZone original = TimeZone.getDefault();
+        try {
+            // Berlin and New York have one-hour DST shifts, Lord Howe Island a
+            // half-hour one, Kolkata a fixed half-hour offset
+            for (String zone : List.of("Europe/Berlin", "America/New_York", "Australia/Lord_Howe", "Asia/Kolkata",
+                    "UTC")) {
+                TimeZone.setDefault(TimeZone.getTimeZone(zone));
+                for (LocalDate date : List.of(LocalDate.of(2024, 3, 31), LocalDate.of(2024, 10, 27),
+                        LocalDate.of(2024, 3, 10), LocalDate.of(2024, 11, 3), LocalDate.of(2024, 4, 7),
+                        LocalDate.of(2024, 10, 6), LocalDate.of(1980, 1, 1), LocalDate.of(2107, 12, 31))) {
+                    int dosDate = (date.getYear() - 1980) << 9 | date.getMonthValue() << 5 | date.getDayOfMonth();
+                    for (int hour = 0; hour < 24; hour++) {
+                        for (int minute = 0; minute < 60; minute++) {
+                            for (int halfSecond : new int[] { 0, 7, 29 }) {
+                                int dosTime = hour << 11 | minute << 5 | halfSecond;
+                                assertEquals(ZipCentralDirectory.dosToEpochMillis(dosDate, dosTime),
+                                        DosTime.toEpochMillis(DosTime.raw(dosDate, dosTime)),
+                                        zone + " " + date + " " + hour + ":" + minute + ":" + halfSecond * 2);
+                            }
+                        }
+                    }
+                }
+                // invalid fields are converted like the full conversion does
+                for (int dosTime : new int[] { 24 << 11, 60 << 5, 30, 31, 0xFFFF }) {
+                    assertEquals(ZipCentralDirectory.dosToEpochMillis(0x5821, dosTime),
+                            DosTime.toEpochMillis(DosTime.raw(0x5821, dosTime)));
+                }
+                assertEquals(ZipCentralDirectory.dosToEpochMillis(0, 0), DosTime.toEpochMillis(DosTime.raw(0, 0)));
+                assertEquals(ZipCentralDirectory.dosToEpochMillis(0x01A0, 0),
+                        DosTime.toEpochMillis(DosTime.raw(0x01A0, 0)));
+            }
+        } finally {
+            TimeZone.setDefault(original);
+        }
+        // epoch milliseconds from extra fields pass through unchanged
+        for (long millis : new long[] { 0, -1, 1_718_447_445_000L, -11_644_473_600_000L, Long.MAX_VALUE }) {
+            assertEquals(millis, DosTime.toEpochMillis(millis));
+        }
+    }
+
     // -- Reading a directory entry --
 
     @Test
@@ -1509,30 +2030,1399 @@ class ReadOnlyZipFileSystemTest {
         }
     }
 
-    // -- Helper methods --
+    // -- Hash index --
 
-    // -- Entry caching --
+    @Test
+    void hashIndexLookupsMatchBinarySearch() throws IOException {
+        List<TestEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            entries.add(entry("pkg" + (i % 7) + "/sub/Class" + i + ".class", "c" + i));
+        }
+        entries.add(entry("éàü.txt", "accented"));
+        entries.add(entry("日本語/テスト.txt", "japanese"));
+        entries.add(entry("explicit/", ""));
+        Path zip = createZip("hash.zip", entries.toArray(new TestEntry[0]));
+
+        ReadOnlyZipOptions defaults = ReadOnlyZipOptions.defaults();
+        try (ReadOnlyZipFileSystem hashed = ReadOnlyZipFileSystem.open(zip, defaults.withHashIndex(true));
+                ReadOnlyZipFileSystem sorted = ReadOnlyZipFileSystem.open(zip, defaults.withHashIndex(false))) {
+            List<String> names = new ArrayList<>();
+            for (TestEntry e : entries) {
+                names.add(e.name());
+                names.add(e.name() + "x");
+                names.add(e.name().substring(0, e.name().length() - 1));
+            }
+            names.addAll(List.of("pkg0", "pkg0/sub", "explicit", "日本語", "missing", "pkg0/su"));
+            for (String name : names) {
+                assertEquals(sorted.entryExists(name), hashed.entryExists(name), name);
+                Path hashedPath = hashed.getPath(name);
+                Path sortedPath = sorted.getPath(name);
+                assertEquals(Files.isDirectory(sortedPath), Files.isDirectory(hashedPath), name);
+                if (Files.isRegularFile(sortedPath)) {
+                    assertEquals(Files.readString(sortedPath), Files.readString(hashedPath), name);
+                }
+            }
+            assertEquals(sorted.getDirectoryChildren("pkg3/sub"), hashed.getDirectoryChildren("pkg3/sub"));
+            assertEquals(List.of(), hashed.getDirectoryChildren("explicit"));
+        }
+    }
 
     @Test
-    void cacheReturnsIdenticalContent() throws IOException {
-        ReadOnlyZipFileSystem.CACHE_ENABLED = true;
-        Path zip = createZip("cache.zip",
+    void indexSnapshotFollowsHashIndexOption() throws IOException {
+        Path zip = createZip("hash-snap.zip",
                 entry("a.txt", "alpha"),
-                entry("b.txt", "bravo"));
+                entry("dir/b.txt", "bravo"));
+        ReadOnlyZipOptions options = ReadOnlyZipOptions.defaults()
+                .withIndexCacheDirectory(tempDir.resolve("index-cache"));
+
+        for (boolean write : new boolean[] { true, false }) {
+            Files.deleteIfExists(new EntryTableSnapshot(options.indexCacheDirectory(), zip, Files.size(zip)).file());
+            ReadOnlyZipFileSystem.open(zip, options.withHashIndex(write)).close();
+            for (boolean read : new boolean[] { true, false }) {
+                try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip, options.withHashIndex(read))) {
+                    assertEquals("alpha", Files.readString(fs.getPath("/a.txt")));
+                    assertEquals("bravo", Files.readString(fs.getPath("/dir/b.txt")));
+                    assertTrue(fs.entryExists("dir"));
+                    assertFalse(fs.entryExists("c.txt"));
+                }
+            }
+        }
+    }
 
-        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip)) {
-            byte[] first = fs.readEntryData("a.txt");
-            byte[] second = fs.readEntryData("a.txt");
-            assertArrayEquals(first, second);
+    // -- Allocation-free lookups --
 
-            byte[] b1 = fs.readEntryData("b.txt");
-            assertFalse(Arrays.equals(first, b1));
+    @Test
+    void latin1LookupsMatchUtf8Encoding() throws IOException {
+        Path zip = createZip("latin1.zip",
+                entry("café/naïve.txt", "n"),
+                entry("café/z.txt", "z"),
+                entry("cafe/plain.txt", "p"),
+                entry("ÿ/\u0080.txt", "edge"),
+                entry("日本語/テスト.txt", "japanese"),
+                entry("a.txt", "alpha"));
+
+        ReadOnlyZipOptions defaults = ReadOnlyZipOptions.defaults();
+        for (ReadOnlyZipOptions options : List.of(defaults.withHashIndex(true), defaults.withHashIndex(false),
+                defaults.withCompactNames(true))) {
+            try (ArchiveReader reader = new PooledArchiveReader(zip, 1)) {
+                CompactEntryTable table = ZipCentralDirectory.parse(reader, options).entryTable();
+                for (String name : List.of("café/naïve.txt", "café/z.txt", "cafe/plain.txt", "ÿ/\u0080.txt",
+                        "日本語/テスト.txt", "a.txt")) {
+                    int index = table.indexOf(name);
+                    assertTrue(index >= 0, name);
+                    assertEquals(name, table.nameAt(index));
+                    assertEquals(table.getEntry(name).crc32(), table.crc32(index));
+                    assertEquals(table.getEntry(name).uncompressedSize(), table.uncompressedSize(index));
+                    assertFalse(table.isDirectory(index));
+                }
+                for (String name : List.of("café", "caf", "café/naïve.tx", "café/naïve.txt2", "cafè/z.txt",
+                        "ÿ", "ÿ/\u0081.txt", "日本語", "")) {
+                    assertEquals(-1, table.indexOf(name), name);
+                }
+                assertTrue(table.exists("café"));
+                assertTrue(table.exists("ÿ"));
+                assertTrue(table.exists("日本語"));
+                assertFalse(table.exists("caf"));
+                assertFalse(table.exists("café/naïve"));
+                assertTrue(table.hasEntriesUnder(""));
+                assertFalse(table.hasEntriesUnder("a.txt"));
+            }
         }
     }
 
-    private Path createZip(String name, TestEntry... entries) throws IOException {
-        return createZipWithMethod(name, ZipEntry.DEFLATED, entries);
-    }
+    // -- Entry handles --
+
+    @Test
+    void entryHandles() throws IOException {
+        Path zip = createZipMixedMethods("handles.zip",
+                storedEntry("stored.txt", "stored content"),
+                deflatedEntry("dir/deflated.txt", "deflated content"),
+                storedEntry("explicit/", ""));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip)) {
+            int stored = fs.lookup("stored.txt");
+            int deflated = fs.lookup("/dir/deflated.txt");
+            assertTrue(stored >= 0);
+            assertTrue(deflated >= 0);
+            assertNotEquals(stored, deflated);
+            assertEquals(stored, fs.lookup("/stored.txt"));
+
+            assertEquals("stored content", new String(fs.read(stored), StandardCharsets.UTF_8));
+            try (InputStream in = fs.open(deflated)) {
+                assertEquals("deflated content", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            BasicFileAttributes attrs = Files.readAttributes(fs.getPath("/dir/deflated.txt"),
+                    BasicFileAttributes.class);
+            assertEquals(attrs.size(), fs.size(deflated));
+            assertEquals(attrs.lastModifiedTime().toMillis(), fs.lastModifiedTime(deflated));
+            CRC32 crc = new CRC32();
+            crc.update("deflated content".getBytes(StandardCharsets.UTF_8));
+            assertEquals(crc.getValue(), fs.crc(deflated));
+            assertFalse(fs.isDirectory(deflated));
+
+            int explicit = fs.lookup("explicit/");
+            assertTrue(fs.isDirectory(explicit));
+            assertThrows(FileSystemException.class, () -> fs.read(explicit));
+            assertThrows(FileSystemException.class, () -> fs.open(explicit));
+
+            assertEquals(-1, fs.lookup("missing.txt"));
+            assertEquals(-1, fs.lookup("dir"));
+            assertEquals(-1, fs.lookup("/"));
+            assertThrows(IllegalArgumentException.class, () -> fs.size(-1));
+            assertThrows(IllegalArgumentException.class, () -> fs.read(3));
+        }
+    }
+
+    @Test
+    void entryHandlesAfterClose() throws IOException {
+        Path zip = createZip("handles.zip", entry("a.txt", "alpha"));
+        ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip);
+        int handle = fs.lookup("a.txt");
+        fs.close();
+        assertThrows(ClosedFileSystemException.class, () -> fs.lookup("a.txt"));
+        assertThrows(ClosedFileSystemException.class, () -> fs.size(handle));
+        assertThrows(ClosedFileSystemException.class, () -> fs.read(handle));
+    }
+
+    // -- Parallel central directory build --
+
+    @Test
+    void parallelBuildMatchesSequentialBuild() throws IOException {
+        // enough entries to split both the parsing and the sort into several tasks
+        int count = 150_000;
+        Path zip = tempDir.resolve("parallel.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (int i = count - 1; i >= 0; i--) {
+                zos.putNextEntry(new ZipEntry("pkg" + (i % 31) + "/Class" + i + ".class"));
+                zos.write(i);
+                zos.closeEntry();
+            }
+        }
+        byte[] raw = Files.readAllBytes(zip);
+        int cdOffset = findCentralDirectoryOffset(raw);
+        // more than 65535 entries: the sizes are in the ZIP64 End of Central Directory record
+        int zip64Eocd = raw.length - 22 - 20 - 56;
+        assertEquals(0x06064b50, readLeInt32(raw, zip64Eocd));
+        int cdSize = (int) readLeUint32(raw, zip64Eocd + 40);
+        byte[] cd = Arrays.copyOfRange(raw, cdOffset, cdOffset + cdSize);
+
+        CompactEntryTable sequential = CompactEntryTable.buildFromCentralDirectory(cd, cdSize, count, cdOffset,
+                true, false, false);
+        CompactEntryTable parallel = CompactEntryTable.buildFromCentralDirectory(cd, cdSize, count, cdOffset,
+                true, false, true);
+        assertEquals(count, parallel.size());
+        ByteBuffer expected = ByteBuffer.allocate(sequential.serializedSize());
+        sequential.writeTo(expected);
+        ByteBuffer actual = ByteBuffer.allocate(parallel.serializedSize());
+        parallel.writeTo(actual);
+        assertArrayEquals(expected.array(), actual.array());
+        assertEquals("pkg0/Class0.class", parallel.nameAt(parallel.indexOf("pkg0/Class0.class")));
+
+        byte[] truncated = Arrays.copyOf(cd, cdSize - 1);
+        assertThrows(IOException.class,
+                () -> CompactEntryTable.buildFromCentralDirectory(truncated, cdSize - 1, count, cdOffset, true, false, true));
+    }
+
+    // -- Entry name sorting --
+
+    @Test
+    void entryNameSorterMatchesUnsignedByteOrder() {
+        List<String> names = new ArrayList<>();
+        String longPrefix = "a/".repeat(200);
+        for (int i = 0; i < 3000; i++) {
+            names.add("org/apache/commons/pkg" + (i % 13) + "/Class" + (i * 7919 % 3000) + ".class");
+            if (i % 10 == 0) {
+                names.add(longPrefix + "x" + (i % 17));
+                names.add("META-INF/" + i);
+            }
+        }
+        names.addAll(List.of("", "a", "a\0", "a\0\0", "ab", "é", "z", "zz", "org/apache", "org/apache/commons",
+                "META-INF/1", "a\0"));
+
+        List<String> shuffled = new ArrayList<>(names);
+        Collections.shuffle(shuffled, new Random(42));
+        List<String> nearlySorted = new ArrayList<>(names);
+        nearlySorted.sort((x, y) -> Arrays.compareUnsigned(x.getBytes(StandardCharsets.UTF_8),
+                y.getBytes(StandardCharsets.UTF_8)));
+        List<String> sorted = new ArrayList<>(nearlySorted);
+        Collections.swap(nearlySorted, 10, 20);
+        Collections.swap(nearlySorted, 1000, 3000);
+        List<String> reversed = new ArrayList<>(sorted);
+        Collections.reverse(reversed);
+
+        for (List<String> input : List.of(shuffled, nearlySorted, sorted, reversed)) {
+            for (boolean parallel : new boolean[] { false, true }) {
+                assertSortedByUnsignedBytes(input, parallel);
+            }
+        }
+    }
+
+    private static void assertSortedByUnsignedBytes(List<String> names, boolean parallel) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] starts = new int[names.size()];
+        int[] lens = new int[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            byte[] b = names.get(i).getBytes(StandardCharsets.UTF_8);
+            starts[i] = out.size();
+            lens[i] = b.length;
+            out.writeBytes(b);
+        }
+        byte[] bytes = out.toByteArray();
+        int[] order = new EntryNameSorter(bytes, starts, lens, names.size()).sort(parallel);
+
+        assertArrayEquals(IntStream.range(0, names.size()).toArray(),
+                Arrays.stream(order).sorted().toArray());
+        for (int i = 1; i < order.length; i++) {
+            byte[] prev = Arrays.copyOfRange(bytes, starts[order[i - 1]], starts[order[i - 1]] + lens[order[i - 1]]);
+            byte[] cur = Arrays.copyOfRange(bytes, starts[order[i]], starts[order[i]] + lens[order[i]]);
+            assertTrue(Arrays.compareUnsigned(prev, cur) <= 0,
+                    names.get(order[i - 1]) + " sorted after " + names.get(order[i]));
+        }
+    }
+
+    // -- Lazy metadata --
+
+    @Test
+    void lazyMetadataMatchesEagerMetadata() throws IOException {
+        Path mixed = tempDir.resolve("lazy-mixed.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(mixed))) {
+            for (int i = 0; i < 50; i++) {
+                ZipEntry ze = new ZipEntry("pkg" + (i % 3) + "/File" + i + ".txt");
+                ze.setLastModifiedTime(FileTime.from(Instant.parse("2024-06-15T10:30:45Z").plusSeconds(i)));
+                ze.setMethod(i % 2 == 0 ? ZipEntry.DEFLATED : ZipEntry.STORED);
+                byte[] data = patternedBytes(i * 37);
+                if (ze.getMethod() == ZipEntry.STORED) {
+                    CRC32 crc = new CRC32();
+                    crc.update(data);
+                    ze.setSize(data.length);
+                    ze.setCrc(crc.getValue());
+                }
+                zos.putNextEntry(ze);
+                zos.write(data);
+                zos.closeEntry();
+            }
+            zos.putNextEntry(new ZipEntry("pkg0/"));
+            zos.closeEntry();
+        }
+        Path zip64 = tempDir.resolve("lazy-zip64.zip");
+        Files.write(zip64, buildZip64Archive("hello.txt", "zip64 content".getBytes(StandardCharsets.UTF_8)));
+        Path ntfs = tempDir.resolve("lazy-ntfs.zip");
+        Files.write(ntfs, buildZipWithNtfsTimestamp("file.txt", "ntfs".getBytes(StandardCharsets.UTF_8),
+                (Instant.parse("2024-03-20T14:30:00Z").toEpochMilli() + 11_644_473_600_000L) * 10_000L));
+
+        for (Path zip : List.of(mixed, zip64, ntfs)) {
+            try (ArchiveReader reader = new PooledArchiveReader(zip, 1)) {
+                ReadOnlyZipOptions defaults = ReadOnlyZipOptions.defaults().withHashIndex(true);
+                CompactEntryTable eager = ZipCentralDirectory.parse(reader, defaults).entryTable();
+                CompactEntryTable lazy = ZipCentralDirectory.parse(reader, defaults.withLazyMetadata(true)).entryTable();
+                assertFalse(eager.hasLazyMetadata());
+                assertTrue(lazy.hasLazyMetadata());
+                assertTrue(eager.decoded() == eager);
+                assertFalse(lazy.decoded().hasLazyMetadata());
+                // the serialized form holds every metadata field of every entry
+                ByteBuffer expected = ByteBuffer.allocate(eager.serializedSize());
+                eager.writeTo(expected);
+                ByteBuffer actual = ByteBuffer.allocate(lazy.serializedSize());
+                lazy.writeTo(actual);
+                assertArrayEquals(expected.array(), actual.array(), zip.toString());
+                for (int i = 0; i < lazy.size(); i++) {
+                    assertEquals(eager.entryAt(i), lazy.entryAt(i));
+                }
+            }
+
+            ReadOnlyZipOptions lazyOptions = ReadOnlyZipOptions.defaults().withLazyMetadata(true);
+            try (ReadOnlyZipFileSystem eagerFs = ReadOnlyZipFileSystem.open(zip);
+                    ReadOnlyZipFileSystem lazyFs = ReadOnlyZipFileSystem.open(zip, lazyOptions)) {
+                try (Stream<Path> walk = Files.walk(eagerFs.getPath("/"))) {
+                    for (Path path : walk.toList()) {
+                        Path lazyPath = lazyFs.getPath(path.toString());
+                        BasicFileAttributes expected = Files.readAttributes(path, BasicFileAttributes.class);
+                        BasicFileAttributes actual = Files.readAttributes(lazyPath, BasicFileAttributes.class);
+                        assertEquals(expected.size(), actual.size(), path.toString());
+                        assertEquals(expected.lastModifiedTime(), actual.lastModifiedTime(), path.toString());
+                        assertEquals(expected.isDirectory(), actual.isDirectory(), path.toString());
+                        if (expected.isRegularFile()) {
+                            assertArrayEquals(Files.readAllBytes(path), Files.readAllBytes(lazyPath), path.toString());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void lazyMetadataAppliesToNestedArchivesAndSnapshots() throws IOException {
+        byte[] inner = Files.readAllBytes(createZip("lazy-inner.jar", entry("a.txt", "alpha")));
+        Path outer = createZipMixedMethods("lazy-outer.zip", new MethodEntry("inner.jar", inner, ZipEntry.STORED));
+        ReadOnlyZipOptions options = ReadOnlyZipOptions.defaults()
+                .withLazyMetadata(true)
+                .withIndexCacheDirectory(tempDir.resolve("lazy-index-cache"));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(outer, options)) {
+            assertTrue(fs.getEntryTable().hasLazyMetadata());
+            try (ReadOnlyZipFileSystem nested = fs.openNested(fs.getPath("/inner.jar"))) {
+                assertTrue(nested.getEntryTable().hasLazyMetadata());
+                assertEquals("alpha", Files.readString(nested.getPath("/a.txt")));
+            }
+        }
+        // the snapshot written above is fully decoded
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(outer, options)) {
+            assertFalse(fs.getEntryTable().hasLazyMetadata());
+            assertEquals(inner.length, Files.size(fs.getPath("/inner.jar")));
+        }
+    }
+
+    // -- Packed metadata columns --
+
+    @Test
+    void packedLongColumnStoresValuesThatDoNotFitInSideTable() throws IOException {
+        long[][] columns = {
+                {},
+                { 0, 1, 1234, 0xFFFFFFFEL, 0xFFFFFFFFL, 0x1_0000_0000L, 5L << 32, 42 },
+                { DosTime.raw(0x5821, 0x6000), DosTime.raw(0xFFFF, 0xFFFF), 1_718_447_445_000L, -1,
+                        Long.MAX_VALUE, Long.MIN_VALUE },
+                { 1_718_447_445_000L, 1_718_447_446_000L, 1_718_447_445_000L - 0xFFFFFFFFL },
+        };
+        for (long[] values : columns) {
+            PackedLongColumn column = PackedLongColumn.of(values);
+            ByteBuffer buf = ByteBuffer.allocate(column.serializedSize());
+            column.writeTo(buf);
+            assertEquals(buf.capacity(), buf.position());
+            PackedLongColumn restored = PackedLongColumn.readFrom(buf.flip(), values.length);
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(values[i], column.get(i), Arrays.toString(values) + "[" + i + "]");
+                assertEquals(values[i], restored.get(i), Arrays.toString(values) + "[" + i + "]");
+            }
+        }
+
+        // an overflow marker without a value in the side table is rejected
+        PackedLongColumn column = PackedLongColumn.of(new long[] { 1, 2, 3 });
+        ByteBuffer buf = ByteBuffer.allocate(column.serializedSize());
+        column.writeTo(buf);
+        buf.putInt(8 + 4, -1);
+        assertThrows(IOException.class, () -> PackedLongColumn.readFrom(buf.flip(), 3));
+    }
+
+    // -- Front-coded names --
+
+    @Test
+    void compactNamesMatchPlainNames() throws IOException {
+        String longDir = "deep/" + "x".repeat(300) + "/";
+        List<TestEntry> entries = new ArrayList<>();
+        entries.add(entry("a", "a"));
+        entries.add(entry("a\u0000", "nul"));
+        entries.add(entry("a.txt", "a.txt"));
+        entries.add(entry("café/naïve.txt", "café"));
+        entries.add(entry("日本語/テスト.txt", "japanese"));
+        entries.add(entry("empty/", ""));
+        entries.add(entry("org/acme/", ""));
+        for (int i = 0; i < 100; i++) {
+            entries.add(entry("org/acme/pkg" + i % 7 + "/Class" + i + ".class", "class " + i));
+            entries.add(entry(longDir + "file" + i, "long " + i));
+        }
+        Path zip = createZip("compact-names.zip", entries.toArray(TestEntry[]::new));
+
+        try (ArchiveReader reader = new PooledArchiveReader(zip, 1)) {
+            ReadOnlyZipOptions defaults = ReadOnlyZipOptions.defaults();
+            CompactEntryTable plain = ZipCentralDirectory.parse(reader, defaults.withHashIndex(false)).entryTable();
+            CompactEntryTable compact = ZipCentralDirectory.parse(reader, defaults.withCompactNames(true))
+                    .entryTable();
+            assertTrue(compact.hasCompactNames());
+            assertFalse(compact.hasHashIndex());
+            assertTrue(compact.nameStorageBytes() < plain.nameStorageBytes() / 4);
+
+            assertEquals(plain.size(), compact.size());
+            List<String> queries = new ArrayList<>(List.of("", "b", "a\u0000\u0000", "org/acme/pkg",
+                    "org/acme/pkg7", "deep/" + "x".repeat(299), longDir + "file", "zzz", "\uFFFF"));
+            for (int i = 0; i < plain.size(); i++) {
+                String name = plain.nameAt(i);
+                assertEquals(name, compact.nameAt(i));
+                assertEquals(plain.entryAt(i), compact.entryAt(i));
+                queries.add(name);
+                queries.add(name + "0");
+                for (int slash = name.indexOf('/'); slash >= 0; slash = name.indexOf('/', slash + 1)) {
+                    queries.add(name.substring(0, slash));
+                }
+            }
+            for (String query : queries) {
+                assertEquals(plain.indexOf(query), compact.indexOf(query), query);
+                assertEquals(plain.exists(query), compact.exists(query), query);
+                assertEquals(plain.hasEntriesUnder(query), compact.hasEntriesUnder(query), query);
+                assertEquals(plain.getDirectoryChildren(query), compact.getDirectoryChildren(query), query);
+            }
+
+            // the serialized form is the plain one
+            ByteBuffer expected = ByteBuffer.allocate(plain.serializedSize());
+            plain.writeTo(expected);
+            ByteBuffer actual = ByteBuffer.allocate(compact.serializedSize());
+            compact.writeTo(actual);
+            assertArrayEquals(expected.array(), actual.array());
+        }
+    }
+
+    @Test
+    void compactNamesApplyToNestedArchivesAndSnapshots() throws IOException {
+        byte[] inner = Files.readAllBytes(createZip("compact-inner.jar",
+                entry("org/acme/A.class", "a"), entry("org/acme/B.class", "b")));
+        Path outer = createZipMixedMethods("compact-outer.zip",
+                new MethodEntry("inner.jar", inner, ZipEntry.STORED),
+                deflatedEntry("org/acme/C.class", "c"));
+        ReadOnlyZipOptions options = ReadOnlyZipOptions.defaults()
+                .withCompactNames(true)
+                .withIndexCacheDirectory(tempDir.resolve("compact-index-cache"));
+
+        for (int open = 0; open < 2; open++) {
+            try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(outer, options)) {
+                assertTrue(fs.getEntryTable().hasCompactNames());
+                assertEquals("c", Files.readString(fs.getPath("/org/acme/C.class")));
+                try (ReadOnlyZipFileSystem nested = fs.openNested(fs.getPath("/inner.jar"))) {
+                    assertTrue(nested.getEntryTable().hasCompactNames());
+                    try (Stream<Path> list = Files.list(nested.getPath("/org/acme"))) {
+                        assertEquals(List.of("/org/acme/A.class", "/org/acme/B.class"),
+                                list.map(Path::toString).sorted().toList());
+                    }
+                }
+            }
+        }
+        // a snapshot written with compact names serves plain tables too
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(outer, options.withCompactNames(false))) {
+            assertFalse(fs.getEntryTable().hasCompactNames());
+            assertTrue(fs.getEntryTable().hasHashIndex());
+            assertEquals("c", Files.readString(fs.getPath("/org/acme/C.class")));
+        }
+    }
+
+    // -- Directory index --
+
+    @Test
+    void directoryIndexListingsMatchScan() throws IOException {
+        List<TestEntry> entries = new ArrayList<>();
+        entries.add(entry("README", "readme"));
+        entries.add(entry("META-INF/", ""));
+        entries.add(entry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n"));
+        entries.add(entry("META-INF/versions/17/org/acme/A.class", "a17"));
+        entries.add(entry("empty/", ""));
+        entries.add(entry("file", "a file that is also a directory"));
+        entries.add(entry("file/child", "child"));
+        entries.add(entry("café/naïve.txt", "café"));
+        for (int i = 0; i < 200; i++) {
+            entries.add(entry("org/acme/pkg" + i % 9 + "/sub" + i % 4 + "/Class" + i + ".class", "class " + i));
+        }
+        Path zip = createZip("directory-index.zip", entries.toArray(TestEntry[]::new));
+
+        ReadOnlyZipOptions defaults = ReadOnlyZipOptions.defaults();
+        try (ArchiveReader reader = new PooledArchiveReader(zip, 1)) {
+            for (ReadOnlyZipOptions options : List.of(defaults, defaults.withCompactNames(true))) {
+                CompactEntryTable scanned = ZipCentralDirectory.parse(reader, options).entryTable();
+                CompactEntryTable indexed = ZipCentralDirectory.parse(reader, options.withDirectoryIndex(true))
+                        .entryTable();
+                assertFalse(scanned.hasDirectoryIndex());
+                assertTrue(indexed.hasDirectoryIndex());
+                List<String> queries = new ArrayList<>(List.of("", "org/acme/pkg", "org/acme/pkg1/sub", "missing",
+                        "a/", "META-INF/MANIFEST.MF/x"));
+                for (int i = 0; i < scanned.size(); i++) {
+                    String name = scanned.nameAt(i);
+                    queries.add(name);
+                    for (int slash = name.indexOf('/'); slash >= 0; slash = name.indexOf('/', slash + 1)) {
+                        queries.add(name.substring(0, slash));
+                    }
+                }
+                for (String query : queries) {
+                    assertEquals(scanned.getDirectoryChildren(query), indexed.getDirectoryChildren(query), query);
+                }
+            }
+        }
+
+        try (ReadOnlyZipFileSystem scanned = ReadOnlyZipFileSystem.open(zip);
+                ReadOnlyZipFileSystem indexed = ReadOnlyZipFileSystem.open(zip, defaults.withDirectoryIndex(true));
+                Stream<Path> expected = Files.walk(scanned.getPath("/"));
+                Stream<Path> actual = Files.walk(indexed.getPath("/"))) {
+            assertEquals(expected.map(Path::toString).toList(), actual.map(Path::toString).toList());
+        }
+    }
+
+    @Test
+    void directoryIndexListsDirectoryOnceWhenSiblingSortsBetween() throws IOException {
+        // "org/acme" sorts before "org/acme.properties", which sorts before "org/acme/A.class"
+        Path zip = createZip("directory-index-order.zip",
+                entry("org/acme/", ""),
+                entry("org/acme.properties", "p"),
+                entry("org/acme/A.class", "a"));
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip,
+                ReadOnlyZipOptions.defaults().withDirectoryIndex(true))) {
+            assertEquals(List.of("acme", "acme.properties"), fs.getEntryTable().getDirectoryChildren("org"));
+            assertEquals(List.of("A.class"), fs.getEntryTable().getDirectoryChildren("org/acme"));
+        }
+    }
+
+    @Test
+    void directoryIndexAppliesToNestedArchivesAndSnapshots() throws IOException {
+        byte[] inner = Files.readAllBytes(createZip("index-inner.jar", entry("org/acme/A.class", "a")));
+        Path outer = createZipMixedMethods("index-outer.zip",
+                new MethodEntry("inner.jar", inner, ZipEntry.STORED));
+        ReadOnlyZipOptions options = ReadOnlyZipOptions.defaults()
+                .withDirectoryIndex(true)
+                .withIndexCacheDirectory(tempDir.resolve("directory-index-cache"));
+
+        // the second open loads the snapshot, which does not hold the index
+        for (int open = 0; open < 2; open++) {
+            try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(outer, options)) {
+                assertTrue(fs.getEntryTable().hasDirectoryIndex());
+                try (ReadOnlyZipFileSystem nested = fs.openNested(fs.getPath("/inner.jar"))) {
+                    assertTrue(nested.getEntryTable().hasDirectoryIndex());
+                    assertEquals(List.of("A.class"), nested.getEntryTable().getDirectoryChildren("org/acme"));
+                }
+            }
+        }
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(outer, options.withDirectoryIndex(false))) {
+            assertFalse(fs.getEntryTable().hasDirectoryIndex());
+        }
+    }
+
+    // -- Nested archives --
+
+    @Test
+    void openNestedStoredArchiveReadsInPlace() throws IOException {
+        byte[] inner = Files.readAllBytes(createZip("inner.jar",
+                entry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n"),
+                entry("org/acme/Foo.class", "foo bytes")));
+        Path outer = createZipMixedMethods("outer.jar",
+                storedEntry("BOOT-INF/classes/app.properties", "a=b"),
+                new MethodEntry("BOOT-INF/lib/inner.jar", inner, ZipEntry.STORED));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(outer)) {
+            ReadOnlyZipFileSystem nested = fs.openNested(fs.getPath("/BOOT-INF/lib/inner.jar"));
+            try (nested) {
+                assertNull(nested.getSpillFile());
+                assertEquals("foo bytes", Files.readString(nested.getPath("/org/acme/Foo.class")));
+                assertTrue(Files.isDirectory(nested.getPath("/META-INF")));
+                assertTrue(nested.getPath("/org/acme/Foo.class").toUri().toString()
+                        .endsWith("!/BOOT-INF/lib/inner.jar!/org/acme/Foo.class"));
+                fs.close();
+                assertThrows(ClosedFileSystemException.class,
+                        () -> Files.readString(nested.getPath("/org/acme/Foo.class")));
+            }
+        }
+    }
+
+    @Test
+    void openNestedDeflatedArchiveSpillsToTemporaryFile() throws IOException {
+        byte[] inner = Files.readAllBytes(createZip("inner.jar", entry("org/acme/Foo.class", "foo bytes")));
+        Path outer = createZipMixedMethods("outer.jar",
+                new MethodEntry("lib/inner.jar", inner, ZipEntry.DEFLATED));
+
+        ReadOnlyZipFileSystem nested;
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(outer)) {
+            nested = fs.openNested(fs.getPath("lib/inner.jar"));
+        }
+        Path spill = nested.getSpillFile();
+        assertNotNull(spill);
+        try (nested) {
+            assertTrue(Files.exists(spill));
+            assertEquals("foo bytes", Files.readString(nested.getPath("/org/acme/Foo.class")));
+        }
+        assertFalse(Files.exists(spill));
+    }
+
+    @Test
+    void openNestedStoredArchivesCloseWithSharedOuterFileSystem() throws IOException {
+        byte[] inner = Files.readAllBytes(createZip("inner.jar", entry("org/acme/Foo.class", "foo bytes")));
+        Path outer = createZipMixedMethods("outer.jar",
+                storedEntry("app.properties", "a=b"),
+                new MethodEntry("lib/inner.jar", inner, ZipEntry.STORED));
+
+        // keeps the shared reader open after the outer filesystem is closed
+        try (ReadOnlyZipFileSystem other = ReadOnlyZipFileSystem.openShared(outer)) {
+            ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.openShared(outer);
+            ReadOnlyZipFileSystem nested = fs.openNested(fs.getPath("/lib/inner.jar"));
+            fs.openNested(fs.getPath("/lib/inner.jar")).close();
+            assertEquals("foo bytes", Files.readString(nested.getPath("/org/acme/Foo.class")));
+
+            fs.close();
+            assertFalse(nested.isOpen());
+            assertThrows(ClosedFileSystemException.class,
+                    () -> Files.readString(nested.getPath("/org/acme/Foo.class")));
+            assertThrows(ClosedFileSystemException.class, () -> fs.openNested(fs.getPath("/lib/inner.jar")));
+            assertEquals("a=b", Files.readString(other.getPath("/app.properties")));
+            try (ReadOnlyZipFileSystem stillOpen = other.openNested(other.getPath("/lib/inner.jar"))) {
+                assertEquals("foo bytes", Files.readString(stillOpen.getPath("/org/acme/Foo.class")));
+            }
+        }
+    }
+
+    @Test
+    void unclosedNestedArchiveSpillFileIsDeletedWhenCollected() throws Exception {
+        byte[] inner = Files.readAllBytes(createZip("inner.jar", entry("org/acme/Foo.class", "foo bytes")));
+        Path outer = createZipMixedMethods("outer.jar",
+                new MethodEntry("lib/inner.jar", inner, ZipEntry.DEFLATED));
+
+        Path spill;
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(outer)) {
+            spill = spillFileOfUnclosedNested(fs, "lib/inner.jar");
+        }
+        assertTrue(Files.exists(spill));
+        for (int i = 0; i < 100 && Files.exists(spill); i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertFalse(Files.exists(spill));
+    }
+
+    private static Path spillFileOfUnclosedNested(ReadOnlyZipFileSystem fs, String entry) throws IOException {
+        return fs.openNested(fs.getPath(entry)).getSpillFile();
+    }
+
+    @Test
+    void openNestedRejectsInvalidEntries() throws IOException {
+        Path outer = createZipMixedMethods("outer.jar",
+                storedEntry("lib/not-a-jar.jar", "plain text"),
+                storedEntry("lib/other.txt", "x"));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(outer);
+                ReadOnlyZipFileSystem other = ReadOnlyZipFileSystem.open(outer)) {
+            assertThrows(IOException.class, () -> fs.openNested(fs.getPath("/lib/not-a-jar.jar")));
+            assertThrows(NoSuchFileException.class, () -> fs.openNested(fs.getPath("/lib/missing.jar")));
+            assertThrows(FileSystemException.class, () -> fs.openNested(fs.getPath("/lib")));
+            assertThrows(ProviderMismatchException.class, () -> fs.openNested(other.getPath("/lib/other.txt")));
+        }
+    }
+
+    // -- Index snapshots --
+
+    @Test
+    void indexSnapshotIsWrittenAndReused() throws IOException {
+        Path zip = createZip("snap.zip",
+                entry("a.txt", "alpha"),
+                entry("dir/b.txt", "bravo"));
+        Path cacheDir = tempDir.resolve("index-cache");
+        ReadOnlyZipOptions options = ReadOnlyZipOptions.defaults().withIndexCacheDirectory(cacheDir);
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip, options)) {
+            assertEquals("alpha", Files.readString(fs.getPath("/a.txt")));
+        }
+        Path snapshot = new EntryTableSnapshot(cacheDir, zip, Files.size(zip)).file();
+        assertTrue(Files.exists(snapshot));
+
+        // break the central directory without changing size, mtime or EOCD:
+        // only a reused snapshot can still open the archive
+        FileTime mtime = Files.getLastModifiedTime(zip);
+        byte[] raw = Files.readAllBytes(zip);
+        raw[findCentralDirectoryOffset(raw)] = 0;
+        Files.write(zip, raw);
+        Files.setLastModifiedTime(zip, mtime);
+
+        assertThrows(IOException.class, () -> ReadOnlyZipFileSystem.open(zip));
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip, options)) {
+            assertEquals("alpha", Files.readString(fs.getPath("/a.txt")));
+            assertEquals("bravo", Files.readString(fs.getPath("/dir/b.txt")));
+            assertEquals(List.of("b.txt"), fs.getDirectoryChildren("dir"));
+        }
+    }
+
+    @Test
+    void staleIndexSnapshotIsIgnored() throws IOException {
+        Path zip = createZip("snap.zip", entry("a.txt", "alpha"));
+        Path cacheDir = tempDir.resolve("index-cache");
+        ReadOnlyZipOptions options = ReadOnlyZipOptions.defaults().withIndexCacheDirectory(cacheDir);
+        ReadOnlyZipFileSystem.open(zip, options).close();
+
+        FileTime mtime = Files.getLastModifiedTime(zip);
+        createZip("snap.zip", entry("a.txt", "alpha"), entry("b.txt", "bravo"));
+        Files.setLastModifiedTime(zip, mtime);
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip, options)) {
+            assertEquals("bravo", Files.readString(fs.getPath("/b.txt")));
+        }
+    }
+
+    @Test
+    void damagedIndexSnapshotFallsBackToParsing() throws IOException {
+        Path zip = createZip("snap.zip", entry("a.txt", "alpha"));
+        Path cacheDir = tempDir.resolve("index-cache");
+        ReadOnlyZipOptions options = ReadOnlyZipOptions.defaults().withIndexCacheDirectory(cacheDir);
+        ReadOnlyZipFileSystem.open(zip, options).close();
+
+        Path snapshot = new EntryTableSnapshot(cacheDir, zip, Files.size(zip)).file();
+        byte[] data = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(data, data.length - 9));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip, options)) {
+            assertEquals("alpha", Files.readString(fs.getPath("/a.txt")));
+        }
+        assertArrayEquals(data, Files.readAllBytes(snapshot));
+    }
+
+    // -- Shared archives --
+
+    @Test
+    void sharedFileSystemsShareOneArchive() throws IOException {
+        Path zip = createZip("shared.zip", entry("a.txt", "alpha"));
+        Files.createDirectories(tempDir.resolve("sub"));
+        int before = SharedArchive.registered();
+
+        ReadOnlyZipFileSystem first = ReadOnlyZipFileSystem.openShared(zip);
+        ReadOnlyZipFileSystem second = (ReadOnlyZipFileSystem) ZipUtils.openReadOnlyShared(
+                tempDir.resolve("sub/../shared.zip"));
+        SharedArchive shared = first.getSharedArchive();
+        assertNotNull(shared);
+        assertTrue(first != second);
+        assertTrue(shared == second.getSharedArchive());
+        assertEquals(2, shared.references());
+        assertEquals(before + 1, SharedArchive.registered());
+
+        first.close();
+        first.close();
+        assertFalse(first.isOpen());
+        assertThrows(ClosedFileSystemException.class, () -> Files.readString(first.getPath("/a.txt")));
+        assertEquals(1, shared.references());
+        assertEquals("alpha", Files.readString(second.getPath("/a.txt")));
+
+        second.close();
+        assertEquals(0, shared.references());
+        assertEquals(before, SharedArchive.registered());
+        assertThrows(ClosedFileSystemException.class, () -> shared.reader().readFully(0, new byte[4]));
+    }
+
+    @Test
+    void replacedArchiveIsNotShared() throws IOException {
+        Path zip = createZip("shared.zip", entry("a.txt", "alpha"));
+        try (ReadOnlyZipFileSystem first = ReadOnlyZipFileSystem.openShared(zip)) {
+            Path replacement = createZip("replacement.zip", entry("a.txt", "replaced"));
+            Files.move(replacement, zip, StandardCopyOption.REPLACE_EXISTING);
+            try (ReadOnlyZipFileSystem second = ReadOnlyZipFileSystem.openShared(zip)) {
+                assertTrue(first.getSharedArchive() != second.getSharedArchive());
+                assertEquals("alpha", Files.readString(first.getPath("/a.txt")));
+                assertEquals("replaced", Files.readString(second.getPath("/a.txt")));
+            }
+        }
+    }
+
+    @Test
+    void registeringDuplicateArchiveIgnoresCandidateCloseFailure() throws IOException {
+        Path zip = createZip("shared.zip", entry("a.txt", "alpha"));
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.openShared(zip)) {
+            SharedArchive existing = fs.getSharedArchive();
+            ArchiveReader failing = new ArchiveReader() {
+                @Override
+                public long length() {
+                    return 0;
+                }
+
+                @Override
+                public void readFully(long position, byte[] buf, int off, int len) throws IOException {
+                    throw new IOException("not readable");
+                }
+
+                @Override
+                public void close() throws IOException {
+                    throw new IOException("close failed");
+                }
+            };
+            SharedArchive registered = SharedArchive.register(new SharedArchive(SharedArchive.Key.of(zip), failing,
+                    existing.centralDirectory(), null));
+            assertTrue(registered == existing);
+            assertEquals(2, existing.references());
+            registered.release();
+            assertEquals(1, existing.references());
+        }
+    }
+
+    @Test
+    void concurrentSharedOpensConverge() throws Exception {
+        Path zip = createZip("shared.zip", entry("a.txt", "alpha"));
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        List<ReadOnlyZipFileSystem> opened = Collections.synchronizedList(new ArrayList<>());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    opened.add(ReadOnlyZipFileSystem.openShared(zip));
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            SharedArchive shared = opened.get(0).getSharedArchive();
+            for (ReadOnlyZipFileSystem fs : opened) {
+                assertTrue(shared == fs.getSharedArchive());
+            }
+            assertEquals(threadCount, shared.references());
+        } finally {
+            executor.shutdown();
+            for (ReadOnlyZipFileSystem fs : opened) {
+                fs.close();
+            }
+        }
+    }
+
+    // -- Helper methods --
+
+    // -- Entry caching --
+
+    @Test
+    void cacheReturnsIdenticalContent() throws IOException {
+        ReadOnlyZipFileSystem.CACHE_ENABLED = true;
+        Path zip = createZip("cache.zip",
+                entry("a.txt", "alpha"),
+                entry("b.txt", "bravo"));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip)) {
+            byte[] first = fs.readEntryData("a.txt");
+            byte[] second = fs.readEntryData("a.txt");
+            assertArrayEquals(first, second);
+
+            byte[] b1 = fs.readEntryData("b.txt");
+            assertFalse(Arrays.equals(first, b1));
+        }
+    }
+
+    @Test
+    void cacheStaysWithinBudgetAndCountsHitsAndMisses() throws IOException {
+        TestEntry[] entries = new TestEntry[20];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = entry("data" + i + ".bin", patternedBytes(1000 + i));
+        }
+        Path zip = createZip("cache-budget.zip", entries);
+        long budget = 5 * (1020 + EntryCache.ENTRY_OVERHEAD);
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip,
+                ReadOnlyZipOptions.defaults().withEntryCacheSize(budget))) {
+            for (TestEntry entry : entries) {
+                assertArrayEquals(entry.data(), fs.readEntryData(entry.name()));
+                assertTrue(fs.cacheStats().bytes() <= budget);
+            }
+            ReadOnlyZipCacheStats stats = fs.cacheStats();
+            assertEquals(0, stats.hits());
+            assertEquals(entries.length, stats.misses());
+            assertEquals(budget, stats.maxBytes());
+            assertEquals(entries.length - stats.entries(), stats.evictions());
+
+            // the most recently read entry is still cached
+            assertArrayEquals(entries[19].data(), fs.readEntryData(entries[19].name()));
+            assertEquals(1, fs.cacheStats().hits());
+            assertEquals(0.5, new ReadOnlyZipCacheStats(1, 0, 1, 0, 0, 0, 0).hitRate());
+
+            fs.clearCache();
+            assertEquals(0, fs.cacheStats().entries());
+            assertEquals(0, fs.cacheStats().bytes());
+            assertArrayEquals(entries[19].data(), fs.readEntryData(entries[19].name()));
+            assertEquals(1, fs.cacheStats().hits());
+        }
+    }
+
+    @Test
+    void cacheIsFilledByStreams() throws IOException {
+        byte[] small = patternedBytes(1000);
+        byte[] large = patternedBytes(100_000);
+        Path zip = createZip("cache-streams.zip",
+                entry("small.bin", small),
+                entry("large.bin", large));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip,
+                ReadOnlyZipOptions.defaults().withEntryCacheSize(64 * 1024))) {
+            for (int i = 0; i < 2; i++) {
+                try (InputStream in = Files.newInputStream(fs.getPath("/small.bin"))) {
+                    assertArrayEquals(small, in.readAllBytes());
+                }
+            }
+            ReadOnlyZipCacheStats stats = fs.cacheStats();
+            assertEquals(1, stats.hits());
+            assertEquals(1, stats.misses());
+            assertEquals(1, stats.entries());
+
+            // too large to be cached, so it is streamed without reading it in full
+            try (InputStream in = Files.newInputStream(fs.getPath("/large.bin"))) {
+                assertArrayEquals(large, in.readAllBytes());
+            }
+            assertEquals(1, fs.cacheStats().entries());
+            assertEquals(1, fs.cacheStats().misses());
+        }
+    }
+
+    @Test
+    void cacheIsFilledByChannels() throws IOException {
+        byte[] small = patternedBytes(1000);
+        Path zip = createZip("cache-channels.zip", entry("small.bin", small));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip,
+                ReadOnlyZipOptions.defaults().withEntryCacheSize(64 * 1024))) {
+            assertArrayEquals(small, Files.readAllBytes(fs.getPath("/small.bin")));
+            assertArrayEquals(small, Files.readAllBytes(fs.getPath("/small.bin")));
+            try (SeekableByteChannel ch = Files.newByteChannel(fs.getPath("/small.bin"))) {
+                assertEquals(small.length, ch.size());
+            }
+            ReadOnlyZipCacheStats stats = fs.cacheStats();
+            assertEquals(2, stats.hits());
+            assertEquals(1, stats.misses());
+            assertEquals(1, stats.entries());
+        }
+    }
+
+    @Test
+    void cacheKeepsEntriesReadAgainDuringScan() {
+        EntryCache cache = new EntryCache(10 * (100 + EntryCache.ENTRY_OVERHEAD));
+        EntryCache.Owner owner = cache.newOwner(cache.newArchive());
+        byte[] hot = new byte[100];
+        cache.put(owner, 0, false, hot);
+        assertTrue(cache.get(owner, 0, false) == hot);
+        for (int i = 1; i <= 100; i++) {
+            assertNull(cache.get(owner, 1000 * i, false));
+            cache.put(owner, 1000 * i, false, new byte[100]);
+        }
+        // promoted to the protected segment, so the scan did not evict it
+        assertTrue(cache.get(owner, 0, false) == hot);
+        // too large for the probationary segment
+        cache.put(owner, 1, false, new byte[1000]);
+        assertNull(cache.get(owner, 1, false));
+    }
+
+    @Test
+    void cacheAdmitsEntriesByBudgetOnly() {
+        // the default shared budget is split into 4 segments of 16 MB whatever the number of processors
+        EntryCache cache = new EntryCache(64 << 20);
+        EntryCache.Owner owner = cache.newOwner(cache.newArchive());
+        assertTrue(cache.admits(3 << 20));
+        assertFalse(cache.admits(4 << 20));
+        byte[] index = new byte[3 << 20];
+        cache.put(owner, 0, false, index);
+        assertTrue(cache.get(owner, 0, false) == index);
+
+        // a single segment admits a fifth of the budget
+        EntryCache small = new EntryCache(16 << 20);
+        assertTrue(small.admits(3 << 20));
+        assertFalse(small.admits(4 << 20));
+        small.setMaxBytes(24 << 20);
+        assertTrue(small.admits(4 << 20));
+    }
+
+    @Test
+    void cacheSegmentsKeepEntriesOfArchivesApart() throws Exception {
+        EntryCache cache = new EntryCache(4 * EntryCache.MIN_SEGMENT_BYTES, false, 4);
+        EntryCache.Owner first = cache.newOwner(cache.newArchive());
+        EntryCache.Owner second = cache.newOwner(cache.newArchive());
+        int threadCount = 8;
+        int offsets = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        AtomicInteger errors = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                final int idx = t;
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    for (int i = 0; i < offsets; i++) {
+                        EntryCache.Owner owner = (i + idx) % 2 == 0 ? first : second;
+                        byte[] expected = ((owner == first ? "first" : "second") + i).getBytes(StandardCharsets.UTF_8);
+                        byte[] cached = cache.get(owner, i, false);
+                        if (cached == null) {
+                            cache.put(owner, i, false, expected);
+                        } else if (!Arrays.equals(expected, cached)) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, errors.get());
+
+        ReadOnlyZipCacheStats total = cache.stats();
+        assertEquals(2 * offsets, total.entries());
+        assertEquals(threadCount * offsets, total.hits() + total.misses());
+        assertEquals(total.hits(), cache.stats(first).hits() + cache.stats(second).hits());
+        assertEquals(offsets, cache.stats(first).entries());
+
+        // clearing an archive only removes its own entries and evicts nothing
+        cache.clear(first.archive());
+        assertEquals(0, cache.stats(first).entries());
+        assertEquals(0, cache.stats(first).bytes());
+        assertEquals(offsets, cache.stats(second).entries());
+        assertEquals(offsets, cache.stats().entries());
+        assertEquals(0, cache.stats().evictions());
+        cache.put(first, 0, false, new byte[10]);
+        assertTrue(cache.contains(first, 0, false));
+
+        // a closed archive is not cached any more
+        cache.close(second.archive());
+        cache.put(second, 0, false, new byte[10]);
+        assertFalse(cache.contains(second, 0, false));
+        assertEquals(1, cache.stats().entries());
+
+        // fewer segments for a smaller budget
+        cache.setMaxBytes(1 << 20);
+        assertEquals(0, cache.stats().entries());
+        assertEquals(1, cache.stats().evictions());
+        cache.put(first, 0, false, new byte[10]);
+        assertTrue(cache.contains(first, 0, false));
+    }
+
+    @Test
+    void offHeapCacheKeepsChunksReadConcurrentlyFromReuse() throws Exception {
+        EntryCache cache = new EntryCache(1 << 20, true);
+        EntryCache.Owner owner = cache.newOwner(cache.newArchive());
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        AtomicInteger errors = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                final int idx = t;
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    for (int j = 0; j < 5000; j++) {
+                        int offset = (j * 7 + idx) % 300;
+                        byte[] cached = cache.get(owner, offset, false);
+                        if (cached == null) {
+                            byte[] data = new byte[4000];
+                            Arrays.fill(data, (byte) offset);
+                            cache.put(owner, offset, false, data);
+                        } else {
+                            for (byte b : cached) {
+                                if (b != (byte) offset) {
+                                    errors.incrementAndGet();
+                                    break;
+                                }
+                            }
+                        }
+                        if (idx == 0 && j % 500 == 0) {
+                            cache.clear(owner.archive());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, errors.get());
+        assertTrue(cache.stats().evictions() > 0);
+        cache.clear(owner.archive());
+        assertEquals(0, cache.stats().bytes());
+    }
+
+    @Test
+    void sharedFileSystemsShareCachedEntries() throws IOException {
+        ReadOnlyZipFileSystem.CACHE_ENABLED = true;
+        Path zip = createZip("shared-cached.zip", entry("a.txt", "alpha"));
+
+        ReadOnlyZipFileSystem second;
+        try (ReadOnlyZipFileSystem first = ReadOnlyZipFileSystem.openShared(zip)) {
+            second = ReadOnlyZipFileSystem.openShared(zip);
+            first.readEntryData("a.txt");
+            second.readEntryData("a.txt");
+            // one copy of the entry, with counters per filesystem
+            assertEquals(1, first.cacheStats().misses());
+            assertEquals(0, first.cacheStats().hits());
+            assertEquals(0, second.cacheStats().misses());
+            assertEquals(1, second.cacheStats().hits());
+            assertEquals(1, first.cacheStats().entries());
+            assertEquals(1, second.cacheStats().entries());
+        }
+        // the entries are kept until the last filesystem is closed
+        assertEquals(1, second.cacheStats().entries());
+        second.readEntryData("a.txt");
+        assertEquals(2, second.cacheStats().hits());
+        second.close();
+        assertEquals(0, second.cacheStats().entries());
+    }
+
+    @Test
+    void compressedCacheTierInflatesCachedCompressedBytes() throws IOException {
+        byte[] text = "Lorem ipsum dolor sit amet. ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        Path zip = createZipMixedMethods("cache-compressed.zip",
+                new MethodEntry("text.txt", text, ZipEntry.DEFLATED),
+                new MethodEntry("stored.bin", patternedBytes(1000), ZipEntry.STORED));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip, ReadOnlyZipOptions.defaults()
+                .withEntryCacheSize(1 << 20)
+                .withEntryCacheTier(ReadOnlyZipOptions.CacheTier.COMPRESSED))) {
+            assertArrayEquals(text, fs.readEntryData("text.txt"));
+            // only the compressed bytes are charged to the budget
+            assertTrue(fs.cacheStats().bytes() < text.length / 10);
+
+            byte[] first = fs.readEntryData("text.txt");
+            assertArrayEquals(text, first);
+            assertNotSame(first, fs.readEntryData("text.txt"));
+            assertArrayEquals(text, Files.readAllBytes(fs.getPath("text.txt")));
+            try (InputStream in = Files.newInputStream(fs.getPath("text.txt"))) {
+                assertArrayEquals(text, in.readAllBytes());
+            }
+            assertEquals(4, fs.cacheStats().compressedHits());
+
+            // STORED entries are cached as they are
+            fs.readEntryData("stored.bin");
+            fs.readEntryData("stored.bin");
+            ReadOnlyZipCacheStats stats = fs.cacheStats();
+            assertEquals(5, stats.hits());
+            assertEquals(4, stats.compressedHits());
+            assertEquals(1, stats.uncompressedHits());
+            assertEquals(2, stats.misses());
+        }
+        assertEquals(ReadOnlyZipOptions.CacheTier.UNCOMPRESSED, ReadOnlyZipOptions.defaults().entryCacheTier());
+    }
+
+    @Test
+    void cacheTierPropertyFallsBackToUncompressed() {
+        assertEquals(ReadOnlyZipOptions.CacheTier.COMPRESSED, ReadOnlyZipOptions.parseCacheTier("compressed"));
+        assertEquals(ReadOnlyZipOptions.CacheTier.COMPRESSED, ReadOnlyZipOptions.parseCacheTier(" COMPRESSED "));
+        assertEquals(ReadOnlyZipOptions.CacheTier.UNCOMPRESSED, ReadOnlyZipOptions.parseCacheTier("uncompressed"));
+        assertEquals(ReadOnlyZipOptions.CacheTier.UNCOMPRESSED, ReadOnlyZipOptions.parseCacheTier(null));
+        // a typo must not keep archives from being opened
+        assertEquals(ReadOnlyZipOptions.CacheTier.UNCOMPRESSED, ReadOnlyZipOptions.parseCacheTier("compresed"));
+        assertEquals(ReadOnlyZipOptions.CacheTier.UNCOMPRESSED, ReadOnlyZipOptions.parseCacheTier(""));
+    }
+
+    @Test
+    void offHeapCacheCopiesDataOnHits() throws IOException {
+        byte[] text = "Lorem ipsum dolor sit amet. ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        Path zip = createZipMixedMethods("cache-offheap.zip",
+                new MethodEntry("text.txt", text, ZipEntry.DEFLATED),
+                new MethodEntry("stored.bin", patternedBytes(1000), ZipEntry.STORED));
+
+        for (ReadOnlyZipOptions.CacheTier tier : ReadOnlyZipOptions.CacheTier.values()) {
+            try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip, ReadOnlyZipOptions.defaults()
+                    .withEntryCacheSize(1 << 20)
+                    .withEntryCacheOffHeap(true)
+                    .withEntryCacheTier(tier))) {
+                byte[] first = fs.readEntryData("text.txt");
+                byte[] second = fs.readEntryData("text.txt");
+                assertArrayEquals(text, second);
+                assertNotSame(first, second);
+                fs.readEntryBuffer("stored.bin");
+                ByteBuffer buffer = fs.readEntryBuffer("stored.bin");
+                assertTrue(buffer.isReadOnly());
+                byte[] stored = new byte[buffer.remaining()];
+                buffer.get(stored);
+                assertArrayEquals(patternedBytes(1000), stored);
+                assertEquals(2, fs.cacheStats().hits());
+                if (tier == ReadOnlyZipOptions.CacheTier.UNCOMPRESSED) {
+                    // each entry is charged the size of the chunk holding it
+                    assertEquals(32768 + 1024 + 2 * EntryCache.ENTRY_OVERHEAD, fs.cacheStats().bytes());
+                }
+            }
+        }
+    }
+
+    @Test
+    void offHeapCacheReusesAndReleasesSlabs() {
+        EntryCache cache = new EntryCache(1 << 20, true);
+        EntryCache.Owner owner = cache.newOwner(cache.newArchive());
+        for (int i = 0; i < 10_000; i++) {
+            byte[] data = patternedBytes(100 + i % 5000);
+            cache.put(owner, i, false, data);
+            assertArrayEquals(data, cache.get(owner, i, false));
+            assertTrue(cache.stats().bytes() <= 1 << 20);
+            assertTrue(cache.offHeapBytes() <= 1 << 20, "off-heap bytes: " + cache.offHeapBytes());
+        }
+        cache.clear(owner.archive());
+        assertEquals(0, cache.stats().entries());
+        // at most one empty slab is kept per size class
+        assertTrue(cache.offHeapBytes() <= 24 * (64 << 10), "off-heap bytes: " + cache.offHeapBytes());
+
+        // entries larger than a slab get a buffer of their own
+        byte[] large = patternedBytes(100_000);
+        cache.put(owner, -1, false, large);
+        assertArrayEquals(large, cache.get(owner, -1, false));
+    }
+
+    @Test
+    void offHeapCacheKeepsDirectMemoryWithinBudget() {
+        long budget = 1 << 20;
+        EntryCache cache = new EntryCache(budget, true);
+        EntryCache.Owner owner = cache.newOwner(cache.newArchive());
+        // one entry per size class leaves a mostly empty slab per class
+        int offset = 0;
+        for (int size = SlabAllocator.MIN_CHUNK_SIZE; size <= SlabAllocator.MIN_SLAB_SIZE; size <<= 1) {
+            for (int length : new int[] { size, size + (size >> 1) }) {
+                byte[] data = patternedBytes(length);
+                cache.put(owner, offset++, false, data);
+                assertTrue(cache.offHeapBytes() <= budget, "off-heap bytes: " + cache.offHeapBytes());
+            }
+        }
+        // the most recent entry is kept
+        assertArrayEquals(patternedBytes(SlabAllocator.MIN_SLAB_SIZE * 3 / 2),
+                cache.get(owner, offset - 1, false));
+    }
+
+    @Test
+    void prefetchFillsCacheForLaterReads() throws IOException {
+        List<MethodEntry> entries = new ArrayList<>();
+        entries.add(new MethodEntry("META-INF/", new byte[0], ZipEntry.STORED));
+        for (int i = 0; i < 200; i++) {
+            entries.add(new MethodEntry("org/acme/C" + i + ".class", ("class " + i + " ").repeat(20 + i)
+                    .getBytes(StandardCharsets.UTF_8), i % 3 == 0 ? ZipEntry.STORED : ZipEntry.DEFLATED));
+        }
+        // larger than a single read, so the sweep is split
+        for (int i = 0; i < 6; i++) {
+            entries.add(new MethodEntry("lib/blob" + i + ".bin", patternedBytes(1 << 20), ZipEntry.STORED));
+        }
+        Path zip = createZipMixedMethods("prefetch.zip", entries.toArray(new MethodEntry[0]));
+
+        List<String> names = new ArrayList<>();
+        for (int i = 199; i >= 0; i -= 2) {
+            names.add("/org/acme/C" + i + ".class");
+        }
+        for (int i = 0; i < 6; i++) {
+            names.add("lib/blob" + i + ".bin");
+        }
+        List<String> requested = new ArrayList<>(names);
+        requested.add("org/acme/C0.class");
+        // duplicate
+        requested.add("org/acme/C1.class");
+        requested.add("org/acme/Missing.class");
+        requested.add("META-INF/");
+        requested.add("org/acme");
+
+        for (ReadOnlyZipOptions options : List.of(ReadOnlyZipOptions.defaults(),
+                ReadOnlyZipOptions.defaults().withMappedReads(),
+                ReadOnlyZipOptions.defaults().withEntryCacheTier(ReadOnlyZipOptions.CacheTier.COMPRESSED))) {
+            try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip, options.withEntryCacheSize(64 << 20))) {
+                assertEquals(names.size() + 1, fs.prefetch(requested));
+                assertEquals(names.size() + 1, fs.cacheStats().entries());
+                assertEquals(0, fs.cacheStats().misses());
+                // already cached
+                assertEquals(0, fs.prefetch(names));
+
+                for (MethodEntry entry : entries) {
+                    String name = "/" + entry.name();
+                    if (names.contains(name) || names.contains(entry.name()) || name.equals("/org/acme/C0.class")) {
+                        assertArrayEquals(entry.data(), fs.readEntryData(entry.name()), entry.name());
+                    }
+                }
+                assertEquals(0, fs.cacheStats().misses(), options.toString());
+                assertEquals(names.size() + 1, fs.cacheStats().hits());
+            }
+        }
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(zip)) {
+            assertEquals(0, fs.prefetch(names));
+        }
+    }
+
+    @Test
+    void prefetchDetectsCrcMismatch() throws IOException {
+        byte[] good = "good entry data".getBytes(StandardCharsets.UTF_8);
+        byte[] bad = "data to be corrupted".getBytes(StandardCharsets.UTF_8);
+        Path zip = createZipMixedMethods("prefetch-crc.zip",
+                new MethodEntry("a.txt", good, ZipEntry.STORED),
+                new MethodEntry("b.txt", bad, ZipEntry.STORED));
+        byte[] raw = Files.readAllBytes(zip);
+        int at = indexOf(raw, bad);
+        raw[at] ^= 0xFF;
+        Path corrupt = tempDir.resolve("prefetch-crc-corrupt.zip");
+        Files.write(corrupt, raw);
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(corrupt,
+                ReadOnlyZipOptions.defaults().withEntryCacheSize(1 << 20))) {
+            IOException e = assertThrows(IOException.class, () -> fs.prefetch(List.of("a.txt", "b.txt")));
+            assertTrue(e.getMessage().contains("CRC"), e.getMessage());
+            assertEquals(1, fs.cacheStats().entries());
+            assertArrayEquals(good, fs.readEntryData("a.txt"));
+        }
+    }
+
+    @Test
+    void sharedCacheBoundsAllArchivesTogether() throws IOException {
+        TestEntry[] entries = new TestEntry[10];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = entry("data" + i + ".bin", patternedBytes(1000));
+        }
+        Path first = createZip("shared-cache-1.zip", entries);
+        Path second = createZip("shared-cache-2.zip", entries);
+        long entryWeight = 1000 + EntryCache.ENTRY_OVERHEAD;
+        ReadOnlyZipOptions options = ReadOnlyZipOptions.defaults().withSharedEntryCache(true);
+
+        ReadOnlyZipFileSystem.setSharedCacheSize(10 * entryWeight);
+        try (ReadOnlyZipFileSystem fs1 = ReadOnlyZipFileSystem.open(first, options);
+                ReadOnlyZipFileSystem fs2 = ReadOnlyZipFileSystem.open(second, options)) {
+            // hot entry of the first archive, read twice
+            fs1.readEntryData(entries[0].name());
+            fs1.readEntryData(entries[0].name());
+            for (TestEntry entry : entries) {
+                assertArrayEquals(entry.data(), fs2.readEntryData(entry.name()));
+            }
+            ReadOnlyZipCacheStats total = ReadOnlyZipFileSystem.sharedCacheStats();
+            assertTrue(total.bytes() <= 10 * entryWeight);
+            assertEquals(10 * entryWeight, fs1.cacheStats().maxBytes());
+            assertEquals(1, fs1.cacheStats().entries());
+            assertEquals(1, fs1.cacheStats().hits());
+            assertEquals(entries.length, fs2.cacheStats().misses());
+            assertTrue(fs2.cacheStats().evictions() > 0);
+            assertEquals(total.entries(), fs1.cacheStats().entries() + fs2.cacheStats().entries());
+
+            // the scan of the second archive did not evict the hot entry
+            fs1.readEntryData(entries[0].name());
+            assertEquals(2, fs1.cacheStats().hits());
+            // entries are identified by archive, not by name
+            assertNotSame(fs1.readEntryData(entries[0].name()), fs2.readEntryData(entries[0].name()));
+
+            fs2.close();
+            assertEquals(0, fs2.cacheStats().entries());
+            assertEquals(fs1.cacheStats().bytes(), ReadOnlyZipFileSystem.sharedCacheStats().bytes());
+
+            ReadOnlyZipFileSystem.setSharedCacheSize(1);
+            assertEquals(0, ReadOnlyZipFileSystem.sharedCacheStats().bytes());
+        } finally {
+            ReadOnlyZipFileSystem.setSharedCacheSize(ReadOnlyZipFileSystem.SHARED_CACHE_SIZE);
+        }
+        assertThrows(IllegalArgumentException.class, () -> ReadOnlyZipFileSystem.setSharedCacheSize(0));
+    }
+
+    @Test
+    void sharedCacheIsInheritedByNestedArchives() throws IOException {
+        byte[] inner = Files.readAllBytes(createZip("shared-cache-inner.jar", entry("a.txt", "alpha")));
+        Path outer = createZipMixedMethods("shared-cache-outer.zip",
+                new MethodEntry("inner.jar", inner, ZipEntry.STORED));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(outer,
+                ReadOnlyZipOptions.defaults().withSharedEntryCache(true));
+                ReadOnlyZipFileSystem nested = fs.openNested(fs.getPath("/inner.jar"))) {
+            long before = ReadOnlyZipFileSystem.sharedCacheStats().entries();
+            nested.readEntryData("a.txt");
+            assertEquals(before + 1, ReadOnlyZipFileSystem.sharedCacheStats().entries());
+            nested.clearCache();
+            assertEquals(before, ReadOnlyZipFileSystem.sharedCacheStats().entries());
+        }
+    }
+
+    @Test
+    void cacheIsDisabledByDefaultAndInheritedByNestedArchives() throws IOException {
+        byte[] inner = Files.readAllBytes(createZip("cache-inner.jar", entry("a.txt", "alpha")));
+        Path outer = createZipMixedMethods("cache-outer.zip",
+                new MethodEntry("inner.jar", inner, ZipEntry.STORED));
+
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(outer)) {
+            fs.readEntryData("inner.jar");
+            assertEquals(new ReadOnlyZipCacheStats(0, 0, 0, 0, 0, 0, 0), fs.cacheStats());
+        }
+        try (ReadOnlyZipFileSystem fs = ReadOnlyZipFileSystem.open(outer,
+                ReadOnlyZipOptions.defaults().withEntryCacheSize(1 << 20));
+                ReadOnlyZipFileSystem nested = fs.openNested(fs.getPath("/inner.jar"))) {
+            assertEquals("alpha", new String(nested.readEntryData("a.txt"), StandardCharsets.UTF_8));
+            assertEquals("alpha", new String(nested.readEntryData("a.txt"), StandardCharsets.UTF_8));
+            assertEquals(1, nested.cacheStats().hits());
+            assertEquals(1 << 20, nested.cacheStats().maxBytes());
+        }
+        assertThrows(IllegalArgumentException.class, () -> ReadOnlyZipOptions.defaults().withEntryCacheSize(-1));
+    }
+
+    private Path createZip(String name, TestEntry... entries) throws IOException {
+        return createZipWithMethod(name, ZipEntry.DEFLATED, entries);
+    }
 
     private Path createZipWithMethod(String name, int method, TestEntry... entries)
             throws IOException {
@@ -1556,6 +3446,26 @@ class ReadOnlyZipFileSystemTest {
         return zip;
     }
 
+    private static int indexOf(byte[] array, byte[] target) {
+        outer: for (int i = 0; i <= array.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (array[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new AssertionError("not found");
+    }
+
+    private static byte[] patternedBytes(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ((i * 31) ^ (i >>> 7));
+        }
+        return data;
+    }
+
     private static TestEntry entry(String name, String content) {
         return new TestEntry(name, content.getBytes(StandardCharsets.UTF_8));
     }